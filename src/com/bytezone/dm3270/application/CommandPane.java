@@ -32,6 +32,7 @@ class CommandPane extends TabPane
 
   private final ProcessInstruction processInstruction;
   private Screen screen;
+  private ReplayIndex replayIndex;         // only used in Replay mode
 
   enum ProcessInstruction
   {
@@ -64,6 +65,12 @@ class CommandPane extends TabPane
     this.screen = screen;
   }
 
+  // called from ReplayStage constructor
+  void setReplayIndex (ReplayIndex replayIndex)
+  {
+    this.replayIndex = replayIndex;
+  }
+
   protected void replay (SessionRecord sessionRecord)
   {
     if (sessionRecord == null)            // nothing selected
@@ -83,7 +90,10 @@ class CommandPane extends TabPane
     ReplyBuffer message = sessionRecord.getMessage ();
 
     if (processInstruction == ProcessInstruction.DoProcess)
-      message.process (screen);       // only process the message when in Replay mode
+      if (replayIndex != null)
+        replayIndex.seek (sessionRecord);   // rebuilds the screen up to this record
+      else
+        message.process (screen);     // only process the message when in Replay mode
 
     commandTextArea.setText ("");
 
@@ -187,6 +187,15 @@ public class Console extends Application
 
   private void setModel (Site serverSite)
   {
+    Optional<ScreenDimensions> screenSize =
+        optionStage.serverSitesListStage.getScreenSize (serverSite);
+    if (screenSize.isPresent ())
+    {
+      alternateScreenDimensions = screenSize.get ();
+      telnetState.setDoDeviceType (alternateScreenDimensions);
+      return;
+    }
+
     int model = serverSite.getModel ();
     System.out.println ("model: " + model);
     switch (model)
@@ -206,6 +215,7 @@ public class Console extends Application
       case 5:
         alternateScreenDimensions = new ScreenDimensions (27, 132);
         telnetState.setDoDeviceType (5);
+        break;
       default:
         System.out.println ("Invalid model number: " + model);
     }
@@ -220,7 +230,7 @@ public class Console extends Application
 
   private void setConsolePane (Screen screen, Site serverSite)
   {
-    consolePane = new ConsolePane (screen, serverSite, pluginsStage);
+    consolePane = new ConsolePane (screen, serverSite, pluginsStage, prefs);
     Scene scene = new Scene (consolePane);
 
     primaryStage.setScene (scene);
@@ -243,7 +253,7 @@ public class Console extends Application
     }
 
     scene.setOnKeyPressed (new ConsoleKeyPress (consolePane, screen));
-    scene.setOnKeyTyped (new ConsoleKeyEvent (screen));
+    scene.setOnKeyTyped (new ConsoleKeyEvent (consolePane, screen));
 
     primaryStage.sizeToScene ();
     primaryStage.show ();
@@ -308,6 +318,13 @@ public class Console extends Application
       prefs.put ("FontSize", "" + screen.getFontManager ().getFontSize ());
     }
 
+    if (consolePane != null)
+    {
+      TypeAheadBuffer typeAheadBuffer = consolePane.getTypeAheadBuffer ();
+      prefs.putBoolean ("TypeAhead", typeAheadBuffer.isEnabled ());
+      prefs.putBoolean ("PipelineAIDs", typeAheadBuffer.isPipelined ());
+    }
+
     prefs.put ("Mode",
                optionStage.toggleModeMenuItem.isSelected () ? "Release" : "Debug");
 
@@ -326,6 +343,8 @@ public class Console extends Application
   {
     screen = new Screen (screenDimensions, alternateScreenDimensions, prefs, function,
         pluginsStage, site, telnetState);
+    if (site != null)
+      screen.setCodePage (optionStage.serverSitesListStage.getCodePage (site));
     return screen;
   }
 
@@ -1,8 +1,8 @@
 package com.bytezone.dm3270.application;
 
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.display.Cursor;
 import com.bytezone.dm3270.display.Screen;
-import com.bytezone.dm3270.utilities.Dm3270Utility;
 
 import javafx.event.EventHandler;
 import javafx.scene.input.KeyEvent;
@@ -11,11 +11,15 @@ public class ConsoleKeyEvent implements EventHandler<KeyEvent>
 {
   private final Screen screen;
   private final Cursor cursor;
+  private final ConsolePane consolePane;
+  private final TypeAheadBuffer typeAheadBuffer;
 
-  public ConsoleKeyEvent (Screen screen)
+  public ConsoleKeyEvent (ConsolePane consolePane, Screen screen)
   {
+    this.consolePane = consolePane;
     this.screen = screen;
     this.cursor = screen.getScreenCursor ();
+    this.typeAheadBuffer = consolePane.getTypeAheadBuffer ();
   }
 
   @Override
@@ -28,6 +32,13 @@ public class ConsoleKeyEvent implements EventHandler<KeyEvent>
       return;
     char ch = c.charAt (0);
 
+    boolean modified = e.isMetaDown () || e.isControlDown () || e.isAltDown ();
+    if (screen.isKeyboardLocked () && !modified)
+    {
+      typeAhead (e, ch);
+      return;
+    }
+
     if (screen.isKeyboardLocked () || e.isMetaDown () || e.isControlDown ()
         || e.isAltDown ())
     {
@@ -49,10 +60,29 @@ public class ConsoleKeyEvent implements EventHandler<KeyEvent>
       return;
     }
 
-    if (ch >= 32 && ch < 0x7F)
+    CodePage codePage = screen.getCodePage ();
+    if (codePage.isTypeable (ch))
     {
-      cursor.typeChar ((byte) Dm3270Utility.asc2ebc[ch]);
+      cursor.typeChar (codePage.toEbcdic (ch));
       e.consume ();
     }
+    else if (codePage.isDbcs ())
+    {
+      byte[] pair = codePage.getDbcsBytes (ch);
+      if (pair != null && cursor.typeDbcsChar (pair[0], pair[1]))
+        e.consume ();
+    }
+  }
+
+  // printable characters are queued here, other keys by ConsoleKeyPress.handle()
+  private void typeAhead (KeyEvent e, char ch)
+  {
+    CodePage codePage = screen.getCodePage ();
+    if (codePage.isTypeable (ch) && !consolePane.isHistoryMode ())
+    {
+      byte value = codePage.toEbcdic (ch);
+      if (typeAheadBuffer.offer ( () -> cursor.typeChar (value)))
+        e.consume ();
+    }
   }
 }
\ No newline at end of file
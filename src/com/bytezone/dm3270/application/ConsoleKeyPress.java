@@ -18,12 +18,14 @@ class ConsoleKeyPress implements EventHandler<KeyEvent>
   private final Screen screen;
   private final ConsolePane consolePane;
   private final Cursor cursor;
+  private final TypeAheadBuffer typeAheadBuffer;
 
   public ConsoleKeyPress (ConsolePane consolePane, Screen screen)
   {
     this.consolePane = consolePane;
     this.screen = screen;
     this.cursor = screen.getScreenCursor ();
+    this.typeAheadBuffer = consolePane.getTypeAheadBuffer ();
   }
 
   @Override
@@ -34,7 +36,7 @@ class ConsoleKeyPress implements EventHandler<KeyEvent>
 
     KeyCode keyCodePressed = keyEvent.getCode ();
 
-    if (screen.isKeyboardLocked ())           // could be in screen history mode
+    if (consolePane.isHistoryMode ())         // keyboard is locked
     {
       if (keyCodePressed == KeyCode.LEFT)
       {
@@ -50,6 +52,37 @@ class ConsoleKeyPress implements EventHandler<KeyEvent>
       return;
     }
 
+    if (screen.isKeyboardLocked ())           // waiting for the host
+    {
+      if (keyCodePressed == KeyCode.ESCAPE)   // reset
+        typeAheadBuffer.clear ();
+      else if (isTypeAheadKey (keyEvent)
+          && typeAheadBuffer.offer ( () -> process (keyEvent)))
+        keyEvent.consume ();
+      return;
+    }
+
+    process (keyEvent);
+  }
+
+  // plain characters are queued by ConsoleKeyEvent when the key is typed
+  private boolean isTypeAheadKey (KeyEvent keyEvent)
+  {
+    KeyCode keyCode = keyEvent.getCode ();
+    if (keyCode.isModifierKey ())
+      return false;
+
+    if (keyEvent.isMetaDown () || keyEvent.isControlDown ())
+      return true;
+
+    return !keyCode.isLetterKey () && !keyCode.isDigitKey () && keyCode != KeyCode.SPACE;
+  }
+
+  // called from handle(), or later from TypeAheadBuffer.replay()
+  private void process (KeyEvent keyEvent)
+  {
+    KeyCode keyCodePressed = keyEvent.getCode ();
+
     if (keyEvent.isMetaDown ())
     {
       switch (keyCodePressed)
@@ -3,6 +3,7 @@ package com.bytezone.dm3270.application;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Optional;
+import java.util.prefs.Preferences;
 
 import com.bytezone.dm3270.application.Parameters.SiteParameters;
 import com.bytezone.dm3270.attributes.StartFieldAttribute;
@@ -56,6 +57,7 @@ public class ConsolePane extends BorderPane
   private Thread terminalServerThread;
 
   private HistoryManager screenHistory;             // null unless showing screen history 
+  private final TypeAheadBuffer typeAheadBuffer;
 
   private HBox historyBox;                          // status display area
   private final Label historyLabel = new Label ();  // status text
@@ -67,7 +69,8 @@ public class ConsolePane extends BorderPane
 
   private final FontManager fontManager;
 
-  public ConsolePane (Screen screen, Site server, PluginsStage pluginsStage)
+  public ConsolePane (Screen screen, Site server, PluginsStage pluginsStage,
+      Preferences prefs)
   {
     this.screen = screen;
     this.telnetState = screen.getTelnetState ();
@@ -80,6 +83,12 @@ public class ConsolePane extends BorderPane
     screen.getScreenCursor ().addFieldChangeListener (this);
     screen.getScreenCursor ().addCursorMoveListener (this);
 
+    // both are off unless they were left on last time (saved by Console)
+    typeAheadBuffer = new TypeAheadBuffer (screen);
+    typeAheadBuffer.setEnabled (prefs.getBoolean ("TypeAhead", false));
+    typeAheadBuffer.setPipelined (prefs.getBoolean ("PipelineAIDs", false));
+    screen.addKeyboardStatusChangeListener (typeAheadBuffer);
+
     setMargin (screen, new Insets (MARGIN, MARGIN, 0, MARGIN));
 
     menuBar.getMenus ().addAll (getCommandsMenu (), fontManager.getFontMenu ());
@@ -141,8 +150,20 @@ public class ConsolePane extends BorderPane
         getMenuItem ("Console log", e -> screen.getConsoleLogStage ().show (), KeyCode.L);
     setIsConsole (false);
 
+    CheckMenuItem menuItemTypeAhead = new CheckMenuItem ("Type-ahead");
+    menuItemTypeAhead.setSelected (typeAheadBuffer.isEnabled ());
+    menuItemTypeAhead
+        .setOnAction (e -> typeAheadBuffer.setEnabled (menuItemTypeAhead.isSelected ()));
+
+    CheckMenuItem menuItemPipeline = new CheckMenuItem ("Pipeline AIDs");
+    menuItemPipeline.setSelected (typeAheadBuffer.isPipelined ());
+    menuItemPipeline
+        .setOnAction (e -> typeAheadBuffer.setPipelined (menuItemPipeline.isSelected ()));
+
     menuCommands.getItems ().addAll (menuItemToggleScreens, menuItemAssistant,
                                      menuItemConsoleLog, new SeparatorMenuItem (),
+                                     menuItemTypeAhead, menuItemPipeline,
+                                     new SeparatorMenuItem (),
                                      screen.getMenuItemUpload (),
                                      screen.getMenuItemDownload ());
 
@@ -253,6 +274,16 @@ public class ConsolePane extends BorderPane
     }
   }
 
+  boolean isHistoryMode ()
+  {
+    return screenHistory != null;
+  }
+
+  TypeAheadBuffer getTypeAheadBuffer ()
+  {
+    return typeAheadBuffer;
+  }
+
   void back ()
   {
     if (screenHistory != null && screenHistory.hasPrevious ())
@@ -294,6 +325,7 @@ public class ConsolePane extends BorderPane
   public void sendAID (AIDCommand command)
   {
     assert telnetState != null;
+    telnetState.getMetrics ().aidSent ();
 
     if (telnetState.does3270Extended ())
     {
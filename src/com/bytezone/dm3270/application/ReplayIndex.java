@@ -0,0 +1,129 @@
+package com.bytezone.dm3270.application;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.bytezone.dm3270.buffers.ReplyBuffer;
+import com.bytezone.dm3270.commands.WriteCommand;
+import com.bytezone.dm3270.display.Screen;
+import com.bytezone.dm3270.display.ScreenKeyframe;
+import com.bytezone.dm3270.extended.TN3270ExtendedCommand;
+import com.bytezone.dm3270.session.SessionRecord;
+
+// Lets ReplayStage jump to any record without replaying the whole session. The
+// session is processed once when it is loaded, and a keyframe of the screen is kept
+// after every Erase/Write and at least every KEYFRAME_INTERVAL records. A seek
+// restores the nearest keyframe at or before the record and then processes only
+// the records after it. Stepping forward one record at a time just processes that
+// record, as before.
+//
+// Building the index and seeking only rebuild the screen (see Screen.setReplaying()),
+// so the records that are passed over do not add to the screen history, run the
+// plugins or write to the console log again, and the screen is drawn once at the end.
+
+class ReplayIndex
+{
+  private static final int KEYFRAME_INTERVAL = 100;
+
+  private final Screen screen;
+  private final List<SessionRecord> records;
+  private final Map<SessionRecord, Integer> positions = new IdentityHashMap<> ();
+  private final TreeMap<Integer, ScreenKeyframe> keyframes = new TreeMap<> ();
+  private int current;                  // last record applied to the screen
+  private long keyframeBytes;
+
+  ReplayIndex (List<SessionRecord> records, Screen screen)
+  {
+    this.records = records;
+    this.screen = screen;
+
+    // -1 is the empty screen before the first record
+    keyframes.put (-1, screen.saveKeyframe ());
+    int lastKeyframe = -1;
+
+    screen.setReplaying (true);
+    try
+    {
+      for (int i = 0; i < records.size (); i++)
+      {
+        SessionRecord sessionRecord = records.get (i);
+        positions.put (sessionRecord, i);
+        sessionRecord.getMessage ().process (screen);
+
+        if (isEraseWrite (sessionRecord.getMessage ())
+            || i - lastKeyframe >= KEYFRAME_INTERVAL)
+        {
+          ScreenKeyframe keyframe = screen.saveKeyframe ();
+          keyframes.put (i, keyframe);
+          keyframeBytes += keyframe.size ();
+          lastKeyframe = i;
+        }
+      }
+    }
+    finally
+    {
+      screen.setReplaying (false);
+    }
+
+    current = records.size () - 1;
+  }
+
+  // called from CommandPane.replay()
+  void seek (SessionRecord sessionRecord)
+  {
+    Integer target = positions.get (sessionRecord);
+    if (target == null)
+    {
+      sessionRecord.getMessage ().process (screen);     // not part of this session
+      return;
+    }
+
+    if (target == current)
+      return;
+
+    if (target == current + 1)
+    {
+      records.get (++current).getMessage ().process (screen);
+      return;
+    }
+
+    // carry on from the current record if no keyframe is any closer
+    int from = keyframes.floorKey (target);
+
+    screen.setReplaying (true);
+    try
+    {
+      if (current > target || current < from)
+      {
+        screen.restoreKeyframe (keyframes.get (from));
+        current = from;
+      }
+
+      while (current < target)
+        records.get (++current).getMessage ().process (screen);
+    }
+    finally
+    {
+      screen.setReplaying (false);
+    }
+
+    screen.draw ();
+  }
+
+  private boolean isEraseWrite (ReplyBuffer message)
+  {
+    if (message instanceof TN3270ExtendedCommand)
+      message = ((TN3270ExtendedCommand) message).getCommand ();
+
+    return message instanceof WriteCommand && ((WriteCommand) message).isEraseWrite ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("%,d records, %,d keyframes, %,d bytes", records.size (),
+                          keyframes.size (), keyframeBytes);
+  }
+}
@@ -1,25 +1,39 @@
 package com.bytezone.dm3270.application;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.bytezone.dm3270.display.Screen;
 import com.bytezone.dm3270.session.Session;
 import com.bytezone.dm3270.session.SessionRecord;
 import com.bytezone.dm3270.session.SessionRecord.SessionRecordType;
+import com.bytezone.dm3270.session.SessionSearchIndex;
+import com.bytezone.dm3270.session.SessionSearchIndex.SearchHit;
 import com.bytezone.dm3270.session.SessionTable;
 import com.bytezone.dm3270.utilities.WindowSaver;
 
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -34,6 +48,13 @@ class ReplayStage extends Stage
   private final WindowSaver windowSaver;
   private Rectangle2D primaryScreenBounds;
 
+  private static final String INDEX_FOLDER = ".dm3270index";
+  private final TextField findText = new TextField ();
+  private final CheckBox findAllCB = new CheckBox ("All sessions");
+  private final Label findLabel = new Label ();
+  private SessionSearchIndex searchIndex;           // created by the first find
+  private Task<List<SearchHit>> findTask;           // null unless a find is running
+
   public ReplayStage (Session session, Path path, Preferences prefs, Screen screen)
   {
     this.prefs = prefs;
@@ -48,7 +69,9 @@ class ReplayStage extends Stage
     final HBox checkBoxes = new HBox ();
     checkBoxes.setSpacing (15);
     checkBoxes.setPadding (new Insets (10, 10, 10, 10));            // trbl
-    checkBoxes.getChildren ().addAll (showTelnetCB, show3270ECB);
+    checkBoxes.getChildren ().addAll (showTelnetCB, show3270ECB, new Label ("Find"),
+                                      findText, findAllCB, findLabel);
+    checkBoxes.setAlignment (Pos.CENTER_LEFT);
 
     SessionTable sessionTable = new SessionTable ();
     CommandPane commandPane =
@@ -56,6 +79,7 @@ class ReplayStage extends Stage
 
     //    commandPane.setScreen (session.getScreen ());
     commandPane.setScreen (screen);
+    commandPane.setReplayIndex (new ReplayIndex (session.getDataRecords (), screen));
 
     setTitle ("Replay Commands - " + path.getFileName ());
 
@@ -81,6 +105,8 @@ class ReplayStage extends Stage
     sortedData.comparatorProperty ().bind (sessionTable.comparatorProperty ());
     sessionTable.setItems (sortedData);
 
+    findText.setOnAction (e -> find (session, path, sessionTable));
+
     displayFirstScreen (session, sessionTable);
 
     setOnCloseRequest (e -> Platform.exit ());
@@ -151,6 +177,114 @@ class ReplayStage extends Stage
     }
   }
 
+  // Selects the next record after the current one that contains every word. With
+  // All sessions checked, every file in the session's folder is indexed and searched,
+  // and the hits in other files are listed in a separate window. The index is
+  // checked, built and searched on a background thread, and the result is shown back
+  // on the application thread.
+  private void find (Session session, Path path, SessionTable table)
+  {
+    if (findTask != null)                     // still searching
+      return;
+
+    String query = findText.getText ();
+    Path sessionPath = path.toAbsolutePath ().normalize ();
+    Path indexFolder = sessionPath.getParent ().resolve (INDEX_FOLDER);
+    boolean allSessions = findAllCB.isSelected ();
+
+    findTask = new Task<List<SearchHit>> ()
+    {
+      @Override
+      protected List<SearchHit> call () throws Exception
+      {
+        if (searchIndex == null)
+          searchIndex = new SessionSearchIndex (indexFolder);
+        searchIndex.removeStale ();           // deleted or replaced sessions
+        if (!allSessions)
+        {
+          searchIndex.update (path);          // only indexes the file the first time
+          return searchIndex.search (query, path);
+        }
+
+        try (Stream<Path> stream = Files.list (sessionPath.getParent ()))
+        {
+          searchIndex.update (stream.filter (Files::isRegularFile).sorted ()
+              .collect (Collectors.toList ()));
+        }
+        return searchIndex.search (query);
+      }
+    };
+
+    findTask.setOnSucceeded (e ->
+    {
+      List<SearchHit> hits = new ArrayList<> ();
+      List<SearchHit> otherHits = new ArrayList<> ();
+      for (SearchHit hit : findTask.getValue ())
+        (hit.sessionPath.equals (sessionPath) ? hits : otherHits).add (hit);
+
+      findTask = null;
+      showHit (session, table, hits);
+      if (!otherHits.isEmpty ())
+        showOtherHits (otherHits);
+    });
+
+    findTask.setOnFailed (e ->
+    {
+      Throwable exception = findTask.getException ();
+      findTask = null;
+      findLabel.setText ("Index error");
+      exception.printStackTrace ();
+    });
+
+    findLabel.setText ("Searching");
+
+    Thread thread = new Thread (findTask, "ReplayFind");
+    thread.setDaemon (true);
+    thread.start ();
+  }
+
+  private void showHit (Session session, SessionTable table, List<SearchHit> hits)
+  {
+    if (hits.isEmpty ())
+    {
+      findLabel.setText ("Not found");
+      return;
+    }
+
+    ObservableList<SessionRecord> records = session.getDataRecords ();
+    SessionRecord selectedRecord = table.getSelectionModel ().getSelectedItem ();
+    int current = selectedRecord == null ? -1 : records.indexOf (selectedRecord);
+
+    int hitNo = 0;                            // wrap around to the first hit
+    for (int i = 0; i < hits.size (); i++)
+      if (hits.get (i).recordNo > current)
+      {
+        hitNo = i;
+        break;
+      }
+
+    SessionRecord sessionRecord = records.get (hits.get (hitNo).recordNo);
+    if (sessionRecord.isTN3270Extended ())
+      show3270ECB.setSelected (true);         // otherwise the record is filtered out
+
+    table.getSelectionModel ().select (sessionRecord);
+    table.scrollTo (sessionRecord);
+    findLabel.setText (String.format ("%d of %d", hitNo + 1, hits.size ()));
+  }
+
+  private void showOtherHits (List<SearchHit> hits)
+  {
+    ListView<SearchHit> hitList = new ListView<> (FXCollections.observableList (hits));
+    hitList.setPrefWidth (700);
+
+    Dialog<Void> dialog = new Dialog<> ();
+    dialog.initOwner (this);
+    dialog.setTitle (String.format ("Found in other sessions (%,d)", hits.size ()));
+    dialog.getDialogPane ().setContent (hitList);
+    dialog.getDialogPane ().getButtonTypes ().add (ButtonType.CLOSE);
+    dialog.show ();
+  }
+
   protected VBox getVBox ()
   {
     VBox vbox = new VBox ();
@@ -5,6 +5,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.prefs.Preferences;
 
+import com.bytezone.dm3270.codepage.CodePage;
+import com.bytezone.dm3270.display.ScreenDimensions;
 import com.bytezone.dm3270.utilities.PreferencesStage;
 import com.bytezone.dm3270.utilities.Site;
 
@@ -23,7 +25,12 @@ import javafx.scene.layout.VBox;
 
 public class SiteListStage extends PreferencesStage
 {
+  private static final int CODE_PAGE_COLUMN = 7;      // not one of Site's fields
+  private static final int SCREEN_SIZE_COLUMN = 8;    // not one of Site's fields
+
   private final List<Site> sites = new ArrayList<> ();
+  private final List<ComboBox<String>> codePages = new ArrayList<> ();  // one per site
+  private final List<TextField> screenSizes = new ArrayList<> ();       // one per site
   private final ComboBox<String> comboBox = new ComboBox<> ();
   private final Button editListButton = new Button ("Edit...");
 
@@ -42,12 +49,15 @@ public class SiteListStage extends PreferencesStage
     fields.add (new PreferenceField ("Model", 40, Type.NUMBER));
     fields.add (new PreferenceField ("Plugins", 50, Type.BOOLEAN));
     fields.add (new PreferenceField ("Save folder", 80, Type.TEXT));
+    fields.add (new PreferenceField ("Code page", 90, Type.TEXT));
+    fields.add (new PreferenceField ("Size", 60, Type.TEXT));
 
     VBox vbox = getHeadings ();
 
     // input fields
-    for (Site site : sites)
+    for (int row = 0; row < sites.size (); row++)
     {
+      Site site = sites.get (row);
       HBox hbox = new HBox ();
       hbox.setSpacing (5);
       hbox.setPadding (new Insets (0, 5, 0, 5));    // trbl
@@ -55,7 +65,19 @@ public class SiteListStage extends PreferencesStage
       for (int i = 0; i < fields.size (); i++)
       {
         PreferenceField field = fields.get (i);
-        if (field.type == Type.TEXT || field.type == Type.NUMBER)
+        if (i == CODE_PAGE_COLUMN)
+        {
+          ComboBox<String> codePageBox = codePages.get (row);
+          codePageBox.setPrefWidth (field.width);
+          hbox.getChildren ().add (codePageBox);
+        }
+        else if (i == SCREEN_SIZE_COLUMN)
+        {
+          TextField textField = screenSizes.get (row);
+          textField.setMaxWidth (field.width);
+          hbox.getChildren ().add (textField);
+        }
+        else if (field.type == Type.TEXT || field.type == Type.NUMBER)
         {
           TextField textField = site.getTextField (i);
           textField.setMaxWidth (field.width);
@@ -108,6 +130,9 @@ public class SiteListStage extends PreferencesStage
       int model = prefs.getInt (keyName + "Model", 2);
       boolean plugins = prefs.getBoolean (keyName + "Plugins", false);
       String folder = prefs.get (keyName + "Folder", "");
+      String codePage =
+          prefs.get (keyName + "CodePage", CodePage.getDefault ().getName ());
+      String screenSize = prefs.get (keyName + "ScreenSize", "");
 
       if (port <= 0)
         port = 23;
@@ -123,6 +148,16 @@ public class SiteListStage extends PreferencesStage
         siteNames.add (name);
       }
       sites.add (site);
+
+      ComboBox<String> codePageBox =
+          new ComboBox<> (FXCollections.observableArrayList (CodePage.getNames ()));
+      codePageBox.getSelectionModel ()
+          .select (CodePage.getOrDefault (codePage).getName ());
+      codePages.add (codePageBox);
+
+      TextField screenSizeField = new TextField (screenSize);
+      screenSizeField.setPromptText ("model");
+      screenSizes.add (screenSizeField);
     }
 
     updateComboBox (siteNames, 0);
@@ -149,6 +184,8 @@ public class SiteListStage extends PreferencesStage
       prefs.put (keyName + "Model", site.model.getText ());
       prefs.putBoolean (keyName + "Plugins", plugins);
       prefs.put (keyName + "Folder", folder);
+      prefs.put (keyName + "CodePage", getCodePage (site).getName ());
+      prefs.put (keyName + "ScreenSize", getScreenSizeText (i));
 
       if (name != null && !name.isEmpty ())
         siteNames.add (name);
@@ -190,6 +227,40 @@ public class SiteListStage extends PreferencesStage
     return Optional.empty ();
   }
 
+  // sites that are not in this list use the default code page
+  CodePage getCodePage (Site site)
+  {
+    int index = sites.indexOf (site);
+    if (index < 0)
+      return CodePage.getDefault ();
+    return CodePage.getOrDefault (codePages.get (index).getValue ());
+  }
+
+  // a custom size (rows x columns) replaces the model's alternate screen size
+  Optional<ScreenDimensions> getScreenSize (Site site)
+  {
+    int index = sites.indexOf (site);
+    if (index < 0)
+      return Optional.empty ();
+    return Optional.ofNullable (ScreenDimensions.parse (getScreenSizeText (index)));
+  }
+
+  // an invalid size is saved as blank, which means use the model
+  private String getScreenSizeText (int index)
+  {
+    String text = screenSizes.get (index).getText ().trim ();
+    try
+    {
+      ScreenDimensions.parse (text);
+      return text;
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.out.println (e.getMessage ());
+      return "";
+    }
+  }
+
   List<Site> getSites ()
   {
     return sites;
@@ -0,0 +1,113 @@
+package com.bytezone.dm3270.application;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.bytezone.dm3270.display.Screen;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+// Holds keystrokes (including AID keys) that arrive while the host has the keyboard
+// locked, and replays them in order when a WCC restores the keyboard. Replaying stops
+// as soon as one of them locks the keyboard again (i.e. an AID was sent), and the
+// rest wait for the next unlock.
+//
+// The keyboard is unlocked part way through WriteCommand.process(), so the replay is
+// always deferred until that command has finished (recorded, plugins run). Normally
+// it also waits for the next pulse, so that the new screen is on display before the
+// queued keys change it. When pipelined, the queue is replayed as soon as the
+// command has finished, so the next AID goes back to the host before the screen has
+// been shown.
+//
+// Type-ahead is off until it is enabled, both in the terminal (Commands menu) and in
+// HeadlessSession.setTypeAhead().
+
+public class TypeAheadBuffer implements KeyboardStatusListener
+{
+  private static final int MAX_KEYSTROKES = 256;
+
+  private final Screen screen;
+  private final Deque<Runnable> keystrokes = new ArrayDeque<> ();
+  private boolean enabled;
+  private boolean pipelined;
+
+  public TypeAheadBuffer (Screen screen)
+  {
+    this.screen = screen;
+  }
+
+  public void setEnabled (boolean enabled)
+  {
+    this.enabled = enabled;
+    if (!enabled)
+      keystrokes.clear ();
+  }
+
+  public boolean isEnabled ()
+  {
+    return enabled;
+  }
+
+  public void setPipelined (boolean pipelined)
+  {
+    this.pipelined = pipelined;
+  }
+
+  public boolean isPipelined ()
+  {
+    return pipelined;
+  }
+
+  // returns false if the keystroke could not be queued
+  public boolean offer (Runnable keystroke)
+  {
+    if (!enabled || keystrokes.size () >= MAX_KEYSTROKES)
+      return false;
+
+    keystrokes.add (keystroke);
+    return true;
+  }
+
+  public int size ()
+  {
+    return keystrokes.size ();
+  }
+
+  // called from ConsoleKeyPress.handle() - the Reset key
+  public void clear ()
+  {
+    keystrokes.clear ();
+  }
+
+  @Override
+  public void keyboardStatusChanged (KeyboardStatusChangedEvent evt)
+  {
+    if (evt.keyboardLocked || keystrokes.isEmpty ())
+      return;
+
+    if (pipelined)
+      Platform.runLater ( () -> replay ());
+    else
+      Platform.runLater ( () -> replayAfterPulse ());
+  }
+
+  private void replayAfterPulse ()
+  {
+    new AnimationTimer ()
+    {
+      @Override
+      public void handle (long now)
+      {
+        stop ();
+        replay ();
+      }
+    }.start ();
+  }
+
+  private void replay ()
+  {
+    while (!keystrokes.isEmpty () && !screen.isKeyboardLocked ())
+      keystrokes.poll ().run ();
+  }
+}
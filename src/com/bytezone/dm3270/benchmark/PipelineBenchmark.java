@@ -0,0 +1,310 @@
+package com.bytezone.dm3270.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.prefs.Preferences;
+
+import com.bytezone.dm3270.application.Console.Function;
+import com.bytezone.dm3270.commands.Command;
+import com.bytezone.dm3270.commands.WriteCommand;
+import com.bytezone.dm3270.display.ContextManager;
+import com.bytezone.dm3270.display.Screen;
+import com.bytezone.dm3270.display.ScreenDimensions;
+import com.bytezone.dm3270.headless.HeadlessSession;
+import com.bytezone.dm3270.orders.Order;
+import com.bytezone.dm3270.plugins.PluginsStage;
+import com.bytezone.dm3270.session.Session;
+import com.bytezone.dm3270.session.SessionReader;
+import com.bytezone.dm3270.session.SessionRecord;
+import com.bytezone.dm3270.streams.TelnetSocket.Source;
+import com.bytezone.dm3270.streams.TelnetState;
+import com.bytezone.dm3270.telnet.TelnetCommandProcessor;
+import com.bytezone.dm3270.telnet.TelnetProcessor;
+
+import javafx.application.Platform;
+import javafx.scene.paint.Color;
+
+// Runs a captured session (the same text format that Replay reads) through each stage
+// of the data stream pipeline and reports the time and memory allocated per
+// operation. Every stage is warmed up before it is measured.
+//
+//   java com.bytezone.dm3270.benchmark.PipelineBenchmark <session file> [iterations]
+//
+// ScreenWatcher.check() runs inside FieldManager.buildFields(), so it is included in
+// the buildFields figures.
+
+public class PipelineBenchmark
+{
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final Color[] colors =
+      { Color.BLACK, Color.DEEPSKYBLUE, Color.RED, Color.PINK, Color.LIME,
+        Color.TURQUOISE, Color.YELLOW, Color.WHITE };
+  private static final byte[] highlights = { 0, (byte) 0xF1, (byte) 0xF2, (byte) 0xF4 };
+
+  private static final com.sun.management.ThreadMXBean threadBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean ();
+
+  private final List<byte[]> serverBuffers = new ArrayList<> ();
+  private final List<Command> commands = new ArrayList<> ();
+  private final Map<String, Stage> stages = new LinkedHashMap<> ();
+
+  public PipelineBenchmark (Path path) throws Exception
+  {
+    // raw telnet buffers as they arrived from the server
+    SessionReader reader = new SessionReader (Source.SERVER, path);
+    byte[] buffer;
+    while ((buffer = reader.nextBuffer ()).length > 0)
+      serverBuffers.add (buffer);
+
+    // decoded 3270 commands
+    Session session = new Session (new TelnetState (), path);
+    for (SessionRecord sessionRecord : session)
+      if (sessionRecord.getSource () == Source.SERVER && sessionRecord.isCommand ())
+        commands.add (sessionRecord.getCommand ());
+
+    System.out.printf ("%s : %,d buffers, %,d commands%n", path.getFileName (),
+                       serverBuffers.size (), commands.size ());
+  }
+
+  public void run (int iterations) throws InterruptedException
+  {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+      runOnce ();
+    stages.clear ();
+
+    for (int i = 0; i < iterations; i++)
+      runOnce ();
+
+    report ();
+  }
+
+  private void runOnce () throws InterruptedException
+  {
+    listen ();
+    decode ();
+    contextLookups ();
+
+    // Screen is a Canvas, so it must be created and written to on the FX thread
+    CountDownLatch latch = new CountDownLatch (1);
+    Platform.runLater ( () ->
+    {
+      try
+      {
+        processScreens ();
+      }
+      finally
+      {
+        latch.countDown ();
+      }
+    });
+    latch.await ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Stages
+  // ---------------------------------------------------------------------------------//
+
+  private void listen ()
+  {
+    Stage stage = getStage ("TelnetProcessor.listen");
+    TelnetProcessor telnetProcessor = new TelnetProcessor (new NullProcessor ());
+
+    for (byte[] buffer : serverBuffers)
+    {
+      stage.start ();
+      telnetProcessor.listen (buffer);
+      stage.stop ();
+    }
+  }
+
+  private void decode ()
+  {
+    Stage stage = getStage ("Command.getCommand");
+
+    for (Command command : commands)
+    {
+      byte[] data = command.getData ();
+      stage.start ();
+      Command decoded = Command.getCommand (data, 0, data.length);
+      if (decoded instanceof WriteCommand)
+        ((WriteCommand) decoded).getOrdersList ();            // Order.getOrder()
+      stage.stop ();
+    }
+  }
+
+  private void contextLookups ()
+  {
+    Stage stage = getStage ("ContextManager.getScreenContext");
+    ContextManager contextManager = new ContextManager ();
+
+    for (Color foreground : colors)
+      for (Color background : colors)
+        for (byte highlight : highlights)
+        {
+          stage.start ();
+          contextManager.getScreenContext (foreground, background, highlight, false);
+          contextManager.getScreenContext (foreground, background, highlight, true);
+          stage.stop ();
+        }
+  }
+
+  // Called on the FX thread. WriteCommand.process() also builds the fields, runs the
+  // plugins and draws the screen, so its orders are applied here directly and each
+  // of the following stages only measures the step in its name.
+  private void processScreens ()
+  {
+    Stage ordersStage = getStage ("Order.process");
+    Stage fieldsStage = getStage ("FieldManager.buildFields");
+    Stage packerStage = getStage ("ScreenPacker.readModifiedFields");
+
+    Screen screen = createScreen ();
+
+    for (Command command : commands)
+    {
+      if (!(command instanceof WriteCommand))
+        continue;
+
+      WriteCommand writeCommand = (WriteCommand) command;
+      List<Order> orders = writeCommand.getOrdersList ();      // timed when decoding
+      if (writeCommand.isEraseWrite ())
+        screen.clearScreen ();
+
+      ordersStage.start ();
+      for (Order order : orders)
+        order.process (screen);
+      ordersStage.stop ();
+
+      fieldsStage.start ();
+      screen.buildFields (null);
+      fieldsStage.stop ();
+
+      packerStage.start ();
+      screen.readModifiedFields ();
+      packerStage.stop ();
+    }
+  }
+
+  private Screen createScreen ()
+  {
+    Preferences prefs = Preferences.userNodeForPackage (PipelineBenchmark.class);
+    return new Screen (new ScreenDimensions (24, 80), new ScreenDimensions (27, 132),
+        prefs, Function.REPLAY, new PluginsStage (prefs), null, new TelnetState ());
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Reporting
+  // ---------------------------------------------------------------------------------//
+
+  private synchronized Stage getStage (String name)
+  {
+    Stage stage = stages.get (name);
+    if (stage == null)
+    {
+      stage = new Stage ();
+      stages.put (name, stage);
+    }
+    return stage;
+  }
+
+  private void report ()
+  {
+    System.out.printf ("%n%-34s %12s %10s %14s %12s%n", "Stage", "Ops", "ns/op",
+                       "ops/sec", "bytes/op");
+    for (Map.Entry<String, Stage> entry : stages.entrySet ())
+    {
+      Stage stage = entry.getValue ();
+      if (stage.ops == 0)
+        continue;
+      double nanosPerOp = (double) stage.nanos / stage.ops;
+      System.out.printf ("%-34s %,12d %,10.0f %,14.0f %,12d%n", entry.getKey (),
+                         stage.ops, nanosPerOp, 1_000_000_000 / nanosPerOp,
+                         stage.bytes / stage.ops);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Stage
+  // ---------------------------------------------------------------------------------//
+
+  // time and allocation totals for one stage, measured on the calling thread
+  private static class Stage
+  {
+    private long ops;
+    private long nanos;
+    private long bytes;
+
+    private long startNanos;
+    private long startBytes;
+
+    void start ()
+    {
+      startBytes = threadBean.getThreadAllocatedBytes (Thread.currentThread ().getId ());
+      startNanos = System.nanoTime ();
+    }
+
+    void stop ()
+    {
+      nanos += System.nanoTime () - startNanos;
+      bytes += threadBean.getThreadAllocatedBytes (Thread.currentThread ().getId ())
+          - startBytes;
+      ops++;
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // NullProcessor
+  // ---------------------------------------------------------------------------------//
+
+  // discards every record, so that only the telnet parsing is measured
+  private static class NullProcessor implements TelnetCommandProcessor
+  {
+    @Override
+    public void processData (byte[] buffer, int length)
+    {
+    }
+
+    @Override
+    public void processRecord (byte[] buffer, int length)
+    {
+    }
+
+    @Override
+    public void processTelnetCommand (byte[] buffer, int length)
+    {
+    }
+
+    @Override
+    public void processTelnetSubcommand (byte[] buffer, int length)
+    {
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Main
+  // ---------------------------------------------------------------------------------//
+
+  public static void main (String[] args) throws Exception
+  {
+    if (args.length == 0)
+    {
+      System.out.println ("Usage: PipelineBenchmark <session file> [iterations]");
+      return;
+    }
+
+    if (!threadBean.isThreadAllocatedMemorySupported ())
+      System.out.println ("Allocation figures are not supported by this JVM");
+    threadBean.setThreadAllocatedMemoryEnabled (true);
+
+    int iterations = args.length > 1 ? Integer.parseInt (args[1]) : 20;
+    HeadlessSession.startToolkit ();
+
+    new PipelineBenchmark (Paths.get (args[0])).run (iterations);
+    Platform.exit ();
+  }
+}
@@ -0,0 +1,302 @@
+package com.bytezone.dm3270.codepage;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Translates between EBCDIC and Java characters without going through a Charset.
+// Each code page is decoded once, when this class is loaded, into 256 entry tables,
+// so that translating a byte or a whole buffer is just an array lookup. All of the
+// supported code pages cover Latin-1, so every EBCDIC value has a character below
+// 0x100 and (nearly) every such character has an EBCDIC value.
+//
+// The code page used by a Screen is chosen per server Site in SiteListStage. Protocol
+// strings (reply fields, LU names etc) always use CP1047.
+//
+// The mixed code pages (CP930 etc) also have double-byte characters, which appear
+// between SHIFT_OUT and SHIFT_IN. Their single-byte part still has to fit in
+// Latin-1, so CP930's katakana show as question marks. Each row of the double-byte
+// table (one per lead byte) is only decoded the first time it is needed.
+
+public final class CodePage
+{
+  public static final String CP037 = "CP037";
+  public static final String CP273 = "CP273";
+  public static final String CP500 = "CP500";
+  public static final String CP1047 = "CP1047";
+  public static final String CP930 = "CP930";           // Japanese
+  public static final String CP935 = "CP935";           // Simplified Chinese
+  public static final String CP937 = "CP937";           // Traditional Chinese
+  public static final String CP939 = "CP939";           // Japanese (Latin)
+
+  public static final byte SHIFT_OUT = 0x0E;
+  public static final byte SHIFT_IN = 0x0F;
+
+  private static final String DEFAULT_NAME = CP1047;
+  private static final byte SUBSTITUTE = 0x6F;          // '?' in all of the code pages
+
+  private static final Map<String, CodePage> codePages = new LinkedHashMap<> ();
+
+  private final String name;
+  private final char[] ebc2asc = new char[256];
+  private final char[] ebc2screen = new char[256];      // control characters are blank
+  private final byte[] asc2ebc = new byte[256];
+
+  private final Charset dbcsCharset;                    // null for single-byte pages
+  private final char[][] dbcsRows;                      // indexed by the lead byte
+
+  static
+  {
+    add (CP037, "IBM037", false);
+    add (CP273, "IBM273", false);
+    add (CP500, "IBM500", false);
+    add (CP1047, "IBM1047", false);
+    add (CP930, "x-IBM930", true);
+    add (CP935, "x-IBM935", true);
+    add (CP937, "x-IBM937", true);
+    add (CP939, "x-IBM939", true);
+  }
+
+  private static void add (String name, String charsetName, boolean dbcs)
+  {
+    if (Charset.isSupported (charsetName))
+      codePages.put (name, new CodePage (name, Charset.forName (charsetName), dbcs));
+    else
+      System.out.printf ("Code page %s is not available%n", charsetName);
+  }
+
+  private CodePage (String name, Charset charset, boolean dbcs)
+  {
+    this.name = name;
+    dbcsCharset = dbcs ? charset : null;
+    dbcsRows = dbcs ? new char[256][] : null;
+
+    byte[] values = new byte[256];
+    for (int i = 0; i < values.length; i++)
+      values[i] = (byte) i;
+
+    // a mixed code page swallows SO and SI, so decode each byte on its own
+    String decoded;
+    if (dbcs)
+    {
+      StringBuilder text = new StringBuilder ();
+      for (int i = 0; i < values.length; i++)
+      {
+        String s = new String (values, i, 1, charset);
+        text.append (s.length () == 1 ? s.charAt (0) : ' ');
+      }
+      decoded = text.toString ();
+    }
+    else
+      decoded = new String (values, charset);
+
+    if (decoded.length () != 256)
+      throw new IllegalArgumentException ("Not a single-byte code page: " + name);
+
+    for (int i = 0; i < 256; i++)
+    {
+      char ch = decoded.charAt (i);
+      if (ch > 0xFF)
+        ch = '?';
+      ebc2asc[i] = ch;
+      ebc2screen[i] = (i & 0xC0) == 0 ? ' ' : ch;
+    }
+
+    // any character that no EBCDIC value decodes to becomes a question mark
+    for (int i = 0; i < 256; i++)
+      asc2ebc[i] = SUBSTITUTE;
+    for (int i = 255; i >= 0; i--)                // lowest EBCDIC value wins
+      asc2ebc[ebc2asc[i]] = (byte) i;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Registry
+  // ---------------------------------------------------------------------------------//
+
+  public static CodePage get (String name)
+  {
+    CodePage codePage = codePages.get (name);
+    if (codePage == null)
+      throw new IllegalArgumentException ("Unknown code page: " + name);
+    return codePage;
+  }
+
+  // returns the default code page if the name is null, empty or unknown
+  public static CodePage getOrDefault (String name)
+  {
+    CodePage codePage = name == null ? null : codePages.get (name);
+    return codePage == null ? getDefault () : codePage;
+  }
+
+  public static CodePage getDefault ()
+  {
+    return get (DEFAULT_NAME);
+  }
+
+  public static List<String> getNames ()
+  {
+    return Collections.unmodifiableList (new ArrayList<> (codePages.keySet ()));
+  }
+
+  public String getName ()
+  {
+    return name;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Single characters
+  // ---------------------------------------------------------------------------------//
+
+  public char toChar (byte value)
+  {
+    return ebc2asc[value & 0xFF];
+  }
+
+  // the character that a 3270 displays, where 0x00 to 0x3F are all blanks
+  public char toScreenChar (byte value)
+  {
+    return ebc2screen[value & 0xFF];
+  }
+
+  public byte toEbcdic (char ch)
+  {
+    return ch <= 0xFF ? asc2ebc[ch] : SUBSTITUTE;
+  }
+
+  // characters that can be typed into a field
+  public boolean isTypeable (char ch)
+  {
+    return (ch >= 0x20 && ch < 0x7F) || (ch >= 0xA0 && ch <= 0xFF);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Double-byte characters
+  // ---------------------------------------------------------------------------------//
+
+  public boolean isDbcs ()
+  {
+    return dbcsCharset != null;
+  }
+
+  public char toDbcsChar (byte lead, byte trail)
+  {
+    char[] row = dbcsRows[lead & 0xFF];
+    if (row == null)
+      row = dbcsRows[lead & 0xFF] = decodeRow (lead);     // harmless if two threads race
+    return row[trail & 0xFF];
+  }
+
+  // returns null if the character is not a double-byte character in this code page
+  public byte[] getDbcsBytes (char ch)
+  {
+    if (dbcsCharset == null)
+      return null;
+
+    try
+    {
+      CharsetEncoder encoder = dbcsCharset.newEncoder ();
+      ByteBuffer encoded = encoder.encode (CharBuffer.wrap (new char[] { ch }));
+      if (encoded.remaining () == 4 && encoded.get (0) == SHIFT_OUT
+          && encoded.get (3) == SHIFT_IN)
+        return new byte[] { encoded.get (1), encoded.get (2) };
+    }
+    catch (CharacterCodingException e)
+    {
+      // not in this code page
+    }
+    return null;
+  }
+
+  private char[] decodeRow (byte lead)
+  {
+    byte[] buffer = new byte[514];
+    int ptr = 0;
+    buffer[ptr++] = SHIFT_OUT;
+    for (int i = 0; i < 256; i++)
+    {
+      buffer[ptr++] = lead;
+      buffer[ptr++] = (byte) i;
+    }
+    buffer[ptr++] = SHIFT_IN;
+
+    String decoded = new String (buffer, dbcsCharset);
+    if (decoded.length () == 256)
+      return decoded.toCharArray ();
+
+    // something decoded to more or less than one character, so do them one at a time
+    char[] row = new char[256];
+    byte[] pair = { SHIFT_OUT, lead, 0, SHIFT_IN };
+    for (int i = 0; i < 256; i++)
+    {
+      pair[2] = (byte) i;
+      String s = new String (pair, dbcsCharset);
+      row[i] = s.length () == 1 ? s.charAt (0) : '\uFFFD';
+    }
+    return row;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Buffers
+  // ---------------------------------------------------------------------------------//
+
+  // translates buffer[offset..offset+length) into chars[0..length)
+  public void translate (byte[] buffer, int offset, int length, char[] chars)
+  {
+    for (int i = 0; i < length; i++)
+      chars[i] = ebc2asc[buffer[offset + i] & 0xFF];
+  }
+
+  // as above, using toScreenChar()
+  public void translateScreen (byte[] buffer, int offset, int length, char[] chars)
+  {
+    for (int i = 0; i < length; i++)
+      chars[i] = ebc2screen[buffer[offset + i] & 0xFF];
+  }
+
+  // translates the text into buffer[offset..offset+text.length())
+  public int translate (CharSequence text, byte[] buffer, int offset)
+  {
+    int length = text.length ();
+    for (int i = 0; i < length; i++)
+      buffer[offset++] = toEbcdic (text.charAt (i));
+    return offset;
+  }
+
+  public String getString (byte[] buffer)
+  {
+    return getString (buffer, 0, buffer.length);
+  }
+
+  public String getString (byte[] buffer, int offset, int length)
+  {
+    char[] chars = new char[length];
+    translate (buffer, offset, length, chars);
+    return new String (chars);
+  }
+
+  // a mixed code page adds SO and SI around any double-byte characters
+  public byte[] getBytes (String text)
+  {
+    if (dbcsCharset != null)
+      for (int i = 0; i < text.length (); i++)
+        if (text.charAt (i) > 0xFF)
+          return text.getBytes (dbcsCharset);
+
+    byte[] buffer = new byte[text.length ()];
+    translate (text, buffer, 0);
+    return buffer;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return name;
+  }
+}
@@ -12,6 +12,7 @@ import com.bytezone.dm3270.display.Screen;
 import com.bytezone.dm3270.orders.BufferAddress;
 import com.bytezone.dm3270.orders.BufferAddressSource;
 import com.bytezone.dm3270.orders.Order;
+import com.bytezone.dm3270.orders.OrderStream;
 import com.bytezone.dm3270.orders.SetBufferAddressOrder;
 import com.bytezone.dm3270.orders.TextOrder;
 
@@ -89,36 +90,32 @@ public class AIDCommand extends Command implements BufferAddressSource, Iterable
 
     cursorAddress = new BufferAddress (data[1], data[2]);
 
-    int ptr = 3;
-    int max = length;
+    OrderStream orderStream = new OrderStream (data, 3, length);
     Order previousOrder = null;
     ModifiedField currentAIDField = null;
 
-    while (ptr < max)
+    for (int i = 0; i < orderStream.size (); i++)
     {
-      Order order = Order.getOrder (data, ptr, max);
-      if (!order.rejected ())
-      {
-        if (previousOrder != null && previousOrder.matchesPreviousOrder (order))
-          previousOrder.incrementDuplicates ();
-        else
-        {
-          orders.add (order);
-          previousOrder = order;
-        }
+      Order order = orderStream.getOrder (i);
 
-        if (order instanceof SetBufferAddressOrder)
-        {
-          currentAIDField = new ModifiedField ((SetBufferAddressOrder) order);
-          modifiedFields.add (currentAIDField);
-        }
-        else if (currentAIDField != null)
-          currentAIDField.addOrder (order);
+      if (previousOrder != null && previousOrder.matchesPreviousOrder (order))
+        previousOrder.incrementDuplicates ();
+      else
+      {
+        orders.add (order);
+        previousOrder = order;
+      }
 
-        if (order instanceof TextOrder)
-          textOrders.add (order);
+      if (order instanceof SetBufferAddressOrder)
+      {
+        currentAIDField = new ModifiedField ((SetBufferAddressOrder) order);
+        modifiedFields.add (currentAIDField);
       }
-      ptr += order.size ();
+      else if (currentAIDField != null)
+        currentAIDField.addOrder (order);
+
+      if (order instanceof TextOrder)
+        textOrders.add (order);
     }
   }
 
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bytezone.dm3270.display.Screen;
 import com.bytezone.dm3270.display.ScreenDimensions;
@@ -22,6 +23,13 @@ public class ReadStructuredFieldCommand extends Command
 {
   private static Map<String, String> clientNames = new HashMap<> ();
 
+  // Our query reply only depends on the screen size, so it is built and parsed once
+  // for each size. Every command made from a template gets its own copy of the
+  // buffer (AbstractBuffer copies it) and shares the parsed fields, which are never
+  // changed after the constructor.
+  private static final Map<String, ReadStructuredFieldCommand> queryReplies =
+      new ConcurrentHashMap<> ();
+
   private final List<StructuredField> structuredFields = new ArrayList<> ();
   private static final String SEPARATOR =
       "\n-------------------------------------------------------------------------";
@@ -52,7 +60,19 @@ public class ReadStructuredFieldCommand extends Command
   // called from ReadPartitionSF via ReadPartitionQuery
   public ReadStructuredFieldCommand (TelnetState telnetState)
   {
-    this (buildReply (telnetState));
+    this (getTemplate (telnetState.getSecondary ()));
+  }
+
+  // copies a cached query reply
+  private ReadStructuredFieldCommand (ReadStructuredFieldCommand template)
+  {
+    super (template.data, 0, template.data.length);
+
+    structuredFields.addAll (template.structuredFields);
+    replies.addAll (template.replies);
+    clientName = template.clientName;
+    signature = template.signature;
+    screenDimensions = template.screenDimensions;
   }
 
   public ReadStructuredFieldCommand (byte[] buffer)
@@ -153,12 +173,19 @@ public class ReadStructuredFieldCommand extends Command
     return screenDimensions;
   }
 
-  private static byte[] buildReply (TelnetState telnetState)
+  private static ReadStructuredFieldCommand getTemplate (
+      ScreenDimensions screenDimensions)
+  {
+    String key = screenDimensions.rows + "x" + screenDimensions.columns;
+    return queryReplies.computeIfAbsent (key,
+        k -> new ReadStructuredFieldCommand (buildReply (screenDimensions)));
+  }
+
+  private static byte[] buildReply (ScreenDimensions screenDimensions)
   {
     Highlight highlight = new Highlight ();
     Color color = new Color ();
 
-    ScreenDimensions screenDimensions = telnetState.getSecondary ();
     ImplicitPartition partition =
         new ImplicitPartition (screenDimensions.rows, screenDimensions.columns);
 
@@ -350,7 +350,7 @@ public class SystemMessage
     for (Order order : orders)
       if (order.isText ())
       {
-        String line = ((TextOrder) order).getTextString ();
+        String line = ((TextOrder) order).getTextString (screen.getCodePage ());
         if (line.length () == 79 || line.length () == 75)
         {
           String prefix = line.substring (1, 3);
@@ -7,6 +7,7 @@ import com.bytezone.dm3270.display.Cursor;
 import com.bytezone.dm3270.display.Screen;
 import com.bytezone.dm3270.display.Screen.ScreenOption;
 import com.bytezone.dm3270.orders.Order;
+import com.bytezone.dm3270.orders.OrderStream;
 import com.bytezone.dm3270.orders.TextOrder;
 
 public class WriteCommand extends Command
@@ -14,7 +15,8 @@ public class WriteCommand extends Command
   private final boolean eraseWrite;
   private final boolean alternate;
   private final WriteControlCharacter writeControlCharacter;
-  private final List<Order> orders = new ArrayList<Order> ();
+  private final OrderStream orderStream;
+  private List<Order> orders;                   // created when first needed
 
   private SystemMessage systemMessage;
 
@@ -34,27 +36,8 @@ public class WriteCommand extends Command
     writeControlCharacter =
         length > 1 ? new WriteControlCharacter (buffer[offset + 1]) : null;
 
-    int ptr = offset + 2;
-    Order previousOrder = null;
-
-    int max = offset + length;
-    while (ptr < max)
-    {
-      Order order = Order.getOrder (buffer, ptr, max);
-
-      if (order.rejected ())
-        break;
-
-      if (order.matchesPreviousOrder (previousOrder))
-        previousOrder.incrementDuplicates ();           // and discard this Order
-      else
-      {
-        orders.add (order);
-        previousOrder = order;
-      }
-
-      ptr += order.size ();
-    }
+    // tokenize the command's own copy of the data, the caller may reuse its buffer
+    orderStream = new OrderStream (data, 2, data.length);
   }
 
   // Used by MainframeStage.createCommand() when building a screen
@@ -64,7 +47,7 @@ public class WriteCommand extends Command
     this.writeControlCharacter = wcc;
     this.eraseWrite = erase;
     this.alternate = alternate;
-    this.orders.addAll (orders);
+    this.orders = new ArrayList<> (orders);
 
     // create new data buffer
     int length = 2;                 // command + WCC
@@ -84,6 +67,7 @@ public class WriteCommand extends Command
       ptr = order.pack (data, ptr);
 
     assert ptr == data.length;
+    orderStream = new OrderStream (data, 2, data.length);
   }
 
   @Override
@@ -103,6 +87,7 @@ public class WriteCommand extends Command
     else
       screen.lockKeyboard ("Write");
 
+    List<Order> orders = getOrders ();
     if (orders.size () > 0)
     {
       for (Order order : orders)
@@ -116,10 +101,14 @@ public class WriteCommand extends Command
     if (writeControlCharacter != null)
     {
       writeControlCharacter.process (screen);       // may unlock the keyboard
-      if (screen.getFieldManager ().size () > 0 && !screen.isKeyboardLocked ())
+      if (screen.getFieldManager ().size () > 0 && !screen.isKeyboardLocked ()
+          && !screen.isReplaying ())
         screen.checkRecording ();                   // make a copy of the screen
     }
 
+    if (screen.isReplaying ())                      // only rebuild the screen
+      return;
+
     if (!screen.isKeyboardLocked () && screen.getFieldManager ().size () > 0)
     {
       if (orders.size () > 0 || !writeControlCharacter.isResetModified ())
@@ -135,10 +124,41 @@ public class WriteCommand extends Command
     systemMessage.checkSystemMessage (eraseWrite, orders, data.length);
   }
 
+  // called from ReplayIndex
+  public boolean isEraseWrite ()
+  {
+    return eraseWrite;
+  }
+
+  // the orders are only created when they are processed or displayed
+  private List<Order> getOrders ()
+  {
+    if (orders != null)
+      return orders;
+
+    orders = new ArrayList<> (orderStream.size ());
+    Order previousOrder = null;
+
+    for (int i = 0; i < orderStream.size (); i++)
+    {
+      Order order = orderStream.getOrder (i);
+
+      if (order.matchesPreviousOrder (previousOrder))
+        previousOrder.incrementDuplicates ();           // and discard this Order
+      else
+      {
+        orders.add (order);
+        previousOrder = order;
+      }
+    }
+
+    return orders;
+  }
+
   // Used by Session.checkServerName() when searching for the server's name
   public List<Order> getOrdersList ()
   {
-    return orders;
+    return getOrders ();
   }
 
   @Override
@@ -154,6 +174,7 @@ public class WriteCommand extends Command
     text.append (getName ());
     text.append ("\nWCC : " + writeControlCharacter);
 
+    List<Order> orders = getOrders ();
     // if the list begins with a TextOrder then tab out the missing columns
     if (orders.size () > 0 && orders.get (0) instanceof TextOrder)
       text.append (String.format ("%40s", ""));
@@ -44,7 +44,12 @@ public class WriteControlCharacter
     if (resetModified)
       screen.resetModified ();
     if (restoreKeyboard)
+    {
+      // record the time first, the keyboard listeners may send another AID
+      if (screen.getTelnetState () != null)
+        screen.getTelnetState ().getMetrics ().keyboardRestored ();
       screen.restoreKeyboard ();
+    }
   }
 
   @Override
@@ -1,13 +1,12 @@
 package com.bytezone.dm3270.console;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javafx.scene.control.TextArea;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.text.Font;
 
 public class ConsoleLog
@@ -17,19 +16,36 @@ public class ConsoleLog
   private static final Pattern messagePattern =
       Pattern.compile ("^...[-| ][* ](\\d\\d(\\.\\d\\d){2}) (.*?)\\s*");
 
-  private final TextArea text = new TextArea ();
-  private final List<ConsoleMessage> messages = new ArrayList<> ();
+  private static final int MAX_MESSAGES = 20_000;
+  private static final int MAX_CHARS = MAX_MESSAGES * 200;    // message and lines
+
+  // the log keeps no ConsoleMessage objects apart from the one still being built
+  private final ConsoleMessageStore store =
+      new ConsoleMessageStore (MAX_MESSAGES, MAX_CHARS);
+  private final ConsoleMessageBuffer messages = new ConsoleMessageBuffer (store);
+  private final ListView<ConsoleMessage> view = new ListView<> (messages);
   private ConsoleMessage currentMessage;
-  private int currentTextLength;
 
   public ConsoleLog (Font font)
   {
-    text.setFont (font);
+    // only the visible rows are ever turned into text
+    view.setCellFactory (listView -> new ListCell<ConsoleMessage> ()
+    {
+      @Override
+      protected void updateItem (ConsoleMessage message, boolean empty)
+      {
+        super.updateItem (message, empty);
+        setFont (font);
+        setText (empty || message == null ? null : message.toString ());
+      }
+    });
   }
 
   // IPL lines
   public void addLines1 (String[] lines, int firstLine, int lastLine)
   {
+    boolean continued = false;
+
     for (int i = firstLine; i < lastLine; i++)
     {
       String line = lines[i];
@@ -38,17 +54,9 @@ public class ConsoleLog
       {
         String code = m.group (1);
         String message = m.group (2);
-
-        currentMessage = new ConsoleMessage (code, message);
-        if (messages.size () > 0)
-          text.appendText ("\n");
-        currentTextLength = text.getLength ();
-
-        messages.add (currentMessage);
-        fireConsoleMessage (currentMessage);
-        text.appendText (currentMessage.toString ());
+        addMessage (new ConsoleMessage (code, message));
       }
-      else
+      else if (currentMessage != null)
       {
         String code = line.substring (2, 10);
         if (code.trim ().isEmpty ())
@@ -62,43 +70,65 @@ public class ConsoleLog
             currentMessage.setFormatted ();
           currentMessage.add (line.substring (2));
         }
-
-        // remove partial message and replace with the latest version
-        text.deleteText (currentTextLength, text.getLength ());
-        text.appendText (currentMessage.toString ());
+        continued = true;
       }
     }
+
+    updateView (continued);
   }
 
   // Console lines
   public void addLines2 (String[] lines, int firstLine, int lastLine)
   {
+    boolean continued = false;
+
     for (int i = firstLine; i < lastLine; i++)
     {
       String line = lines[i];
       Matcher m = messagePattern.matcher (line);
       if (m.matches ())
-      {
-        currentMessage = new ConsoleMessage (line);
-        text.appendText ("\n");
-        currentTextLength = text.getLength ();
-
-        messages.add (currentMessage);
-        fireConsoleMessage (currentMessage);
-        text.appendText (currentMessage.toString ());
-      }
-      else
+        addMessage (new ConsoleMessage (line));
+      else if (currentMessage != null)
       {
         currentMessage.add (line.substring (5));
-        text.deleteText (currentTextLength, text.getLength ());
-        text.appendText (currentMessage.toString ());
+        continued = true;
       }
     }
+
+    updateView (continued);
   }
 
-  TextArea getTextArea ()
+  private void addMessage (ConsoleMessage message)
   {
-    return text;
+    currentMessage = message;
+    store.add (message);
+    fireConsoleMessage (message);
+  }
+
+  // a continuation line only changes the last message, so there is no need to
+  // rebuild any other row
+  private void updateView (boolean continued)
+  {
+    if (messages.isEmpty ())
+      return;
+
+    if (continued)
+    {
+      store.update (currentMessage);
+      view.refresh ();                    // redraws the visible cells only
+      fireConsoleMessageUpdated (currentMessage);
+    }
+    view.scrollTo (messages.size () - 1);
+  }
+
+  ListView<ConsoleMessage> getView ()
+  {
+    return view;
+  }
+
+  ConsoleMessageStore getStore ()
+  {
+    return store;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -112,6 +142,11 @@ public class ConsoleLog
     consoleMessageListeners.forEach (l -> l.consoleMessage (consoleMessage));
   }
 
+  private void fireConsoleMessageUpdated (ConsoleMessage consoleMessage)
+  {
+    consoleMessageListeners.forEach (l -> l.consoleMessageUpdated (consoleMessage));
+  }
+
   public void addConsoleMessageListener (ConsoleMessageListener listener)
   {
     if (!consoleMessageListeners.contains (listener))
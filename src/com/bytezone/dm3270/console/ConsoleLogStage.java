@@ -55,8 +55,8 @@ public class ConsoleLogStage extends Stage
 
   public void setConsoleLog (ConsoleLog consoleLog)
   {
-    consoleTab.setContent (consoleLog.getTextArea ());
-    consoleLog.addConsoleMessageListener (consoleMessageTab);
+    consoleTab.setContent (consoleLog.getView ());
+    consoleMessageTab.setConsoleLog (consoleLog);
 
     show ();
   }
@@ -5,9 +5,6 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
-
 public class ConsoleMessage
 {
   private static final Pattern codePattern =
@@ -15,15 +12,16 @@ public class ConsoleMessage
   private static final Pattern timePattern = Pattern.compile ("\\d{2}(\\.\\d{2}){2}");
   private static final Pattern actionPattern = Pattern.compile ("\\d\\d .*");
 
-  private final StringProperty time = new SimpleStringProperty ();
-  private final StringProperty system = new SimpleStringProperty ();
-  private final StringProperty task = new SimpleStringProperty ();
-  private final StringProperty messageCode = new SimpleStringProperty ();
-  private final StringProperty respond = new SimpleStringProperty ();
-  private final StringProperty message = new SimpleStringProperty ();
+  private String time;
+  private String system;
+  private String task;
+  private String messageCode;
+  private String respond;
+  private String message;
 
   private final List<String> lines = new ArrayList<> ();
   private boolean formatted;
+  private String text;                      // cached toString()
 
   // IPL messages
   public ConsoleMessage (String code, String message)
@@ -39,6 +37,23 @@ public class ConsoleMessage
     lines.add (message);
   }
 
+  // messages rebuilt from a ConsoleMessageStore
+  ConsoleMessage (String time, String system, String task, String respond, String code,
+      String message, List<String> lines, boolean formatted)
+  {
+    setTime (time);
+    setSystem (system);
+    setTask (task);
+    setRespond (respond);
+    setMessageCode (code);
+    setMessage (message);
+
+    this.lines.addAll (lines);
+    if (this.lines.isEmpty ())
+      this.lines.add (message);
+    this.formatted = formatted;
+  }
+
   // Console messages
   public ConsoleMessage (String line)
   {
@@ -78,17 +93,36 @@ public class ConsoleMessage
   public void setFormatted ()
   {
     formatted = true;
+    text = null;
+  }
+
+  boolean isFormatted ()
+  {
+    return formatted;
+  }
+
+  List<String> getLines ()
+  {
+    return lines;
   }
 
   public void add (String line)
   {
     lines.add (line);
+    text = null;
     if (lines.size () == 2 && !formatted)
       setMessage (getMessage () + " " + line.trim ());
   }
 
   @Override
   public String toString ()
+  {
+    if (text == null)
+      text = buildText ();
+    return text;
+  }
+
+  private String buildText ()
   {
     StringBuilder text = new StringBuilder ();
 
@@ -130,12 +164,12 @@ public class ConsoleMessage
 
   public final void setTime (String value)
   {
-    time.set (value);
+    this.time = value;
   }
 
   public final String getTime ()
   {
-    return time.get ();
+    return time;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -144,12 +178,12 @@ public class ConsoleMessage
 
   public final void setSystem (String value)
   {
-    system.set (value);
+    this.system = value;
   }
 
   public final String getSystem ()
   {
-    return system.get ();
+    return system;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -158,12 +192,12 @@ public class ConsoleMessage
 
   public final void setTask (String value)
   {
-    task.set (value);
+    this.task = value;
   }
 
   public final String getTask ()
   {
-    return task.get ();
+    return task;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -172,12 +206,12 @@ public class ConsoleMessage
 
   public final void setMessageCode (String value)
   {
-    messageCode.set (value);
+    this.messageCode = value;
   }
 
   public final String getMessageCode ()
   {
-    return messageCode.get ();
+    return messageCode;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -186,12 +220,12 @@ public class ConsoleMessage
 
   public final void setRespond (String value)
   {
-    respond.set (value);
+    this.respond = value;
   }
 
   public final String getRespond ()
   {
-    return respond.get ();
+    return respond;
   }
 
   // ---------------------------------------------------------------------------------//
@@ -200,11 +234,11 @@ public class ConsoleMessage
 
   public final void setMessage (String value)
   {
-    message.set (value);
+    this.message = value;
   }
 
   public final String getMessage ()
   {
-    return message.get ();
+    return message;
   }
 }
\ No newline at end of file
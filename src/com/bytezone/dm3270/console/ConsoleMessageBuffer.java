@@ -0,0 +1,59 @@
+package com.bytezone.dm3270.console;
+
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+// Every row of a ConsoleMessageStore, oldest first. Nothing is copied - the index is
+// simply an offset from the store's first row, and the ListView that displays the
+// buffer only asks the store for the visible rows.
+
+class ConsoleMessageBuffer extends ObservableListBase<ConsoleMessage>
+    implements ConsoleMessageStore.Listener
+{
+  private final ConsoleMessageStore store;
+
+  ConsoleMessageBuffer (ConsoleMessageStore store)
+  {
+    this.store = store;
+    store.addListener (this);
+  }
+
+  @Override
+  public void rowsDropped (List<ConsoleMessage> messages)
+  {
+    beginChange ();
+    nextRemove (0, messages);
+    endChange ();
+  }
+
+  @Override
+  public void rowAdded (long row)
+  {
+    beginChange ();
+    nextAdd (size () - 1, size ());
+    endChange ();
+  }
+
+  @Override
+  public void rowUpdated (long row)
+  {
+    beginChange ();
+    nextUpdate ((int) (row - store.getFirstRow ()));
+    endChange ();
+  }
+
+  @Override
+  public ConsoleMessage get (int index)
+  {
+    if (index < 0 || index >= size ())
+      throw new IndexOutOfBoundsException ("Index: " + index + ", size: " + size ());
+    return store.get (store.getFirstRow () + index);
+  }
+
+  @Override
+  public int size ()
+  {
+    return store.size ();
+  }
+}
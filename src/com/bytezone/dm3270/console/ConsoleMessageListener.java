@@ -3,4 +3,9 @@ package com.bytezone.dm3270.console;
 public interface ConsoleMessageListener
 {
   public void consoleMessage (ConsoleMessage consoleMessage);
+
+  // called when continuation lines have been added to the latest message
+  public default void consoleMessageUpdated (ConsoleMessage consoleMessage)
+  {
+  }
 }
@@ -0,0 +1,241 @@
+package com.bytezone.dm3270.console;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+// The rows of a ConsoleMessageStore that pass the console message filters, in the
+// order of the table's sort columns (or arrival order when there are none). Only the
+// row numbers are kept - each ConsoleMessage is fetched from the store when the table
+// asks for it, so a filter that matches every message costs eight bytes a row.
+
+class ConsoleMessageRows extends ObservableListBase<ConsoleMessage>
+    implements ConsoleMessageStore.Listener
+{
+  private final ConsoleMessageStore store;
+  private long[] rows = new long[64];
+  private int size;
+
+  private String time = "";
+  private String task = "";
+  private String code = "";
+  private String text = "";
+  private Comparator<? super ConsoleMessage> comparator;    // null for arrival order
+
+  ConsoleMessageRows (ConsoleMessageStore store)
+  {
+    this.store = store;
+    store.addListener (this);
+    setRows (store.find (time, task, code, text));
+  }
+
+  void detach ()
+  {
+    store.removeListener (this);
+  }
+
+  // time, task and code are prefixes, text may appear anywhere in the message
+  void setFilter (String time, String task, String code, String text)
+  {
+    this.time = time;
+    this.task = task;
+    this.code = code;
+    this.text = text;
+
+    setRows (store.find (time, task, code, text));
+  }
+
+  private void setRows (long[] found)
+  {
+    // the old rows are still in the store, so they are only built if a listener
+    // asks for them
+    long[] oldRows = Arrays.copyOf (rows, size);
+    List<ConsoleMessage> removed = new AbstractList<ConsoleMessage> ()
+    {
+      @Override
+      public ConsoleMessage get (int index)
+      {
+        return store.get (oldRows[index]);
+      }
+
+      @Override
+      public int size ()
+      {
+        return oldRows.length;
+      }
+    };
+
+    beginChange ();
+    if (size > 0)
+      nextRemove (0, removed);
+
+    rows = Arrays.copyOf (found, Math.max (64, found.length * 2));
+    size = found.length;
+    if (comparator != null)
+      sortRows ();
+
+    if (size > 0)
+      nextAdd (0, size);
+    endChange ();
+  }
+
+  // null restores arrival order
+  void setComparator (Comparator<? super ConsoleMessage> comparator)
+  {
+    this.comparator = comparator;
+
+    // report where each old index has moved to
+    int[] order = sortRows ();
+    int[] permutation = new int[size];
+    for (int i = 0; i < size; i++)
+      permutation[order[i]] = i;
+
+    beginChange ();
+    nextPermutation (0, size, permutation);
+    endChange ();
+  }
+
+  // returns the old index of each row in its new order
+  private int[] sortRows ()
+  {
+    long[] oldRows = rows;
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++)
+      order[i] = i;
+
+    if (comparator == null)
+      Arrays.sort (order, (a, b) -> Long.compare (oldRows[a], oldRows[b]));
+    else
+    {
+      // each message is built once rather than once per comparison
+      ConsoleMessage[] messages = new ConsoleMessage[size];
+      for (int i = 0; i < size; i++)
+        messages[i] = store.get (oldRows[i]);
+      Arrays.sort (order, (a, b) -> comparator.compare (messages[a], messages[b]));
+    }
+
+    int[] oldIndexes = new int[size];
+    rows = new long[oldRows.length];
+    for (int i = 0; i < size; i++)
+    {
+      oldIndexes[i] = order[i];
+      rows[i] = oldRows[order[i]];
+    }
+    return oldIndexes;
+  }
+
+  private boolean matches (long row)
+  {
+    return store.matches (row, time, task, code, text);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Store changes
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public void rowsDropped (List<ConsoleMessage> messages)
+  {
+    long firstRow = store.getFirstRow ();
+    long oldFirstRow = firstRow - messages.size ();
+
+    // dropped rows are at the front unless the table is sorted
+    beginChange ();
+    int to = 0;
+    for (int from = 0; from < size; from++)
+    {
+      long row = rows[from];
+      if (row < firstRow)
+        nextRemove (to, messages.get ((int) (row - oldFirstRow)));
+      else
+        rows[to++] = row;
+    }
+    size = to;
+    endChange ();
+  }
+
+  @Override
+  public void rowAdded (long row)
+  {
+    if (matches (row))
+      insert (row);
+  }
+
+  @Override
+  public void rowUpdated (long row)
+  {
+    int index = size - 1;
+    while (index >= 0 && rows[index] != row)
+      --index;
+    boolean matches = matches (row);
+
+    if (index >= 0 && !matches)
+    {
+      System.arraycopy (rows, index + 1, rows, index, size - index - 1);
+      --size;
+      beginChange ();
+      nextRemove (index, store.get (row));
+      endChange ();
+    }
+    else if (index >= 0)
+    {
+      beginChange ();
+      nextUpdate (index);
+      endChange ();
+    }
+    else if (matches)
+      insert (row);
+  }
+
+  private void insert (long row)
+  {
+    int index = size;
+    if (comparator != null)
+    {
+      // after any equal messages, so that ties stay in arrival order
+      ConsoleMessage message = store.get (row);
+      int low = 0;
+      int high = size;
+      while (low < high)
+      {
+        int mid = (low + high) >>> 1;
+        if (comparator.compare (store.get (rows[mid]), message) <= 0)
+          low = mid + 1;
+        else
+          high = mid;
+      }
+      index = low;
+    }
+
+    if (size == rows.length)
+      rows = Arrays.copyOf (rows, rows.length * 2);
+    System.arraycopy (rows, index, rows, index + 1, size - index);
+    rows[index] = row;
+    ++size;
+
+    beginChange ();
+    nextAdd (index, index + 1);
+    endChange ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // List
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public ConsoleMessage get (int index)
+  {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException ("Index: " + index + ", size: " + size);
+    return store.get (rows[index]);
+  }
+
+  @Override
+  public int size ()
+  {
+    return size;
+  }
+}
@@ -0,0 +1,471 @@
+package com.bytezone.dm3270.console;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bounded column store of the console messages shown by ConsoleLog and
+// ConsoleMessageTab. The short columns (time, system, task, respond, code) are held
+// as ids into a dictionary of distinct values, and the message text and its screen
+// lines are held as an offset and length into one shared ring of characters. Once
+// either the rows or the characters run out the oldest messages are dropped, and a
+// dictionary value is dropped along with the last row that uses it, so memory stays
+// flat however long the console is open. Rows are rebuilt from their columns when
+// they are asked for, and only the most recently used ones are cached so that a row
+// keeps the same ConsoleMessage while it is on screen. Rows are identified by a
+// sequence number that is never reused. Each message code keeps a list of the rows
+// that use it, so a code filter only looks at the rows that can match.
+
+class ConsoleMessageStore
+{
+  private final int maxMessages;
+  private final int[] timeIds;
+  private final int[] systemIds;
+  private final int[] taskIds;
+  private final int[] respondIds;
+  private final int[] codeIds;
+  private final long[] textStarts;
+  private final int[] textLengths;          // message and lines
+  private final int[] messageLengths;       // message only
+  private final BitSet formatted;
+
+  private final char[] text;
+  private long textEnd;                 // absolute position of the next free char
+
+  private long firstRow;                // sequence number of the oldest message
+  private long nextRow;                 // sequence number of the next message
+
+  private final Dictionary times = new Dictionary ();
+  private final Dictionary systems = new Dictionary ();
+  private final Dictionary tasks = new Dictionary ();
+  private final Dictionary responds = new Dictionary ();
+  private final Dictionary codes = new Dictionary ();
+  private final List<Postings> codeIndex = new ArrayList<> ();      // by code id
+
+  private static final int CACHE_SIZE = 500;
+  private final Map<Long, ConsoleMessage> cache =
+      new LinkedHashMap<Long, ConsoleMessage> (CACHE_SIZE * 2, 0.75f, true)
+      {
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<Long, ConsoleMessage> eldest)
+        {
+          return size () > CACHE_SIZE;
+        }
+      };
+
+  private final List<Listener> listeners = new ArrayList<> ();
+  private final List<ConsoleMessage> dropped = new ArrayList<> ();
+
+  // changes are reported after the store has been updated
+  interface Listener
+  {
+    void rowsDropped (List<ConsoleMessage> messages);       // oldest first
+    void rowAdded (long row);
+    void rowUpdated (long row);
+  }
+
+  ConsoleMessageStore (int maxMessages, int maxChars)
+  {
+    if (maxMessages <= 0 || maxChars <= 0)
+      throw new IllegalArgumentException ("Store sizes must be positive integers");
+
+    this.maxMessages = maxMessages;
+    timeIds = new int[maxMessages];
+    systemIds = new int[maxMessages];
+    taskIds = new int[maxMessages];
+    respondIds = new int[maxMessages];
+    codeIds = new int[maxMessages];
+    textStarts = new long[maxMessages];
+    textLengths = new int[maxMessages];
+    messageLengths = new int[maxMessages];
+    formatted = new BitSet (maxMessages);
+    text = new char[maxChars];
+  }
+
+  void addListener (Listener listener)
+  {
+    if (!listeners.contains (listener))
+      listeners.add (listener);
+  }
+
+  void removeListener (Listener listener)
+  {
+    listeners.remove (listener);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Adding messages
+  // ---------------------------------------------------------------------------------//
+
+  // returns the row number of the new message
+  long add (ConsoleMessage message)
+  {
+    if (nextRow - firstRow == maxMessages)
+      dropFirst ();
+
+    int slot = slot (nextRow);
+    timeIds[slot] = times.add (message.getTime ());
+    systemIds[slot] = systems.add (message.getSystem ());
+    taskIds[slot] = tasks.add (message.getTask ());
+    respondIds[slot] = responds.add (message.getRespond ());
+    codeIds[slot] = codes.add (message.getMessageCode ());
+
+    int codeId = codeIds[slot];
+    while (codeIndex.size () <= codeId)
+      codeIndex.add (new Postings ());
+    codeIndex.get (codeId).add (nextRow);
+
+    storeText (slot, message);
+    fireRowsDropped ();
+
+    long row = nextRow++;
+    listeners.forEach (l -> l.rowAdded (row));
+    return row;
+  }
+
+  // Only the newest message can change (when its continuation lines arrive), so its
+  // text is simply appended again and the old copy is left for the ring to reuse.
+  void update (ConsoleMessage message)
+  {
+    if (nextRow == firstRow)
+      return;
+
+    long row = nextRow - 1;
+    cache.remove (row);
+    storeText (slot (row), message);
+    fireRowsDropped ();
+
+    listeners.forEach (l -> l.rowUpdated (row));
+  }
+
+  // the message is followed by each of its lines, separated by newlines
+  private void storeText (int slot, ConsoleMessage message)
+  {
+    StringBuilder value = new StringBuilder (message.getMessage ());
+    for (String line : message.getLines ())
+      value.append ('\n').append (line);
+
+    int length = Math.min (value.length (), text.length);
+
+    // drop old messages until the text fits without overwriting anything in use
+    while (firstRow < nextRow
+        && slot (firstRow) != slot
+        && textStarts[slot (firstRow)] < textEnd + length - text.length)
+      dropFirst ();
+
+    textStarts[slot] = textEnd;
+    textLengths[slot] = length;
+    messageLengths[slot] = Math.min (message.getMessage ().length (), length);
+    formatted.set (slot, message.isFormatted ());
+    for (int i = 0; i < length; i++)
+      text[(int) (textEnd++ % text.length)] = value.charAt (i);
+  }
+
+  private void dropFirst ()
+  {
+    ConsoleMessage message = cache.remove (firstRow);
+    if (!listeners.isEmpty ())
+      dropped.add (message == null ? build (slot (firstRow)) : message);
+
+    int slot = slot (firstRow++);
+    codeIndex.get (codeIds[slot]).prune (firstRow);
+
+    times.release (timeIds[slot]);
+    systems.release (systemIds[slot]);
+    tasks.release (taskIds[slot]);
+    responds.release (respondIds[slot]);
+    codes.release (codeIds[slot]);
+  }
+
+  private void fireRowsDropped ()
+  {
+    if (dropped.isEmpty ())
+      return;
+
+    List<ConsoleMessage> messages = new ArrayList<> (dropped);
+    dropped.clear ();
+    listeners.forEach (l -> l.rowsDropped (messages));
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Reading messages
+  // ---------------------------------------------------------------------------------//
+
+  // rows before this one have been dropped
+  long getFirstRow ()
+  {
+    return firstRow;
+  }
+
+  // sequence number of the newest message, or getFirstRow() - 1 when empty
+  long getLastRow ()
+  {
+    return nextRow - 1;
+  }
+
+  ConsoleMessage get (long row)
+  {
+    if (row < firstRow || row >= nextRow)
+      throw new IndexOutOfBoundsException ("Row: " + row + ", first: " + firstRow
+          + ", next: " + nextRow);
+
+    ConsoleMessage message = cache.get (row);
+    if (message == null)
+    {
+      message = build (slot (row));
+      cache.put (row, message);
+    }
+    return message;
+  }
+
+  private ConsoleMessage build (int slot)
+  {
+    char[] chars = new char[textLengths[slot]];
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = text[(int) ((textStarts[slot] + i) % text.length)];
+
+    String value = new String (chars);
+    int messageLength = messageLengths[slot];
+
+    List<String> lines = new ArrayList<> ();
+    int start = messageLength + 1;
+    while (start <= value.length ())
+    {
+      int end = value.indexOf ('\n', start);
+      if (end < 0)
+        end = value.length ();
+      lines.add (value.substring (start, end));
+      start = end + 1;
+    }
+
+    return new ConsoleMessage (times.get (timeIds[slot]), systems.get (systemIds[slot]),
+        tasks.get (taskIds[slot]), responds.get (respondIds[slot]),
+        codes.get (codeIds[slot]), value.substring (0, messageLength), lines,
+        formatted.get (slot));
+  }
+
+  int size ()
+  {
+    return (int) (nextRow - firstRow);
+  }
+
+  private int slot (long row)
+  {
+    return (int) (row % maxMessages);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Searching
+  // ---------------------------------------------------------------------------------//
+
+  // time, task and code are prefixes, text may appear anywhere in the message
+  long[] find (String time, String task, String code, String text)
+  {
+    Filter filter = new Filter (time, task, code, text);
+    long[] found = new long[size ()];
+    int totalFound = 0;
+
+    if (code.isEmpty ())
+    {
+      for (long row = firstRow; row < nextRow; row++)
+        if (filter.matches (row))
+          found[totalFound++] = row;
+      return Arrays.copyOf (found, totalFound);
+    }
+
+    // only the rows listed under a matching code need to be checked
+    long[] rows = new long[0];
+    int totalRows = 0;
+    for (int id = filter.codes.nextSetBit (0); id >= 0;
+        id = filter.codes.nextSetBit (id + 1))
+    {
+      Postings postings = codeIndex.get (id);
+      postings.prune (firstRow);
+      if (totalRows + postings.size () > rows.length)
+        rows = Arrays.copyOf (rows, Math.max (16, (totalRows + postings.size ()) * 2));
+      totalRows = postings.copyTo (rows, totalRows);
+    }
+
+    Arrays.sort (rows, 0, totalRows);
+    for (int i = 0; i < totalRows; i++)
+      if (filter.matches (rows[i]))
+        found[totalFound++] = rows[i];
+
+    return Arrays.copyOf (found, totalFound);
+  }
+
+  boolean matches (long row, String time, String task, String code, String text)
+  {
+    if (row < firstRow || row >= nextRow)
+      return false;
+
+    // a single row is cheaper to test directly than by building a Filter
+    int slot = slot (row);
+    return times.get (timeIds[slot]).startsWith (time)
+        && tasks.get (taskIds[slot]).startsWith (task)
+        && codes.get (codeIds[slot]).startsWith (code)
+        && (text.isEmpty () || textContains (slot, text));
+  }
+
+  private boolean textContains (int slot, String value)
+  {
+    long start = textStarts[slot];
+    int length = messageLengths[slot];
+
+    outer: for (int i = 0; i <= length - value.length (); i++)
+    {
+      for (int j = 0; j < value.length (); j++)
+        if (text[(int) ((start + i + j) % text.length)] != value.charAt (j))
+          continue outer;
+      return true;
+    }
+    return false;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Filter
+  // ---------------------------------------------------------------------------------//
+
+  // the prefix tests are done once per distinct value rather than once per row
+  private class Filter
+  {
+    private final BitSet times;
+    private final BitSet tasks;
+    private final BitSet codes;
+    private final String text;
+
+    Filter (String time, String task, String code, String text)
+    {
+      times = ConsoleMessageStore.this.times.startingWith (time);
+      tasks = ConsoleMessageStore.this.tasks.startingWith (task);
+      codes = ConsoleMessageStore.this.codes.startingWith (code);
+      this.text = text;
+    }
+
+    boolean matches (long row)
+    {
+      int slot = slot (row);
+      return times.get (timeIds[slot]) && tasks.get (taskIds[slot])
+          && codes.get (codeIds[slot]) && (text.isEmpty () || textContains (slot, text));
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Dictionary
+  // ---------------------------------------------------------------------------------//
+
+  // Each value counts the rows that use it. When the last of them is dropped the
+  // value is removed and its id is reused by the next new value.
+  private static class Dictionary
+  {
+    private final Map<String, Integer> ids = new HashMap<> ();
+    private final List<String> values = new ArrayList<> ();
+    private int[] counts = new int[16];
+    private final Deque<Integer> freeIds = new ArrayDeque<> ();
+
+    int add (String value)
+    {
+      Integer id = ids.get (value);
+      if (id == null)
+      {
+        if (freeIds.isEmpty ())
+        {
+          id = values.size ();
+          values.add (value);
+          if (id == counts.length)
+            counts = Arrays.copyOf (counts, counts.length * 2);
+        }
+        else
+        {
+          id = freeIds.pop ();
+          values.set (id, value);
+        }
+        ids.put (value, id);
+      }
+      ++counts[id];
+      return id;
+    }
+
+    void release (int id)
+    {
+      if (--counts[id] == 0)
+      {
+        ids.remove (values.get (id));
+        values.set (id, null);
+        freeIds.push (id);
+      }
+    }
+
+    String get (int id)
+    {
+      return values.get (id);
+    }
+
+    BitSet startingWith (String prefix)
+    {
+      BitSet bits = new BitSet (values.size ());
+      for (int id = 0; id < values.size (); id++)
+      {
+        String value = values.get (id);
+        if (value != null && value.startsWith (prefix))
+          bits.set (id);
+      }
+      return bits;
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Postings
+  // ---------------------------------------------------------------------------------//
+
+  // ascending row numbers for a single message code
+  private static class Postings
+  {
+    private long[] rows = new long[4];
+    private int first;
+    private int last;
+
+    void add (long row)
+    {
+      if (last == rows.length)
+      {
+        // reclaim pruned entries before growing
+        if (first > rows.length / 2)
+        {
+          System.arraycopy (rows, first, rows, 0, last - first);
+          last -= first;
+          first = 0;
+        }
+        else
+          rows = Arrays.copyOf (rows, rows.length * 2);
+      }
+      rows[last++] = row;
+    }
+
+    // remove rows that are no longer in the store
+    void prune (long firstRow)
+    {
+      while (first < last && rows[first] < firstRow)
+        ++first;
+      if (first == last)
+        first = last = 0;
+    }
+
+    int size ()
+    {
+      return last - first;
+    }
+
+    int copyTo (long[] target, int offset)
+    {
+      System.arraycopy (rows, first, target, offset, last - first);
+      return offset + last - first;
+    }
+  }
+}
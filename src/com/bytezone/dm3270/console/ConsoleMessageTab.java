@@ -1,7 +1,5 @@
 package com.bytezone.dm3270.console;
 
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
@@ -10,7 +8,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 
-public class ConsoleMessageTab extends Tab implements ConsoleMessageListener
+public class ConsoleMessageTab extends Tab
 {
   private final ConsoleMessageTable consoleMessageTable = new ConsoleMessageTable ();
   private final TextField txtTask = new TextField ();
@@ -18,6 +16,8 @@ public class ConsoleMessageTab extends Tab implements ConsoleMessageListener
   private final TextField txtMessageText = new TextField ();
   private final TextField txtTime = new TextField ();
 
+  private ConsoleMessageRows rows;               // the rows that pass the filters
+
   public ConsoleMessageTab ()
   {
     super ("Filters");
@@ -43,45 +43,41 @@ public class ConsoleMessageTab extends Tab implements ConsoleMessageListener
 
     setContent (borderPane);
 
-    FilteredList<ConsoleMessage> filteredData =
-        new FilteredList<> (consoleMessageTable.messages, m -> true);
-
-    SortedList<ConsoleMessage> sortedData = new SortedList<> (filteredData);
-    sortedData.comparatorProperty ().bind (consoleMessageTable.comparatorProperty ());
-
-    consoleMessageTable.setItems (sortedData);
+    // the table's sort columns reorder the filtered rows rather than a copy of them
+    consoleMessageTable.setSortPolicy (table ->
+    {
+      if (rows != null)
+        rows.setComparator (table.getComparator ());
+      return true;
+    });
 
     txtTime.textProperty ()
-        .addListener ( (observable, oldValue, newValue) -> setFilter (filteredData));
+        .addListener ( (observable, oldValue, newValue) -> setFilter ());
     txtTask.textProperty ()
-        .addListener ( (observable, oldValue, newValue) -> setFilter (filteredData));
+        .addListener ( (observable, oldValue, newValue) -> setFilter ());
     txtMessageCode.textProperty ()
-        .addListener ( (observable, oldValue, newValue) -> setFilter (filteredData));
+        .addListener ( (observable, oldValue, newValue) -> setFilter ());
     txtMessageText.textProperty ()
-        .addListener ( (observable, oldValue, newValue) -> setFilter (filteredData));
+        .addListener ( (observable, oldValue, newValue) -> setFilter ());
   }
 
-  private void setFilter (FilteredList<ConsoleMessage> filteredData)
+  // the table shows the messages held by the log's store
+  void setConsoleLog (ConsoleLog consoleLog)
   {
-    String time = txtTime.getText ();
-    String task = txtTask.getText ();
-    String code = txtMessageCode.getText ();
-    String text = txtMessageText.getText ();
+    if (rows != null)
+      rows.detach ();
 
-    filteredData.setPredicate (message ->
-    {
-      boolean p0 = message.getTime ().startsWith (time);
-      boolean p1 = message.getTask ().startsWith (task);
-      boolean p2 = message.getMessageCode ().startsWith (code);
-      boolean p3 = message.getMessage ().contains (text);
-      return p0 && p1 && p2 && p3;
-    });
+    rows = new ConsoleMessageRows (consoleLog.getStore ());
+    setFilter ();
+    rows.setComparator (consoleMessageTable.getComparator ());
+    consoleMessageTable.setItems (rows);
   }
 
-  @Override
-  public void consoleMessage (ConsoleMessage consoleMessage)
+  private void setFilter ()
   {
-    consoleMessageTable.messages.add (consoleMessage);
+    if (rows != null)
+      rows.setFilter (txtTime.getText (), txtTask.getText (), txtMessageCode.getText (),
+                      txtMessageText.getText ());
   }
 
   private void select (ConsoleMessage consoleMessage)
@@ -2,14 +2,10 @@ package com.bytezone.dm3270.console;
 
 import com.bytezone.dm3270.utilities.DefaultTable;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.scene.control.Label;
 
 public class ConsoleMessageTable extends DefaultTable<ConsoleMessage>
 {
-  final ObservableList<ConsoleMessage> messages = FXCollections.observableArrayList ();
-
   public ConsoleMessageTable ()
   {
     addColumnString ("Time", 100, Justification.CENTER, "time");
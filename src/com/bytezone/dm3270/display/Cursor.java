@@ -79,6 +79,9 @@ public class Cursor
     if (currentField != null && currentField.isUnprotected ()
         && currentField.getCursorOffset () > 0)
     {
+      if (screen.isDbcs (currentPosition))      // only typeDbcsChar() can go here
+        return;
+
       if (screen.isInsertMode ())
       {
         int start = currentField.getCursorOffset ();
@@ -90,6 +93,7 @@ public class Cursor
           return;
 
         currentField.push (start, end);
+        screen.dbcsChanged (currentField);
         currentField.draw ();     // draws the field without the cursor
       }
 
@@ -104,6 +108,33 @@ public class Cursor
     }
   }
 
+  // called from ConsoleKeyEvent when the user types a double-byte character, which
+  // can only replace one that is already between SO and SI
+  public boolean typeDbcsChar (byte lead, byte trail)
+  {
+    if (currentField == null || !currentField.isUnprotected ()
+        || currentField.getCursorOffset () == 0)
+      return false;
+
+    int position = currentPosition;
+    if (screen.isDbcsTrail (position))
+      position = screen.validate (position - 1);
+    else if (!screen.isDbcs (position))
+      return false;
+
+    int trailPosition = screen.validate (position + 1);
+    screen.getScreenPosition (position).setChar (lead);
+    screen.getScreenPosition (trailPosition).setChar (trail);
+    currentField.setModified (true);
+
+    int newPosition = screen.validate (trailPosition + 1);
+    if (!currentField.contains (newPosition))
+      newPosition = currentField.getNextUnprotectedField ().getFirstLocation ();
+
+    moveTo (newPosition);
+    return true;
+  }
+
   public void home ()
   {
     Optional<Field> field = screen.getHomeField ();
@@ -117,12 +148,17 @@ public class Cursor
         && currentField.getCursorOffset () > 0)
     {
       int start = currentField.getCursorOffset ();
-      if (start > 1)
+
+      // a double-byte character is removed as a pair
+      int width = screen.isDbcsTrail (screen.validate (currentPosition - 1)) ? 2 : 1;
+      if (start > width)
       {
-        moveTo (screen.validate (currentPosition - 1));
+        moveTo (screen.validate (currentPosition - width));
         int end = currentField.getDisplayLength ();
-        currentField.pull (start - 1, end);
+        for (int i = 0; i < width; i++)
+          currentField.pull (start - width, end);
         currentField.setModified (true);
+        screen.dbcsChanged (currentField);
         notifyFieldChange (currentField, currentField);
       }
 
@@ -137,11 +173,21 @@ public class Cursor
         && currentField.getCursorOffset () > 0)
     {
       int start = currentField.getCursorOffset ();
+      if (screen.isDbcsTrail (currentPosition))
+      {
+        moveTo (screen.validate (currentPosition - 1));
+        --start;
+      }
+
+      // a double-byte character is removed as a pair
+      int width = screen.isDbcs (currentPosition) ? 2 : 1;
       if (start > 0)
       {
         int end = currentField.getDisplayLength ();
-        currentField.pull (start, end);
+        for (int i = 0; i < width; i++)
+          currentField.pull (start, end);
         currentField.setModified (true);
+        screen.dbcsChanged (currentField);
         notifyFieldChange (currentField, currentField);
       }
       currentField.draw ();                      // draws the field without the cursor
@@ -155,11 +201,15 @@ public class Cursor
         && currentField.getCursorOffset () > 0)
     {
       int start = currentField.getCursorOffset ();
+      if (screen.isDbcsTrail (currentPosition))
+        --start;                                // include its lead
+
       if (start > 0)
       {
         int end = currentField.getDisplayLength ();
         currentField.clearData (start, end);
         currentField.setModified (true);
+        screen.dbcsChanged (currentField);
         notifyFieldChange (currentField, currentField);
       }
       currentField.draw ();                     // draws the field without the cursor
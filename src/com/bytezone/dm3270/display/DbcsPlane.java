@@ -0,0 +1,117 @@
+package com.bytezone.dm3270.display;
+
+import com.bytezone.dm3270.codepage.CodePage;
+
+// Marks the screen positions that hold the two halves of a double-byte character.
+// ScreenPosition still stores a single byte, and this plane (one byte per position)
+// records whether that byte is the lead or trail of a pair. Pairs start after a
+// SHIFT_OUT and continue until a SHIFT_IN or the end of the field. The SO and SI
+// themselves stay single-byte positions, and display as blanks.
+//
+// Only created when the screen uses a mixed code page, so single-byte sessions never
+// pay for the scan.
+
+final class DbcsPlane
+{
+  private static final byte SBCS = 0;
+  private static final byte LEAD = 1;
+  private static final byte TRAIL = 2;
+
+  private final byte[] flags;
+  private boolean active;                       // the screen contains a SHIFT_OUT
+
+  DbcsPlane (int size)
+  {
+    flags = new byte[size];
+  }
+
+  boolean isActive ()
+  {
+    return active;
+  }
+
+  boolean isDbcs (int position)
+  {
+    return flags[position] != SBCS;
+  }
+
+  boolean isLead (int position)
+  {
+    return flags[position] == LEAD;
+  }
+
+  boolean isTrail (int position)
+  {
+    return flags[position] == TRAIL;
+  }
+
+  // called from Screen.buildFields()
+  // called from Screen.draw()
+  // called from HistoryScreen.createScreen()
+  // only the first size positions are on the current screen
+  void update (ScreenPosition[] screenPositions, int size)
+  {
+    // start at the first field so that a field which wraps is scanned in one piece
+    int first = 0;
+    for (int i = 0; i < size; i++)
+      if (screenPositions[i].isStartField ())
+      {
+        first = i;
+        break;
+      }
+
+    active = false;
+    Scanner scanner = new Scanner ();
+    for (int i = 0; i < size; i++)
+      scanner.next (screenPositions[(first + i) % size]);
+  }
+
+  // called from Screen.dbcsChanged() after the user has edited a field
+  void update (Field field)
+  {
+    Scanner scanner = new Scanner ();
+    for (ScreenPosition screenPosition : field)
+      scanner.next (screenPosition);
+  }
+
+  private class Scanner
+  {
+    private boolean shifted;
+    private int lead = -1;                      // waiting for its trail byte
+
+    void next (ScreenPosition screenPosition)
+    {
+      int position = screenPosition.getPosition ();
+      flags[position] = SBCS;
+
+      if (screenPosition.isStartField ())
+      {
+        shifted = false;
+        lead = -1;
+        return;
+      }
+
+      byte value = screenPosition.getByte ();
+      if (value == CodePage.SHIFT_OUT)
+      {
+        shifted = true;
+        active = true;
+        lead = -1;
+      }
+      else if (value == CodePage.SHIFT_IN)
+      {
+        shifted = false;
+        lead = -1;                              // an odd byte stays single
+      }
+      else if (shifted)
+        if (lead < 0)
+          lead = position;
+        else
+        {
+          flags[lead] = LEAD;
+          flags[position] = TRAIL;
+          lead = -1;
+        }
+    }
+  }
+}
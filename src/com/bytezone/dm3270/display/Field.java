@@ -1,11 +1,11 @@
 package com.bytezone.dm3270.display;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import com.bytezone.dm3270.attributes.StartFieldAttribute;
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.plugins.PluginField;
 import com.bytezone.dm3270.plugins.ScreenLocation;
 
@@ -254,32 +254,76 @@ public class Field implements Iterable<ScreenPosition>
     if (startPosition == endPosition)
       return "";
 
-    char[] buffer = new char[getDisplayLength ()];
+    DbcsPlane dbcsPlane = screen.getDbcsPlane ();
+    if (dbcsPlane != null && dbcsPlane.isActive ())
+      return getDbcsText (dbcsPlane);
+
+    // translate the whole field at once, then patch any graphics characters
+    byte[] buffer = new byte[getDisplayLength ()];
     int ptr = 0;
+    boolean hasGraphics = false;
 
     for (ScreenPosition screenPosition : screenPositions)
       if (!screenPosition.isStartField ())           // skip the start field attribute
         if (ptr < buffer.length)
-          buffer[ptr++] = screenPosition.getChar ();
+        {
+          buffer[ptr++] = screenPosition.getByte ();
+          hasGraphics |= screenPosition.isGraphicsChar ();
+        }
         else
           System.out.printf ("Too long: %d%n", ptr);
 
-    return new String (buffer);
-  }
+    char[] chars = new char[ptr];
+    screen.getCodePage ().translateScreen (buffer, 0, ptr, chars);
 
-  // called from TSOCommand.execute()
-  public void setText (String text)
-  {
-    try
+    if (hasGraphics)
     {
-      erase ();                                     // sets the field to modified
-      setText (text.getBytes ("CP1047"));
-      draw ();
+      ptr = 0;
+      for (ScreenPosition screenPosition : screenPositions)
+        if (!screenPosition.isStartField () && ptr < chars.length)
+        {
+          if (screenPosition.isGraphicsChar ())
+            chars[ptr] = screenPosition.getChar ();
+          ptr++;
+        }
     }
-    catch (UnsupportedEncodingException e)
+
+    return new String (chars);
+  }
+
+  // each double-byte character becomes a single character
+  private String getDbcsText (DbcsPlane dbcsPlane)
+  {
+    StringBuilder text = new StringBuilder (getDisplayLength ());
+    CodePage codePage = screen.getCodePage ();
+    ScreenPosition lead = null;
+
+    for (ScreenPosition screenPosition : screenPositions)
     {
-      e.printStackTrace ();
+      if (screenPosition.isStartField ())
+        continue;
+
+      int position = screenPosition.getPosition ();
+      if (dbcsPlane.isLead (position))
+        lead = screenPosition;
+      else if (dbcsPlane.isTrail (position) && lead != null)
+      {
+        text.append (codePage.toDbcsChar (lead.getByte (), screenPosition.getByte ()));
+        lead = null;
+      }
+      else
+        text.append (screenPosition.getChar ());
     }
+
+    return text.toString ();
+  }
+
+  // called from TSOCommand.execute()
+  public void setText (String text)
+  {
+    erase ();                                       // sets the field to modified
+    setText (screen.getCodePage ().getBytes (text));
+    draw ();
   }
 
   // called from Screen.setFieldText()
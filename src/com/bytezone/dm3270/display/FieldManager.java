@@ -109,7 +109,8 @@ public class FieldManager implements Initiator
     hiddenProtectedFields = 0;
     hiddenUnprotectedFields = 0;
 
-    for (List<ScreenPosition> protoField : divide (screenPositions))
+    for (List<ScreenPosition> protoField : divide (screenPositions,
+                                                   screenDimensions.size))
     {
       addField (new Field (screen, protoField));
       setContexts (protoField);
@@ -332,7 +333,8 @@ public class FieldManager implements Initiator
   // Divide the ScreenPositions into fields
   // ---------------------------------------------------------------------------------//
 
-  static List<List<ScreenPosition>> divide (ScreenPosition[] screenPositions)
+  // only the first size positions are on the current screen
+  static List<List<ScreenPosition>> divide (ScreenPosition[] screenPositions, int size)
   {
     List<List<ScreenPosition>> components = new ArrayList<> ();
     List<ScreenPosition> positions = new ArrayList<ScreenPosition> ();
@@ -362,7 +364,7 @@ public class FieldManager implements Initiator
         positions.add (screenPosition);     // collect next field's positions
 
       // increment ptr and wrap around
-      if (++ptr == screenPositions.length)  // faster than validate()
+      if (++ptr == size)                    // faster than validate()
       {
         ptr = 0;
         if (first == -1)
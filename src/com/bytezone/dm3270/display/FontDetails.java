@@ -1,14 +1,19 @@
 package com.bytezone.dm3270.display;
 
+import java.util.Collections;
+
 import javafx.geometry.Bounds;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 
 public class FontDetails
 {
+  private static final int MAX_COLUMNS = 132;
+
   public final int width;
   public final int height;
   public final int ascent;
+  public final boolean gridAligned;                 // used by RowRenderer
   private final int descent;
   public final Font font;
 
@@ -28,6 +33,11 @@ public class FontDetails
     width = (int) (bounds.getWidth () + 0.5);
     ascent = (int) (-bounds.getMinY () + 0.5);
     descent = height - ascent;
+
+    // can a whole row be drawn with one fillText() without drifting off the grid?
+    text.setText (String.join ("", Collections.nCopies (MAX_COLUMNS, "W")));
+    gridAligned =
+        Math.abs (text.getLayoutBounds ().getWidth () - width * MAX_COLUMNS) < 0.5;
   }
 
   @Override
@@ -0,0 +1,122 @@
+package com.bytezone.dm3270.display;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
+
+// Pre-drawn character cells, so that ScreenPosition.draw() can copy a cell with a
+// single drawImage() instead of filling the background and laying out a one
+// character string with fillText(). Each combination of foreground, background and
+// underscore gets its own 16 x 16 grid of cells (one for each character in
+// ScreenPosition's charString table), which is drawn the first time that
+// combination is used. Every grid is thrown away when FontManagerType1 creates a
+// new FontDetails, as the cell size has changed.
+//
+// The grids are drawn at the output scale of the window that the screen is in, so
+// that the cells stay sharp on a HiDPI display. They are thrown away as well when
+// the window moves to a display with a different scale.
+//
+// Only used on the application thread.
+
+class GlyphAtlas
+{
+  private static final int GRID_SIZE = 16;              // 16 x 16 = 256 characters
+
+  private final String[] charString;
+  private FontDetails fontDetails;
+  private double scaleX = 1;
+  private double scaleY = 1;
+  private final Map<Color, Map<Color, WritableImage[]>> grids = new IdentityHashMap<> ();
+
+  GlyphAtlas (String[] charString)
+  {
+    this.charString = charString;
+  }
+
+  // called from ScreenPosition.draw()
+  void drawCell (GraphicsContext gc, FontDetails fontDetails, Color foreground,
+      Color background, boolean underscore, int charIndex, double x, double y)
+  {
+    Scene scene = gc.getCanvas ().getScene ();
+    Window window = scene == null ? null : scene.getWindow ();
+    double scaleX = window == null ? 1 : window.getOutputScaleX ();
+    double scaleY = window == null ? 1 : window.getOutputScaleY ();
+
+    if (fontDetails != this.fontDetails || scaleX != this.scaleX
+        || scaleY != this.scaleY)
+    {
+      grids.clear ();
+      this.fontDetails = fontDetails;
+      this.scaleX = scaleX;
+      this.scaleY = scaleY;
+    }
+
+    Map<Color, WritableImage[]> backgrounds = grids.get (foreground);
+    if (backgrounds == null)
+    {
+      backgrounds = new IdentityHashMap<> ();
+      grids.put (foreground, backgrounds);
+    }
+
+    WritableImage[] images = backgrounds.get (background);
+    if (images == null)
+    {
+      images = new WritableImage[2];                    // plain, underscored
+      backgrounds.put (background, images);
+    }
+
+    int index = underscore ? 1 : 0;
+    if (images[index] == null)
+      images[index] = createGrid (foreground, background, underscore);
+
+    // the source rectangle is in image pixels, which are scaled
+    int width = fontDetails.width;
+    int height = fontDetails.height;
+    gc.drawImage (images[index], charIndex % GRID_SIZE * width * scaleX,
+                  charIndex / GRID_SIZE * height * scaleY, width * scaleX,
+                  height * scaleY, x, y, width, height);
+  }
+
+  private WritableImage createGrid (Color foreground, Color background,
+      boolean underscore)
+  {
+    int width = fontDetails.width;
+    int height = fontDetails.height;
+
+    Canvas canvas = new Canvas (width * GRID_SIZE, height * GRID_SIZE);
+    GraphicsContext gc = canvas.getGraphicsContext2D ();
+    gc.setFont (fontDetails.font);
+
+    gc.setFill (background);
+    gc.fillRect (0, 0, canvas.getWidth (), canvas.getHeight ());
+
+    gc.setFill (foreground);
+    gc.setStroke (foreground);
+
+    for (int i = 0; i < charString.length; i++)
+    {
+      int x = i % GRID_SIZE * width;
+      int y = i / GRID_SIZE * height;
+      gc.fillText (charString[i], x, y + fontDetails.ascent);
+
+      if (underscore)
+      {
+        double y2 = y + 0.5 + height - 1;       // same as ScreenPosition.draw()
+        gc.strokeLine (x + 0.5, y2, x + 0.5 + width, y2);
+      }
+    }
+
+    SnapshotParameters parameters = new SnapshotParameters ();
+    parameters.setFill (background);
+    parameters.setTransform (Transform.scale (scaleX, scaleY));
+    return canvas.snapshot (parameters, null);
+  }
+}
@@ -3,6 +3,7 @@ package com.bytezone.dm3270.display;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.commands.AIDCommand;
 
 public class HistoryManager
@@ -13,6 +14,7 @@ public class HistoryManager
   private final ContextManager contextManager;
   private final FieldManager fieldManager;
   private ScreenDimensions screenDimensions;
+  private CodePage codePage = CodePage.getDefault ();
 
   private boolean keyboardLocked;       // save previous setting
   private boolean paused;
@@ -26,6 +28,12 @@ public class HistoryManager
     this.fieldManager = fieldManager;
   }
 
+  // called from Screen.setCodePage()
+  void setCodePage (CodePage codePage)
+  {
+    this.codePage = codePage;
+  }
+
   // called from Screen.checkRecording()
   void saveScreen (AIDCommand command)
   {
@@ -72,7 +80,7 @@ public class HistoryManager
         --currentScreen;
     }
     screens.add (new HistoryScreen (screenDimensions, command, contextManager,
-        fieldManager));
+        fieldManager, codePage));
   }
 
   public int size ()
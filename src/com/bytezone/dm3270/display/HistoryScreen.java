@@ -3,6 +3,7 @@ package com.bytezone.dm3270.display;
 import java.util.List;
 
 import com.bytezone.dm3270.attributes.ColorAttribute;
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.commands.AIDCommand;
 import com.bytezone.dm3270.orders.Order;
 
@@ -17,17 +18,20 @@ public class HistoryScreen extends Canvas implements DisplayScreen
   private final AIDCommand command;
   private final ContextManager contextManager;
   private final FieldManager fieldManager;
+  private final CodePage codePage;
+  private DbcsPlane dbcsPlane;
   private Pen pen;
   private final GraphicsContext gc;
 
   // created by HistoryManager.add()
   HistoryScreen (ScreenDimensions screenDimensions, AIDCommand command,
-      ContextManager contextManager, FieldManager fieldManager)
+      ContextManager contextManager, FieldManager fieldManager, CodePage codePage)
   {
     this.screenDimensions = screenDimensions;
     this.contextManager = contextManager;
     this.fieldManager = fieldManager;
     this.command = command;
+    this.codePage = codePage;
 
     gc = getGraphicsContext2D ();
   }
@@ -49,8 +53,7 @@ public class HistoryScreen extends Canvas implements DisplayScreen
     if (screenPositions == null)
       createScreen (fontDetails);
 
-    for (ScreenPosition screenPosition : screenPositions)
-      screenPosition.draw (false);
+    new RowRenderer ().draw (gc, screenPositions, screenDimensions, dbcsPlane);
   }
 
   private void createScreen (FontDetails fontDetails)
@@ -63,13 +66,21 @@ public class HistoryScreen extends Canvas implements DisplayScreen
 
     screenPositions = new ScreenPosition[screenDimensions.size];
     pen = Pen.getInstance (screenPositions, gc, contextManager, screenDimensions);
+    for (ScreenPosition screenPosition : screenPositions)
+      screenPosition.setCodePage (codePage);
 
     clearScreen ();
     for (Order order : command)
       order.process (this);
 
-    List<List<ScreenPosition>> protoFields = FieldManager.divide (screenPositions);
-    for (List<ScreenPosition> protoField : protoFields)
+    if (codePage.isDbcs ())
+    {
+      dbcsPlane = new DbcsPlane (screenDimensions.size);
+      dbcsPlane.update (screenPositions, screenDimensions.size);
+    }
+
+    for (List<ScreenPosition> protoField : FieldManager.divide (screenPositions,
+                                                                screenDimensions.size))
       fieldManager.setContexts (protoField);
   }
 
@@ -25,6 +25,10 @@ public interface Pen extends Iterable<ScreenPosition>
 
   void write (byte b);
 
+  void write (byte[] buffer, int offset, int length);
+
+  void repeat (byte b, int count);
+
   void moveRight ();
 
   void eraseEOF ();
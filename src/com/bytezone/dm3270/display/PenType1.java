@@ -15,7 +15,7 @@ class PenType1 implements Pen
 
   private int currentPosition;
   private boolean formattedScreen;
-  private ScreenDimensions screenDimensions;
+  private ScreenDimensions screenDimensions;       // may use fewer than all positions
 
   private final List<Attribute> pendingAttributes = new ArrayList<> ();
 
@@ -109,6 +109,56 @@ class PenType1 implements Pen
     moveRight ();
   }
 
+  // Same as calling write(b) for each byte, but the positions are filled in at most
+  // two contiguous runs (split where the text wraps past the end of the screen).
+  // called from TextOrder.process()
+  @Override
+  public void write (byte[] buffer, int offset, int length)
+  {
+    while (length > 0)
+    {
+      int count = Math.min (length, screenDimensions.size - currentPosition);
+      for (int i = 0; i < count; i++)
+      {
+        ScreenPosition screenPosition = screenPositions[currentPosition + i];
+        screenPosition.reset ();
+        screenPosition.setChar (buffer[offset + i]);
+      }
+      advance (count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  // Same as calling write(b) count times.
+  // called from FormatControlOrder.process()
+  // called from RepeatToAddressOrder.process()
+  @Override
+  public void repeat (byte b, int count)
+  {
+    while (count > 0)
+    {
+      int run = Math.min (count, screenDimensions.size - currentPosition);
+      for (int i = 0; i < run; i++)
+      {
+        ScreenPosition screenPosition = screenPositions[currentPosition + i];
+        screenPosition.reset ();
+        screenPosition.setChar (b);
+      }
+      advance (run);
+      count -= run;
+    }
+  }
+
+  // moveRight() for a run of positions - any pending attributes belong to the first
+  private void advance (int count)
+  {
+    if (pendingAttributes.size () > 0)
+      applyAttributes (screenPositions[currentPosition]);
+
+    currentPosition = validate (currentPosition + count);
+  }
+
   private void applyAttributes (ScreenPosition screenPosition)
   {
     for (Attribute attribute : pendingAttributes)
@@ -219,10 +269,10 @@ class PenType1 implements Pen
   public int validate (int position)
   {
     while (position < 0)
-      position += screenPositions.length;
+      position += screenDimensions.size;
 
-    while (position >= screenPositions.length)
-      position -= screenPositions.length;
+    while (position >= screenDimensions.size)
+      position -= screenDimensions.size;
 
     return position;
   }
@@ -241,7 +291,7 @@ class PenType1 implements Pen
     StringBuilder text = new StringBuilder ();
 
     int pos = 0;
-    for (ScreenPosition sp : screenPositions)
+    for (ScreenPosition sp : this)
     {
       if (sp.isStartField ())
         text.append ("%");
@@ -279,7 +329,7 @@ class PenType1 implements Pen
       @Override
       public boolean hasNext ()
       {
-        return screenPositions.length > pos;
+        return screenDimensions.size > pos;
       }
 
       @Override
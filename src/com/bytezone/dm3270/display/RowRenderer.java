@@ -0,0 +1,122 @@
+package com.bytezone.dm3270.display;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Draws a whole screen a row at a time. Each row is split into runs of cells that
+// share a ScreenContext and visibility, and each run is drawn with one fillRect()
+// for the background and (when the font's advance matches the cell width) one
+// fillText() and one underscore for the text. Runs that are all blanks need only the
+// fillRect(). Graphics characters and runs in a font that would drift off the cell
+// grid are drawn one cell at a time by ScreenPosition.draw(). Double-byte characters
+// (only when the screen has a DbcsPlane) are drawn a pair of cells at a time. The
+// caller draws the cursor afterwards, as before.
+
+final class RowRenderer
+{
+  private static final int MARGIN = 4;                  // same as ScreenPosition
+
+  private final StringBuilder text = new StringBuilder ();
+
+  // called from Screen.draw()
+  // called from HistoryScreen.drawScreen()
+  void draw (GraphicsContext gc, ScreenPosition[] screenPositions,
+      ScreenDimensions screenDimensions, DbcsPlane dbcsPlane)
+  {
+    int columns = screenDimensions.columns;
+    boolean dbcs = dbcsPlane != null && dbcsPlane.isActive ();
+
+    for (int row = 0; row < screenDimensions.rows; row++)
+    {
+      int first = row * columns;
+      int last = first + columns;
+
+      int start = first;
+      while (start < last)
+      {
+        ScreenPosition startPosition = screenPositions[start];
+        if (startPosition.isGraphicsChar ())
+        {
+          startPosition.draw (false);
+          ++start;
+          continue;
+        }
+
+        if (dbcs && dbcsPlane.isDbcs (start))
+        {
+          if (dbcsPlane.isTrail (start))          // its lead was at the end of a row
+            startPosition.drawBackground (false);
+          else
+            startPosition.drawDbcs (
+                screenPositions[(start + 1) % screenDimensions.size], false);
+          start += dbcsPlane.isLead (start) ? 2 : 1;
+          continue;
+        }
+
+        int end = start + 1;
+        while (end < last && screenPositions[end].matches (startPosition)
+            && !(dbcs && dbcsPlane.isDbcs (end)))
+          ++end;
+
+        drawRun (gc, screenPositions, start, end, columns);
+        start = end;
+      }
+    }
+  }
+
+  // cells start to end-1 are on the same row and share a context and visibility
+  private void drawRun (GraphicsContext gc, ScreenPosition[] screenPositions, int start,
+      int end, int columns)
+  {
+    ScreenPosition startPosition = screenPositions[start];
+    ScreenContext screenContext = startPosition.getScreenContext ();
+    FontDetails fontDetails = screenContext.fontDetails;
+    boolean visible = startPosition.isVisible ();
+
+    text.setLength (0);
+    boolean blank = true;
+    if (visible)
+      for (int i = start; i < end; i++)
+      {
+        String charString = screenPositions[i].getCharString ();
+        text.append (charString);
+        if (blank && !charString.equals (" "))
+          blank = false;
+      }
+
+    if (!blank && !fontDetails.gridAligned)
+    {
+      for (int i = start; i < end; i++)
+        screenPositions[i].draw (false);
+      return;
+    }
+
+    double x = MARGIN + start % columns * fontDetails.width;
+    double y = MARGIN + start / columns * fontDetails.height;
+    double width = (end - start) * fontDetails.width;
+
+    Color foreground = screenContext.reverseVideo && visible
+        ? screenContext.backgroundColor : screenContext.foregroundColor;
+    Color background = screenContext.reverseVideo && visible
+        ? screenContext.foregroundColor : screenContext.backgroundColor;
+
+    gc.setFill (background);
+    gc.fillRect (x, y, width, fontDetails.height);
+
+    if (!visible)
+      return;
+
+    if (!blank)
+    {
+      gc.setFill (foreground);
+      gc.fillText (text.toString (), x, y + fontDetails.ascent);
+    }
+
+    if (screenContext.underscore)
+    {
+      gc.setStroke (foreground);
+      double y2 = y + 0.5 + fontDetails.height - 1;   // offset for Windows
+      gc.strokeLine (x + 0.5, y2, x + 0.5 + width, y2);
+    }
+  }
+}
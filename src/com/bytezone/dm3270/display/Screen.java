@@ -4,7 +4,7 @@ import static com.bytezone.dm3270.application.Console.Function.TERMINAL;
 import static com.bytezone.dm3270.commands.AIDCommand.NO_AID_SPECIFIED;
 
 import java.awt.Toolkit;
-import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -18,6 +18,7 @@ import com.bytezone.dm3270.application.KeyboardStatusListener;
 import com.bytezone.dm3270.assistant.TransfersStage;
 import com.bytezone.dm3270.attributes.Attribute;
 import com.bytezone.dm3270.attributes.ColorAttribute;
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.commands.AIDCommand;
 import com.bytezone.dm3270.commands.Command;
 import com.bytezone.dm3270.commands.SystemMessage;
@@ -30,7 +31,9 @@ import com.bytezone.dm3270.filetransfer.TransferManager;
 import com.bytezone.dm3270.filetransfer.TransferManager.TransferStatus;
 import com.bytezone.dm3270.filetransfer.TransferMenu;
 import com.bytezone.dm3270.orders.BufferAddress;
+import com.bytezone.dm3270.orders.Order;
 import com.bytezone.dm3270.plugins.PluginsStage;
+import com.bytezone.dm3270.printer.ScsPrinter;
 import com.bytezone.dm3270.streams.TelnetState;
 import com.bytezone.dm3270.streams.TelnetStateListener;
 import com.bytezone.dm3270.structuredfields.SetReplyModeSF;
@@ -47,7 +50,6 @@ public class Screen extends Canvas
 {
   private static final Toolkit defaultToolkit = Toolkit.getDefaultToolkit ();
   private static final boolean SHOW_CURSOR = true;
-  private static final boolean HIDE_CURSOR = false;
   private static final byte[] saveScreenReplyTypes =
       { Attribute.XA_HIGHLIGHTING, Attribute.XA_FGCOLOR, Attribute.XA_CHARSET,
         Attribute.XA_BGCOLOR, Attribute.XA_TRANSPARENCY };
@@ -73,9 +75,14 @@ public class Screen extends Canvas
   private final GraphicsContext gc;
   private final ScreenDimensions defaultScreenDimensions;
   private ScreenDimensions alternateScreenDimensions;
+  private final ScreenDimensions largestScreenDimensions;     // sizes screenPositions
 
   private final Pen pen;
   private final Cursor cursor;
+  private final RowRenderer rowRenderer = new RowRenderer ();
+  private CodePage codePage = CodePage.getDefault ();
+  private DbcsPlane dbcsPlane;                  // only for mixed code pages
+  private volatile ScsPrinter printer;          // only for printer sessions
   private ScreenOption currentScreen;
 
   private byte currentAID;
@@ -86,6 +93,7 @@ public class Screen extends Canvas
   private boolean keyboardLocked;
   private boolean insertMode;
   private boolean readModifiedAll = false;
+  private boolean replaying;          // rebuilding a screen that has already been seen
 
   public enum BuildInstruction
   {
@@ -106,8 +114,11 @@ public class Screen extends Canvas
     this.function = function;
     this.telnetState = telnetState;
 
+    // the positions are allocated once, for the largest screen, and each screen size
+    // just uses the first rows x columns of them
     ScreenDimensions screenDimensions = alternateScreenDimensions == null
         ? defaultScreenDimensions : alternateScreenDimensions;
+    largestScreenDimensions = screenDimensions;
 
     cursor = new Cursor (this, screenDimensions);
     gc = getGraphicsContext2D ();
@@ -207,7 +218,8 @@ public class Screen extends Canvas
 
   public void setIsConsole ()
   {
-    consolePane.setIsConsole (true);
+    if (consolePane != null)            // null when running headless
+      consolePane.setIsConsole (true);
     consoleLogStage.setConsoleLog (systemMessage.getConsoleLog ());
   }
 
@@ -225,7 +237,8 @@ public class Screen extends Canvas
 
   public void setStatusText (String text)
   {
-    consolePane.setStatusText (text);
+    if (consolePane != null)
+      consolePane.setStatusText (text);
   }
 
   public FieldManager getFieldManager ()
@@ -253,6 +266,63 @@ public class Screen extends Canvas
     return fontManager;
   }
 
+  // called from Console.createScreen() before any data arrives
+  public void setCodePage (CodePage codePage)
+  {
+    if (codePage == null)
+      throw new IllegalArgumentException ("CodePage cannot be null");
+
+    this.codePage = codePage;
+    for (ScreenPosition screenPosition : screenPositions)
+      screenPosition.setCodePage (codePage);
+    historyManager.setCodePage (codePage);
+
+    dbcsPlane = codePage.isDbcs () ? new DbcsPlane (screenPositions.length) : null;
+    screenPacker.setDbcsPlane (dbcsPlane);
+  }
+
+  public CodePage getCodePage ()
+  {
+    return codePage;
+  }
+
+  // called from HeadlessSession.createScreen() before any data arrives
+  public void setPrinter (ScsPrinter printer)
+  {
+    this.printer = printer;
+  }
+
+  // called from ScsCommand.process() on the TelnetListener thread
+  public ScsPrinter getPrinter ()
+  {
+    return printer;
+  }
+
+  // null unless the code page has double-byte characters
+  DbcsPlane getDbcsPlane ()
+  {
+    return dbcsPlane;
+  }
+
+  // called from Cursor
+  boolean isDbcs (int position)
+  {
+    return dbcsPlane != null && dbcsPlane.isDbcs (position);
+  }
+
+  // called from Cursor
+  boolean isDbcsTrail (int position)
+  {
+    return dbcsPlane != null && dbcsPlane.isTrail (position);
+  }
+
+  // called from Cursor after the user has changed the field
+  void dbcsChanged (Field field)
+  {
+    if (dbcsPlane != null)
+      dbcsPlane.update (field);
+  }
+
   // called by WriteCommand.process()
   public PluginsStage getPluginsStage ()
   {
@@ -361,6 +431,8 @@ public class Screen extends Canvas
 
   public void buildFields (WriteControlCharacter wcc)
   {
+    if (dbcsPlane != null)
+      dbcsPlane.update (screenPositions, getScreenDimensions ().size);
     fieldManager.buildFields (screenPositions);        // what about resetModified?
   }
 
@@ -381,9 +453,10 @@ public class Screen extends Canvas
   // called from Write.process()
   public void draw ()
   {
-    int max = getScreenDimensions ().size;
-    for (int i = 0; i < max; i++)
-      screenPositions[i].draw (HIDE_CURSOR);
+    long start = System.nanoTime ();
+    if (dbcsPlane != null)
+      dbcsPlane.update (screenPositions, getScreenDimensions ().size);
+    rowRenderer.draw (gc, screenPositions, getScreenDimensions (), dbcsPlane);
 
     if (insertedCursorPosition >= 0)
     {
@@ -392,7 +465,10 @@ public class Screen extends Canvas
       cursor.setVisible (true);
     }
 
-    screenPositions[cursor.getLocation ()].draw (SHOW_CURSOR);
+    drawPosition (cursor.getLocation (), SHOW_CURSOR);
+
+    if (telnetState != null)
+      telnetState.getMetrics ().screenRendered (System.nanoTime () - start);
   }
 
   // called from Field.draw()
@@ -404,7 +480,21 @@ public class Screen extends Canvas
   // called from Cursor.moveTo()
   void drawPosition (int position, boolean hasCursor)
   {
-    screenPositions[position].draw (hasCursor);
+    if (dbcsPlane != null && dbcsPlane.isDbcs (position))
+      drawDbcsPosition (position, hasCursor);
+    else
+      screenPositions[position].draw (hasCursor);
+  }
+
+  // either half of a double-byte character redraws the whole character
+  private void drawDbcsPosition (int position, boolean hasCursor)
+  {
+    int lead = dbcsPlane.isLead (position) ? position : validate (position - 1);
+    int trail = validate (lead + 1);
+
+    screenPositions[lead].drawDbcs (screenPositions[trail], hasCursor);
+    if (trail % getScreenDimensions ().columns == 0)     // cut off at the end of a row
+      screenPositions[trail].drawBackground (hasCursor);
   }
 
   // called from FontManager() before we are fully initialised
@@ -414,8 +504,7 @@ public class Screen extends Canvas
     contextManager.setFontDetails (fontDetails);
 
     // always use the largest available screen
-    ScreenDimensions screenDimensions = alternateScreenDimensions == null
-        ? defaultScreenDimensions : alternateScreenDimensions;
+    ScreenDimensions screenDimensions = largestScreenDimensions;
     setWidth (
         fontDetails.width * screenDimensions.columns + screenDimensions.xOffset * 2);
     setHeight (fontDetails.height * screenDimensions.rows + screenDimensions.yOffset * 2);
@@ -467,16 +556,9 @@ public class Screen extends Canvas
 
   public void setFieldText (Field field, String text)
   {
-    try
-    {
-      field.setText (text.getBytes ("CP1047"));
-      field.setModified (true);
-      field.draw ();                      // draws the field without a cursor
-    }
-    catch (UnsupportedEncodingException e)
-    {
-      e.printStackTrace ();
-    }
+    field.setText (codePage.getBytes (text));
+    field.setModified (true);
+    field.draw ();                        // draws the field without a cursor
   }
 
   public String getScreenText ()
@@ -501,10 +583,23 @@ public class Screen extends Canvas
     ScreenDimensions alternate = telnetState.getSecondary ();
     //    System.out.println (primary);
     //    System.out.println (alternate);
-    if (alternate.size > 0 && alternateScreenDimensions == null)
+    if (alternate.size == 0 || alternate.isSameSize (alternateScreenDimensions))
+      return;
+
+    // the host can only choose a size that fits in the positions we already have
+    if (!alternate.fitsIn (largestScreenDimensions))
     {
-      alternateScreenDimensions = alternate;
-      System.out.println ("setting alternate dimensions: " + alternate);
+      System.out.println ("alternate dimensions too large: " + alternate);
+      return;
+    }
+
+    alternateScreenDimensions = alternate;
+    System.out.println ("setting alternate dimensions: " + alternate);
+
+    if (currentScreen == ScreenOption.ALTERNATE)
+    {
+      currentScreen = null;                       // force the new size to be used
+      setCurrentScreen (ScreenOption.ALTERNATE);
     }
   }
 
@@ -644,8 +739,35 @@ public class Screen extends Canvas
   {
   }
 
+  // prints the whole screen, which is how an LU type 3 printer receives its output
   public void startPrinter ()
   {
+    if (printer == null)
+      return;
+
+    ScreenDimensions screenDimensions = getScreenDimensions ();
+    List<String> lines = new ArrayList<> (screenDimensions.rows);
+    StringBuilder text = new StringBuilder (screenDimensions.columns);
+
+    for (int row = 0, ptr = 0; row < screenDimensions.rows; row++)
+    {
+      text.setLength (0);
+      for (int column = 0; column < screenDimensions.columns; column++)
+      {
+        ScreenPosition screenPosition = screenPositions[ptr++];
+        if (screenPosition.isStartField () || !screenPosition.isVisible ())
+          text.append (' ');
+        else
+          text.append (screenPosition.getCharString ());
+      }
+
+      int length = text.length ();
+      while (length > 0 && text.charAt (length - 1) == ' ')
+        --length;
+      lines.add (text.substring (0, length));
+    }
+
+    printer.printLines (lines);
   }
 
   public void soundAlarm ()
@@ -724,4 +846,60 @@ public class Screen extends Canvas
   {
     keyboardLocked = historyManager.resume ();
   }
+
+  // ---------------------------------------------------------------------------------//
+  // Keyframes
+  // ---------------------------------------------------------------------------------//
+
+  // While replaying, WriteCommand.process() only rebuilds the screen. There is no
+  // history, plugin processing or console log, and nothing is drawn until the
+  // replay has finished.
+  // called from ReplayIndex
+  public void setReplaying (boolean replaying)
+  {
+    this.replaying = replaying;
+  }
+
+  public boolean isReplaying ()
+  {
+    return replaying;
+  }
+
+  // called from ReplayIndex
+  public ScreenKeyframe saveKeyframe ()
+  {
+    byte savedReplyMode = replyMode;
+    byte[] savedReplyTypes = replyTypes;
+
+    // same reply mode as checkRecording(), so that the attributes are included
+    setReplyMode (SetReplyModeSF.RM_CHARACTER, saveScreenReplyTypes);
+    AIDCommand buffer = readBuffer ();
+    setReplyMode (savedReplyMode, savedReplyTypes);
+
+    return new ScreenKeyframe (currentScreen, buffer, cursor.getLocation (),
+        keyboardLocked, currentAID, replyMode, replyTypes);
+  }
+
+  // called from ReplayIndex
+  public void restoreKeyframe (ScreenKeyframe keyframe)
+  {
+    setCurrentScreen (keyframe.screenOption);
+    clearScreen ();
+
+    for (Order order : keyframe.buffer)
+      order.process (this);               // modifies pen
+    buildFields (null);
+
+    if (keyframe.keyboardLocked)
+      lockKeyboard ("Keyframe");
+    else
+      restoreKeyboard ();
+
+    cursor.moveTo (keyframe.cursorLocation);
+    setAID (keyframe.currentAID);
+    setReplyMode (keyframe.replyMode, keyframe.replyTypes);
+
+    if (!replaying)
+      draw ();
+  }
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ import com.bytezone.dm3270.orders.BufferAddress;
 
 public class ScreenDimensions
 {
+  // 14-bit buffer addresses, which are only used for positions above 4095
+  public static final int MAX_SIZE = 0x4000;
+
   public final int rows;
   public final int columns;
   public final int size;
@@ -29,6 +32,45 @@ public class ScreenDimensions
     BufferAddress.setScreenWidth (columns);       // for debugging output
   }
 
+  // a custom alternate screen size, such as "62x160" - returns null if the text is empty
+  public static ScreenDimensions parse (String text)
+  {
+    if (text == null || text.trim ().isEmpty ())
+      return null;
+
+    String[] chunks = text.trim ().toLowerCase ().split ("x");
+    if (chunks.length != 2)
+      throw new IllegalArgumentException ("Screen size must be rows x columns: " + text);
+
+    int rows, columns;
+    try
+    {
+      rows = Integer.parseInt (chunks[0].trim ());
+      columns = Integer.parseInt (chunks[1].trim ());
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IllegalArgumentException ("Screen size must be rows x columns: " + text);
+    }
+
+    // the alternate screen can never be smaller than the 24 x 80 default screen
+    if (rows < 24 || columns < 80 || rows * columns > MAX_SIZE)
+      throw new IllegalArgumentException ("Invalid screen size: " + text);
+
+    return new ScreenDimensions (rows, columns);
+  }
+
+  // true if a screen of this size can be drawn in positions allocated for the other
+  public boolean fitsIn (ScreenDimensions other)
+  {
+    return rows <= other.rows && columns <= other.columns;
+  }
+
+  public boolean isSameSize (ScreenDimensions other)
+  {
+    return other != null && rows == other.rows && columns == other.columns;
+  }
+
   @Override
   public String toString ()
   {
@@ -0,0 +1,37 @@
+package com.bytezone.dm3270.display;
+
+import com.bytezone.dm3270.commands.AIDCommand;
+import com.bytezone.dm3270.display.Screen.ScreenOption;
+
+// Everything needed to put a Screen back the way it was. The buffer is held as the
+// same ReadBuffer reply that the screen history uses, so the fields, attributes and
+// modified flags are rebuilt from its orders.
+
+public final class ScreenKeyframe
+{
+  final ScreenOption screenOption;
+  final AIDCommand buffer;
+  final int cursorLocation;
+  final boolean keyboardLocked;
+  final byte currentAID;
+  final byte replyMode;
+  final byte[] replyTypes;
+
+  // created by Screen.saveKeyframe()
+  ScreenKeyframe (ScreenOption screenOption, AIDCommand buffer, int cursorLocation,
+      boolean keyboardLocked, byte currentAID, byte replyMode, byte[] replyTypes)
+  {
+    this.screenOption = screenOption;
+    this.buffer = buffer;
+    this.cursorLocation = cursorLocation;
+    this.keyboardLocked = keyboardLocked;
+    this.currentAID = currentAID;
+    this.replyMode = replyMode;
+    this.replyTypes = replyTypes;
+  }
+
+  public int size ()
+  {
+    return buffer.getData ().length;
+  }
+}
@@ -20,6 +20,7 @@ class ScreenPacker implements ScreenChangeListener
 
   private ScreenWatcher screenWatcher;
   private Pen pen;
+  private DbcsPlane dbcsPlane;                  // null unless the code page is mixed
   private final FieldManager fieldManager;
 
   public ScreenPacker (Pen pen, FieldManager fieldManager)
@@ -34,6 +35,12 @@ class ScreenPacker implements ScreenChangeListener
     this.pen = pen;
   }
 
+  // called from Screen.setCodePage()
+  void setDbcsPlane (DbcsPlane dbcsPlane)
+  {
+    this.dbcsPlane = dbcsPlane;
+  }
+
   public AIDCommand readModifiedFields (byte currentAID, int cursorLocation,
       boolean readModifiedAll)
   {
@@ -81,6 +88,9 @@ class ScreenPacker implements ScreenChangeListener
   {
     assert field.isModified ();
 
+    if (dbcsPlane != null && dbcsPlane.isActive ())
+      return packDbcsField (field, buffer, ptr);
+
     for (ScreenPosition sp : field)
       if (sp.isStartField ())
       {
@@ -94,6 +104,36 @@ class ScreenPacker implements ScreenChangeListener
     return ptr;
   }
 
+  // as above, but a double-byte character is only suppressed when both of its bytes
+  // are null, so that the pairs between SO and SI stay in step
+  private int packDbcsField (Field field, byte[] buffer, int ptr)
+  {
+    ScreenPosition lead = null;
+
+    for (ScreenPosition sp : field)
+      if (sp.isStartField ())
+      {
+        buffer[ptr++] = Order.SET_BUFFER_ADDRESS;
+        BufferAddress ba = new BufferAddress (field.getFirstLocation ());
+        ptr = ba.packAddress (buffer, ptr);
+      }
+      else if (dbcsPlane.isLead (sp.getPosition ()))
+        lead = sp;
+      else if (dbcsPlane.isTrail (sp.getPosition ()) && lead != null)
+      {
+        if (!lead.isNull () || !sp.isNull ())
+        {
+          buffer[ptr++] = lead.getByte ();
+          buffer[ptr++] = sp.getByte ();
+        }
+        lead = null;
+      }
+      else if (!sp.isNull ())
+        buffer[ptr++] = sp.getByte ();
+
+    return ptr;
+  }
+
   public AIDCommand readBuffer (byte currentAID, int cursorLocation, byte replyMode,
       byte[] replyTypes)
   {
@@ -5,8 +5,8 @@ import java.util.List;
 
 import com.bytezone.dm3270.attributes.Attribute;
 import com.bytezone.dm3270.attributes.StartFieldAttribute;
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.orders.Order;
-import com.bytezone.dm3270.utilities.Dm3270Utility;
 
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
@@ -15,6 +15,7 @@ public final class ScreenPosition
 {
   // screen display characters
   private static final String[] charString = new String[256];
+  private static final GlyphAtlas glyphAtlas = new GlyphAtlas (charString);
 
   // GraphicsEscape characters
   public static final byte TOP_LEFT = (byte) 0xC5;
@@ -35,6 +36,7 @@ public final class ScreenPosition
   private boolean isGraphics;
   private boolean isVisible = true;
   private ScreenContext screenContext;
+  private CodePage codePage = CodePage.getDefault ();
 
   static
   {
@@ -85,6 +87,13 @@ public final class ScreenPosition
     isGraphics = false;
   }
 
+  // called from Screen.setCodePage()
+  // called from HistoryScreen.createScreen()
+  void setCodePage (CodePage codePage)
+  {
+    this.codePage = codePage;
+  }
+
   // called from Pen.writeGraphics()
   void setGraphicsChar (byte value)
   {
@@ -170,6 +179,18 @@ public final class ScreenPosition
     return isGraphics;
   }
 
+  boolean isVisible ()
+  {
+    return isVisible;
+  }
+
+  // called from RowRenderer.draw() - can the two cells be drawn in the same run?
+  boolean matches (ScreenPosition other)
+  {
+    return !isGraphics && screenContext == other.screenContext
+        && isVisible == other.isVisible;
+  }
+
   // used by Field.getText()
   char getChar ()
   {
@@ -187,7 +208,7 @@ public final class ScreenPosition
           return '*';
       }
 
-    return (char) Dm3270Utility.ebc2asc[value & 0xFF];
+    return codePage.toScreenChar (value);
   }
 
   String getCharString ()
@@ -211,7 +232,13 @@ public final class ScreenPosition
           return ".";
       }
 
-    return charString[Dm3270Utility.ebc2asc[value & 0xFF]];
+    return charString[codePage.toScreenChar (value)];
+  }
+
+  // index into charString of the character that getCharString() returns
+  private int getCharIndex ()
+  {
+    return isStartField () ? ' ' : codePage.toScreenChar (value);
   }
 
   byte getByte ()
@@ -271,6 +298,19 @@ public final class ScreenPosition
     double x = 4 + position % screenDimensions.columns * fontDetails.width;
     double y = 4 + position / screenDimensions.columns * fontDetails.height;
 
+    // most cells are plain characters, which are copied from the atlas
+    if (isVisible && !isGraphics)
+    {
+      boolean swap = hasCursor ^ screenContext.reverseVideo;
+      glyphAtlas.drawCell (gc, fontDetails,
+                           swap ? screenContext.backgroundColor
+                               : screenContext.foregroundColor,
+                           swap ? screenContext.foregroundColor
+                               : screenContext.backgroundColor,
+                           screenContext.underscore, getCharIndex (), x, y);
+      return;
+    }
+
     // Draw background
     if (isVisible)
       gc.setFill (hasCursor ^ screenContext.reverseVideo ? screenContext.foregroundColor
@@ -285,26 +325,62 @@ public final class ScreenPosition
         ? screenContext.backgroundColor : screenContext.foregroundColor;
 
     // Draw foreground
-    if (isVisible)
-      if (isGraphics)
-      {
-        gc.setStroke (foreground);
-        doGraphics (x, y);
-      }
-      else
-      {
-        gc.setFill (foreground);
-        gc.fillText (getCharString (), x, y + fontDetails.ascent);
-
-        if (screenContext.underscore)
-        {
-          gc.setStroke (foreground);
-          x += 0.5;     // stroke commands need to be offset for Windows
-          y += 0.5;
-          double y2 = y + fontDetails.height - 1;
-          gc.strokeLine (x, y2, x + fontDetails.width, y2);
-        }
-      }
+    if (isVisible)                              // graphics character
+    {
+      gc.setStroke (foreground);
+      doGraphics (x, y);
+    }
+  }
+
+  // draws a double-byte character across this position and the next, or only across
+  // this one when it is the last position in the row
+  // called from RowRenderer.draw()
+  // called from Screen.drawPosition()
+  void drawDbcs (ScreenPosition trail, boolean hasCursor)
+  {
+    FontDetails fontDetails = screenContext.fontDetails;
+
+    int column = position % screenDimensions.columns;
+    double x = 4 + column * fontDetails.width;
+    double y = 4 + position / screenDimensions.columns * fontDetails.height;
+    double width = column + 1 < screenDimensions.columns ? fontDetails.width * 2
+        : fontDetails.width;
+
+    boolean swap = isVisible ? hasCursor ^ screenContext.reverseVideo : hasCursor;
+    Color foreground = swap ? screenContext.backgroundColor
+        : screenContext.foregroundColor;
+
+    gc.setFill (swap ? screenContext.foregroundColor : screenContext.backgroundColor);
+    gc.fillRect (x, y, width, fontDetails.height);
+
+    if (!isVisible)
+      return;
+
+    gc.setFill (foreground);
+    gc.fillText (String.valueOf (codePage.toDbcsChar (value, trail.value)), x,
+                 y + fontDetails.ascent, width);
+
+    if (screenContext.underscore)
+    {
+      gc.setStroke (foreground);
+      double y2 = y + 0.5 + fontDetails.height - 1;
+      gc.strokeLine (x + 0.5, y2, x + 0.5 + width, y2);
+    }
+  }
+
+  // the trail of a double-byte character that was cut off at the end of a row
+  // called from RowRenderer.draw()
+  // called from Screen.drawPosition()
+  void drawBackground (boolean hasCursor)
+  {
+    FontDetails fontDetails = screenContext.fontDetails;
+
+    double x = 4 + position % screenDimensions.columns * fontDetails.width;
+    double y = 4 + position / screenDimensions.columns * fontDetails.height;
+
+    gc.setFill (hasCursor ^ (isVisible && screenContext.reverseVideo)
+        ? screenContext.foregroundColor : screenContext.backgroundColor);
+    gc.fillRect (x, y, fontDetails.width, fontDetails.height);
   }
 
   private void doGraphics (double x, double y)
@@ -0,0 +1,61 @@
+package com.bytezone.dm3270.extended;
+
+import java.util.Optional;
+
+import com.bytezone.dm3270.buffers.Buffer;
+import com.bytezone.dm3270.display.Screen;
+import com.bytezone.dm3270.extended.CommandHeader.DataType;
+import com.bytezone.dm3270.printer.ScsPrinter;
+
+// SCS print data for a printer LU, or the PRINT-EOJ that ends a print job. These are
+// processed on the TelnetListener thread rather than the application thread, so that
+// a large report is written out as it arrives.
+
+public class ScsCommand extends AbstractExtendedCommand
+{
+  public ScsCommand (CommandHeader commandHeader, byte[] buffer, int offset, int length)
+  {
+    super (commandHeader, buffer, offset, length);
+  }
+
+  public boolean isEndOfJob ()
+  {
+    return commandHeader.getDataType () == DataType.PRINT_EOJ;
+  }
+
+  @Override
+  public void process (Screen screen)
+  {
+    super.process (screen);                       // acknowledge if requested
+
+    ScsPrinter printer = screen.getPrinter ();
+    if (printer == null)
+    {
+      System.out.println ("No printer for " + getName ());
+      return;
+    }
+
+    if (isEndOfJob ())
+      printer.endJob ();
+    else
+      printer.print (data, 0, data.length);
+  }
+
+  @Override
+  public Optional<Buffer> getReply ()
+  {
+    return commandHeader.getReply ();
+  }
+
+  @Override
+  public String getName ()
+  {
+    return isEndOfJob () ? "Print EOJ" : "SCS";
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("%s: %,d bytes", getName (), data.length);
+  }
+}
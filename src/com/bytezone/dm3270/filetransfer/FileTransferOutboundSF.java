@@ -5,11 +5,13 @@ import java.util.Optional;
 import com.bytezone.dm3270.commands.ReadStructuredFieldCommand;
 import com.bytezone.dm3270.display.Screen;
 import com.bytezone.dm3270.filetransfer.Transfer.TransferType;
+import com.bytezone.dm3270.metrics.SessionMetrics;
 import com.bytezone.dm3270.utilities.Dm3270Utility;
 
 public class FileTransferOutboundSF extends FileTransferSF
 {
   private TransferManager transferManager;
+  private SessionMetrics metrics;                 // null when there is no TelnetState
 
   public FileTransferOutboundSF (byte[] buffer, int offset, int length)
   {
@@ -68,6 +70,8 @@ public class FileTransferOutboundSF extends FileTransferSF
   public void process (Screen screen)
   {
     transferManager = screen.getTransferManager ();
+    metrics = screen.getTelnetState () == null ? null
+        : screen.getTelnetState ().getMetrics ();
 
     switch (rectype)
     {
@@ -104,6 +108,8 @@ public class FileTransferOutboundSF extends FileTransferSF
     Optional<Transfer> optionalTransfer = transferManager.openTransfer (this);
     if (optionalTransfer.isPresent ())
     {
+      if (metrics != null)
+        metrics.transferStarted ();
       byte[] buffer = getReplyBuffer (6, (byte) 0x00, (byte) 0x09);
       setReply (new ReadStructuredFieldCommand (buffer));
     }
@@ -114,6 +120,8 @@ public class FileTransferOutboundSF extends FileTransferSF
     Optional<Transfer> optionalTransfer = transferManager.closeTransfer (this);
     if (optionalTransfer.isPresent ())
     {
+      if (metrics != null)
+        metrics.transferFinished ();
       byte[] buffer = getReplyBuffer (6, (byte) 0x41, (byte) 0x09);
       setReply (new ReadStructuredFieldCommand (buffer));
     }
@@ -148,6 +156,8 @@ public class FileTransferOutboundSF extends FileTransferSF
     if (transfer.hasMoreData () && !transfer.cancelled ())    // have data to send
     {
       DataRecord dataHeader = transfer.getDataHeader ();
+      if (metrics != null)
+        metrics.transferData (dataHeader.getBufferLength ());
       int replyBufferLength = ptr + RecordNumber.RECORD_LENGTH + DataRecord.HEADER_LENGTH
           + dataHeader.getBufferLength ();
       replyBuffer = getReplyBuffer (replyBufferLength, (byte) 0x46, (byte) 0x05);
@@ -190,6 +200,8 @@ public class FileTransferOutboundSF extends FileTransferSF
       DataRecord dataRecord =
           (DataRecord) transferRecords.get (transferRecords.size () - 1);
       int bufferNumber = transfer.add (dataRecord);
+      if (metrics != null)
+        metrics.transferData (dataRecord.getBufferLength ());
       RecordNumber recordNumber = new RecordNumber (bufferNumber);
       ptr = recordNumber.pack (replyBuffer, ptr);
     }
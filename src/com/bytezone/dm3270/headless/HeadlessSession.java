@@ -0,0 +1,670 @@
+package com.bytezone.dm3270.headless;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.prefs.Preferences;
+
+import com.bytezone.dm3270.application.Console.Function;
+import com.bytezone.dm3270.application.KeyboardStatusChangedEvent;
+import com.bytezone.dm3270.application.KeyboardStatusListener;
+import com.bytezone.dm3270.application.TypeAheadBuffer;
+import com.bytezone.dm3270.codepage.CodePage;
+import com.bytezone.dm3270.commands.AIDCommand;
+import com.bytezone.dm3270.display.Cursor;
+import com.bytezone.dm3270.display.Field;
+import com.bytezone.dm3270.display.Screen;
+import com.bytezone.dm3270.display.ScreenDimensions;
+import com.bytezone.dm3270.extended.CommandHeader;
+import com.bytezone.dm3270.extended.TN3270ExtendedCommand;
+import com.bytezone.dm3270.plugins.PluginData;
+import com.bytezone.dm3270.plugins.PluginsStage;
+import com.bytezone.dm3270.plugins.ScreenLocation;
+import com.bytezone.dm3270.printer.PrintOutput;
+import com.bytezone.dm3270.printer.ScsPrinter;
+import com.bytezone.dm3270.streams.TelnetListener;
+import com.bytezone.dm3270.streams.TelnetState;
+import com.bytezone.dm3270.streams.TerminalServer;
+import com.bytezone.dm3270.utilities.Dm3270Utility;
+import com.bytezone.dm3270.utilities.Site;
+
+import javafx.application.Platform;
+
+// A terminal session that is driven by code rather than by a keyboard. No window
+// is ever shown, but the JavaFX toolkit must be running because the Screen is still
+// a Canvas, and TelnetListener applies every host command on the application
+// thread. All the public methods may be called from any thread. Each returns a
+// future which is completed on the application thread, so callers should chain
+// with the xxxAsync() methods rather than doing any real work in a callback.
+//
+// With type-ahead switched on, setField(), moveCursor() and pressKey() may be called
+// while the keyboard is locked. They are queued and run in order as soon as the write
+// that unlocks the keyboard has been processed, so a script can send its next AID
+// without waiting for the previous screen to be read.
+
+public class HeadlessSession implements KeyboardStatusListener
+{
+  private static final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor (r ->
+      {
+        Thread thread = new Thread (r, "HeadlessSession timer");
+        thread.setDaemon (true);
+        return thread;
+      });
+
+  private final Site serverSite;
+  private final Preferences prefs;
+  private final TelnetState telnetState = new TelnetState ();
+  private CodePage codePage = CodePage.getDefault ();
+  private ScreenDimensions screenSize;          // replaces the site's model when set
+  private PrintOutput printOutput;              // only for printer sessions
+  private volatile ScsPrinter printer;          // created by createScreen()
+
+  private Screen screen;
+  private TerminalServer terminalServer;
+  private Thread terminalServerThread;
+
+  private int commandHeaderCount;
+  private int sequence;
+  private int stepSequence;
+
+  private final List<ScreenWaiter> waiters = new ArrayList<> ();
+  private String pendingStepName;             // waiting for the keyboard to unlock
+  private long pendingStepStart;
+
+  private boolean typeAheadEnabled;
+  private TypeAheadBuffer typeAhead;
+  private final List<CompletableFuture<?>> typedAhead = new ArrayList<> ();
+
+  public HeadlessSession (Site serverSite, Preferences prefs)
+  {
+    if (serverSite == null)
+      throw new IllegalArgumentException ("Server cannot be null");
+    if (prefs == null)
+      throw new IllegalArgumentException ("Preferences cannot be null");
+
+    this.serverSite = serverSite;
+    this.prefs = prefs;
+  }
+
+  // Must be called once before the first session is connected, unless the program
+  // is already a JavaFX Application.
+  public static void startToolkit ()
+  {
+    try
+    {
+      Platform.startup ( () ->
+      {
+      });
+    }
+    catch (IllegalStateException e)
+    {
+      // the toolkit is already running
+    }
+    Platform.setImplicitExit (false);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Session control
+  // ---------------------------------------------------------------------------------//
+
+  // completes with the first screen that unlocks the keyboard
+  public CompletableFuture<PluginData> connect (long timeout, TimeUnit unit)
+  {
+    CompletableFuture<PluginData> future = new CompletableFuture<> ();
+
+    Platform.runLater ( () ->
+    {
+      try
+      {
+        if (screen != null)
+          throw new IllegalStateException ("Session is already connected");
+
+        screen = createScreen ();
+        screen.addKeyboardStatusChangeListener (this);
+
+        // not a listener, it is replayed after the waiters in keyboardStatusChanged()
+        typeAhead = new TypeAheadBuffer (screen);
+        typeAhead.setEnabled (typeAheadEnabled);
+        typeAhead.setPipelined (true);
+
+        startStep ("Connect");
+        if (printOutput == null)
+          addWaiter (data -> true, future, timeout, unit);
+        else
+          future.complete (null);           // a printer never unlocks its keyboard
+
+        // set preferences for this session
+        telnetState.setDo3270Extended (serverSite.getExtended ());
+        telnetState.setDoTerminalType (true);
+
+        TelnetListener telnetListener = new TelnetListener (screen, telnetState);
+        terminalServer = new TerminalServer (serverSite.getURL (),
+            serverSite.getPort (), telnetListener);
+        telnetState.setTerminalServer (terminalServer);
+
+        terminalServerThread = new Thread (terminalServer);
+        terminalServerThread.start ();
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    });
+
+    return future;
+  }
+
+  public void disconnect ()
+  {
+    if (terminalServer != null)
+      terminalServer.close ();
+
+    telnetState.close ();
+
+    if (terminalServerThread != null)
+    {
+      terminalServerThread.interrupt ();
+      try
+      {
+        terminalServerThread.join ();
+      }
+      catch (InterruptedException e)
+      {
+        e.printStackTrace ();
+      }
+    }
+
+    Platform.runLater ( () ->
+    {
+      for (ScreenWaiter waiter : waiters)
+        waiter.future.completeExceptionally (
+            new IllegalStateException ("Session disconnected"));
+      waiters.clear ();
+
+      for (CompletableFuture<?> future : typedAhead)
+        future.completeExceptionally (new IllegalStateException ("Session disconnected"));
+      typedAhead.clear ();
+      if (typeAhead != null)
+        typeAhead.clear ();
+
+      if (screen != null)
+        screen.close ();
+    });
+
+    if (printer != null)
+      printer.close ();
+  }
+
+  // returns the model's alternate screen size
+  private ScreenDimensions setModel (int model)
+  {
+    ScreenDimensions alternateScreenDimensions;
+    switch (model)
+    {
+      case 3:
+        alternateScreenDimensions = new ScreenDimensions (32, 80);
+        break;
+      case 4:
+        alternateScreenDimensions = new ScreenDimensions (43, 80);
+        break;
+      case 5:
+        alternateScreenDimensions = new ScreenDimensions (27, 132);
+        break;
+      default:
+        model = 2;
+        alternateScreenDimensions = new ScreenDimensions (24, 80);
+    }
+    telnetState.setDoDeviceType (model);
+    return alternateScreenDimensions;
+  }
+
+  // called on the application thread
+  private Screen createScreen ()
+  {
+    ScreenDimensions alternateScreenDimensions = screenSize;
+    if (screenSize == null)
+      alternateScreenDimensions = setModel (serverSite.getModel ());
+    else
+      telnetState.setDoDeviceType (screenSize);
+
+    if (printOutput != null)
+    {
+      printer = new ScsPrinter (printOutput, codePage);
+      telnetState.setDoPrinter ();
+    }
+
+    // no plugins are instantiated until PluginsStage.getMenu() is called, and a
+    // null site means that FieldManager does not start a database thread
+    PluginsStage pluginsStage = new PluginsStage (prefs);
+    Screen screen = new Screen (new ScreenDimensions (24, 80), alternateScreenDimensions,
+        prefs, Function.TERMINAL, pluginsStage, null, telnetState);
+    screen.setCodePage (codePage);
+    screen.setPrinter (printer);
+    return screen;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Screen operations
+  // ---------------------------------------------------------------------------------//
+
+  public CompletableFuture<PluginData> readFields ()
+  {
+    return submit ("Read", () -> getPluginData ());
+  }
+
+  // completes immediately if the current screen already matches
+  public CompletableFuture<PluginData> waitForScreen (Predicate<PluginData> predicate,
+      long timeout, TimeUnit unit)
+  {
+    CompletableFuture<PluginData> future = new CompletableFuture<> ();
+
+    Platform.runLater ( () ->
+    {
+      try
+      {
+        checkConnected ();
+        if (!screen.isKeyboardLocked ())
+        {
+          PluginData data = getPluginData ();
+          if (predicate.test (data))
+          {
+            future.complete (data);
+            return;
+          }
+        }
+        addWaiter (predicate, future, timeout, unit);
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    });
+
+    return future;
+  }
+
+  public CompletableFuture<Void> setField (int row, int column, String text)
+  {
+    return submitKeystroke ("Set field", () ->
+    {
+      int location = getLocation (row, column);
+      Optional<Field> optField = screen.getFieldManager ().getFieldAt (location);
+      if (!optField.isPresent () || optField.get ().isProtected ())
+        throw new IllegalArgumentException (
+            String.format ("No modifiable field at row %d, column %d", row, column));
+
+      screen.setFieldText (optField.get (), text);
+    });
+  }
+
+  public CompletableFuture<Void> moveCursor (int row, int column)
+  {
+    return submitKeystroke ("Move cursor",
+        () -> screen.getScreenCursor ().moveTo (getLocation (row, column)));
+  }
+
+  // rows and columns start at 0, and the position must be on the current screen
+  private int getLocation (int row, int column)
+  {
+    ScreenDimensions screenDimensions = screen.getScreenDimensions ();
+    if (row < 0 || row >= screenDimensions.rows || column < 0
+        || column >= screenDimensions.columns)
+      throw new IllegalArgumentException (
+          String.format ("Row %d, column %d is outside the %d x %d screen", row, column,
+                         screenDimensions.rows, screenDimensions.columns));
+
+    return row * screenDimensions.columns + column;
+  }
+
+  // Sends the modified fields with the AID (see AIDCommand.AID_ENTER etc), and
+  // completes when the host has unlocked the keyboard again.
+  public CompletableFuture<PluginData> pressKey (byte aid, long timeout, TimeUnit unit)
+  {
+    CompletableFuture<PluginData> future = new CompletableFuture<> ();
+
+    Platform.runLater ( () ->
+    {
+      try
+      {
+        checkConnected ();
+        whenUnlocked (future, () ->
+        {
+          if (screen.isInsertMode ())
+            screen.toggleInsertMode ();
+
+          screen.setAID (aid);
+          AIDCommand command = screen.readModifiedFields ();
+          screen.lockKeyboard (command.getKeyName ());
+
+          startStep (command.getKeyName ());
+          addWaiter (data -> true, future, timeout, unit);
+          sendAID (command);
+        });
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    });
+
+    return future;
+  }
+
+  // Must be called before connect(). When off (the default), calls that need the
+  // keyboard fail while it is locked.
+  public void setTypeAhead (boolean typeAhead)
+  {
+    typeAheadEnabled = typeAhead;
+  }
+
+  // Must be called before connect()
+  public void setCodePage (CodePage codePage)
+  {
+    if (codePage == null)
+      throw new IllegalArgumentException ("CodePage cannot be null");
+    this.codePage = codePage;
+  }
+
+  // Must be called before connect(). A custom alternate screen size (such as 62 x 160)
+  // instead of the one for the site's model.
+  public void setScreenSize (int rows, int columns)
+  {
+    screenSize = ScreenDimensions.parse (rows + "x" + columns);
+  }
+
+  // same as ConsolePane.sendAID()
+  private void sendAID (AIDCommand command)
+  {
+    telnetState.getMetrics ().aidSent ();
+
+    if (telnetState.does3270Extended ())
+    {
+      byte[] buffer = new byte[5];
+      Dm3270Utility.packUnsignedShort (commandHeaderCount++, buffer, 3);
+      CommandHeader header = new CommandHeader (buffer);
+      TN3270ExtendedCommand extendedCommand = new TN3270ExtendedCommand (header, command);
+      telnetState.write (extendedCommand.getTelnetData ());
+    }
+    else
+      telnetState.write (command.getTelnetData ());
+  }
+
+  // Must be called before connect(). Connects as a TN3270E printer (usually with the
+  // printer LU's name passed to requestLogicalUnit()), and each report is written to
+  // the output as it arrives. The output is closed by disconnect().
+  public void setPrinterOutput (PrintOutput output)
+  {
+    if (output == null)
+      throw new IllegalArgumentException ("PrintOutput cannot be null");
+    printOutput = output;
+  }
+
+  // only valid for printer sessions
+  public String getPrinterSummary ()
+  {
+    return printer == null ? "Not a printer" : printer.toString ();
+  }
+
+  // must be called before connect(), an empty name lets the server choose
+  public void requestLogicalUnit (String luName)
+  {
+    telnetState.setDoLogicalUnit (luName);
+  }
+
+  // the LU name that the server assigned during TN3270E negotiation
+  public String getLogicalUnit ()
+  {
+    return telnetState.getLogicalUnit ();
+  }
+
+  public boolean isConnected ()
+  {
+    return telnetState.isConnected ();
+  }
+
+  public void sendNoOp ()
+  {
+    telnetState.sendNoOp ();
+  }
+
+  // only valid on the application thread
+  public Screen getScreen ()
+  {
+    return screen;
+  }
+
+  public TelnetState getTelnetState ()
+  {
+    return telnetState;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Utility methods - all called on the application thread
+  // ---------------------------------------------------------------------------------//
+
+  private <T> CompletableFuture<T> submit (String stepName, Callable<T> task)
+  {
+    CompletableFuture<T> future = new CompletableFuture<> ();
+
+    Platform.runLater ( () ->
+    {
+      long start = System.nanoTime ();
+      try
+      {
+        checkConnected ();
+        T result = task.call ();
+        fireStepCompleted (stepName, start);
+        future.complete (result);
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    });
+
+    return future;
+  }
+
+  // like submit(), but the task waits in the type-ahead buffer if the keyboard is locked
+  private CompletableFuture<Void> submitKeystroke (String stepName, Runnable task)
+  {
+    CompletableFuture<Void> future = new CompletableFuture<> ();
+
+    Platform.runLater ( () ->
+    {
+      try
+      {
+        checkConnected ();
+        whenUnlocked (future, () ->
+        {
+          long start = System.nanoTime ();
+          task.run ();
+          fireStepCompleted (stepName, start);
+          future.complete (null);
+        });
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    });
+
+    return future;
+  }
+
+  // Runs the action now, or queues it until the keyboard is unlocked. Any exception
+  // from a queued action is passed to its future.
+  private void whenUnlocked (CompletableFuture<?> future, Runnable action)
+  {
+    if (!screen.isKeyboardLocked ())
+    {
+      action.run ();
+      return;
+    }
+
+    if (!typeAhead.isEnabled ())
+      throw new IllegalStateException ("Keyboard is locked");
+
+    Runnable keystroke = () ->
+    {
+      typedAhead.remove (future);
+      try
+      {
+        action.run ();
+      }
+      catch (Exception e)
+      {
+        future.completeExceptionally (e);
+      }
+    };
+
+    if (!typeAhead.offer (keystroke))
+      throw new IllegalStateException ("Type-ahead buffer is full");
+    typedAhead.add (future);
+  }
+
+  private void checkConnected ()
+  {
+    if (screen == null)
+      throw new IllegalStateException ("Session is not connected");
+  }
+
+  private PluginData getPluginData ()
+  {
+    Cursor cursor = screen.getScreenCursor ();
+    ScreenDimensions screenDimensions = screen.getScreenDimensions ();
+
+    int cursorPosition = cursor.getLocation ();
+    ScreenLocation screenLocation =
+        new ScreenLocation (cursorPosition / screenDimensions.columns,
+            cursorPosition % screenDimensions.columns, screenDimensions.columns);
+    return screen.getFieldManager ().getPluginScreen (sequence++, screenLocation);
+  }
+
+  private void addWaiter (Predicate<PluginData> predicate,
+      CompletableFuture<PluginData> future, long timeout, TimeUnit unit)
+  {
+    ScreenWaiter waiter = new ScreenWaiter (predicate, future);
+    waiters.add (waiter);
+
+    timer.schedule ( () -> Platform.runLater ( () ->
+    {
+      if (waiters.remove (waiter))
+        future.completeExceptionally (
+            new TimeoutException ("No matching screen after " + timeout + " " + unit));
+    }), timeout, unit);
+  }
+
+  private void startStep (String name)
+  {
+    pendingStepName = name;
+    pendingStepStart = System.nanoTime ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // KeyboardStatusListener
+  // ---------------------------------------------------------------------------------//
+
+  // The keyboard is unlocked by WriteControlCharacter.process(), after the fields
+  // have been rebuilt.
+  @Override
+  public void keyboardStatusChanged (KeyboardStatusChangedEvent evt)
+  {
+    if (evt.keyboardLocked)
+      return;
+
+    if (pendingStepName != null)
+    {
+      fireStepCompleted (pendingStepName, pendingStepStart);
+      pendingStepName = null;
+    }
+
+    if (waiters.size () > 0)
+      completeWaiters ();
+
+    // queued keystrokes see the screen after every waiter has been given it
+    typeAhead.keyboardStatusChanged (evt);
+  }
+
+  private void completeWaiters ()
+  {
+    PluginData data = getPluginData ();
+    List<ScreenWaiter> completed = new ArrayList<> ();
+
+    for (ScreenWaiter waiter : waiters)
+      try
+      {
+        if (waiter.predicate.test (data))
+          completed.add (waiter);
+      }
+      catch (Exception e)
+      {
+        waiter.future.completeExceptionally (e);
+        completed.add (waiter);
+      }
+
+    waiters.removeAll (completed);
+    for (ScreenWaiter waiter : completed)
+      waiter.future.complete (data);          // no effect if already failed
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // StepTimingListeners
+  // ---------------------------------------------------------------------------------//
+
+  private final Set<StepTimingListener> stepTimingListeners = new HashSet<> ();
+
+  private void fireStepCompleted (String name, long start)
+  {
+    if (stepTimingListeners.size () == 0)
+      return;
+
+    StepTiming stepTiming =
+        new StepTiming (name, stepSequence++, start, System.nanoTime () - start);
+    stepTimingListeners.forEach (listener -> listener.stepCompleted (stepTiming));
+  }
+
+  // listeners are notified on the application thread
+  public void addStepTimingListener (StepTimingListener listener)
+  {
+    Platform.runLater ( () -> stepTimingListeners.add (listener));
+  }
+
+  public void removeStepTimingListener (StepTimingListener listener)
+  {
+    Platform.runLater ( () -> stepTimingListeners.remove (listener));
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("HeadlessSession %s:%d", serverSite.getURL (),
+                          serverSite.getPort ());
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // ScreenWaiter
+  // ---------------------------------------------------------------------------------//
+
+  private class ScreenWaiter
+  {
+    private final Predicate<PluginData> predicate;
+    private final CompletableFuture<PluginData> future;
+
+    ScreenWaiter (Predicate<PluginData> predicate, CompletableFuture<PluginData> future)
+    {
+      this.predicate = predicate;
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,688 @@
+package com.bytezone.dm3270.headless;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.bytezone.dm3270.session.Session;
+import com.bytezone.dm3270.session.SessionScript;
+import com.bytezone.dm3270.streams.TelnetState;
+import com.bytezone.dm3270.telnet.TelnetCommand;
+import com.bytezone.dm3270.telnet.TelnetCommandProcessor;
+import com.bytezone.dm3270.telnet.TelnetProcessor;
+import com.bytezone.dm3270.telnet.TelnetSubcommand;
+import com.bytezone.dm3270.telnet.TerminalTypeSubcommand;
+
+import javafx.application.Platform;
+
+// A headless host for load testing. A single thread and a Selector look after every
+// connection, so thousands of TN3270 clients can be served from a laptop. Each client
+// is offered TN3270E, and falls back to terminal type, EOR and BINARY if it refuses.
+// Once negotiation is finished the client is sent the first step of a SessionScript,
+// and every 3270 record it sends back is answered with the next step, after the think
+// time. The steps wrap around, so a client can keep going for as long as it likes.
+//
+//   java com.bytezone.dm3270.headless.HostSimulator [-port n] [-think ms] [-basic]
+//        <session file or folder> ...
+//
+// With more than one session file the connections take turns to use each script.
+
+public class HostSimulator implements Runnable
+{
+  private static final int READ_BUFFER_SIZE = 16384;
+
+  // TN3270E subcommands (see TN3270ExtendedSubcommand)
+  private static final byte EXT_ASSOCIATE = 0;
+  private static final byte EXT_CONNECT = 1;
+  private static final byte EXT_DEVICE_TYPE = 2;
+  private static final byte EXT_FUNCTIONS = 3;
+  private static final byte EXT_IS = 4;
+  private static final byte EXT_REQUEST = 7;
+  private static final byte EXT_SEND = 8;
+
+  // options that must be agreed in both directions before a basic client can start
+  private static final int BINARY = 0x01;
+  private static final int EOR = 0x02;
+  private static final int REQUIRED = BINARY | EOR;
+
+  private final int port;
+  private final List<SessionScript> scripts;
+  private final ByteBuffer readBuffer = ByteBuffer.allocate (READ_BUFFER_SIZE);
+  private final PriorityQueue<Reply> replies = new PriorityQueue<> ();
+
+  private long thinkTime;                       // milliseconds
+  private boolean offerExtended = true;
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private volatile boolean running;
+
+  // written only by the selector thread
+  private volatile long totalConnections;
+  private volatile int activeConnections;
+  private volatile int peakConnections;
+  private volatile long recordsReceived;
+  private volatile long stepsSent;
+  private volatile long bytesReceived;
+  private volatile long bytesSent;
+
+  public HostSimulator (int port, List<SessionScript> scripts)
+  {
+    if (scripts == null || scripts.isEmpty ())
+      throw new IllegalArgumentException ("No scripts");
+
+    this.port = port;
+    this.scripts = new ArrayList<> (scripts);
+  }
+
+  // the delay before each reply, which stands in for the host's response time
+  public void setThinkTime (long thinkTime)
+  {
+    if (thinkTime < 0)
+      throw new IllegalArgumentException ("Think time cannot be negative");
+    this.thinkTime = thinkTime;
+  }
+
+  // when false the clients go straight to basic TN3270
+  public void setOfferExtended (boolean offerExtended)
+  {
+    this.offerExtended = offerExtended;
+  }
+
+  @Override
+  public void run ()
+  {
+    try
+    {
+      selector = Selector.open ();
+      serverChannel = ServerSocketChannel.open ();
+      serverChannel.bind (new InetSocketAddress (port), 1024);
+      serverChannel.configureBlocking (false);
+      serverChannel.register (selector, SelectionKey.OP_ACCEPT);
+
+      System.out.printf ("Host simulator listening on port %d%n", port);
+      running = true;
+
+      while (running)
+      {
+        selector.select (nextTimeout ());
+
+        Iterator<SelectionKey> keys = selector.selectedKeys ().iterator ();
+        while (keys.hasNext ())
+        {
+          SelectionKey key = keys.next ();
+          keys.remove ();
+
+          if (!key.isValid ())
+            continue;
+          if (key.isAcceptable ())
+            accept ();
+          else
+          {
+            Connection connection = (Connection) key.attachment ();
+            if (key.isReadable ())
+              read (connection);
+            if (key.isValid () && key.isWritable ())
+              flush (connection);
+          }
+        }
+
+        sendDueReplies ();
+      }
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace ();
+    }
+    finally
+    {
+      closeAll ();
+    }
+
+    System.out.println ("Host simulator closed");
+  }
+
+  // called from any thread
+  public void close ()
+  {
+    running = false;
+    if (selector != null)
+      selector.wakeup ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Selector thread
+  // ---------------------------------------------------------------------------------//
+
+  private void accept () throws IOException
+  {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept ()) != null)
+    {
+      channel.configureBlocking (false);
+      channel.socket ().setTcpNoDelay (true);
+
+      SessionScript script = scripts.get ((int) (totalConnections % scripts.size ()));
+      Connection connection = new Connection (channel, script, ++totalConnections);
+      connection.key = channel.register (selector, SelectionKey.OP_READ, connection);
+
+      ++activeConnections;
+      peakConnections = Math.max (peakConnections, activeConnections);
+
+      if (offerExtended)
+        connection.sendCommand (TelnetCommand.DO, TelnetSubcommand.TN3270E);
+      else
+        connection.sendCommand (TelnetCommand.DO, TelnetSubcommand.TERMINAL_TYPE);
+    }
+  }
+
+  private void read (Connection connection)
+  {
+    readBuffer.clear ();
+    int bytesRead;
+    try
+    {
+      bytesRead = connection.channel.read (readBuffer);
+    }
+    catch (IOException e)
+    {
+      bytesRead = -1;                           // the client has gone
+    }
+
+    if (bytesRead < 0)
+    {
+      close (connection);
+      return;
+    }
+
+    bytesReceived += bytesRead;
+    byte[] buffer = new byte[bytesRead];
+    readBuffer.flip ();
+    readBuffer.get (buffer);
+    connection.telnetProcessor.listen (buffer);
+  }
+
+  private void write (Connection connection, byte[] buffer)
+  {
+    if (connection.closed || buffer.length == 0)
+      return;
+
+    connection.output.add (ByteBuffer.wrap (buffer));
+    if (connection.output.size () == 1)         // nothing was waiting already
+      flush (connection);
+  }
+
+  private void flush (Connection connection)
+  {
+    try
+    {
+      while (!connection.output.isEmpty ())
+      {
+        ByteBuffer buffer = connection.output.peek ();
+        bytesSent += connection.channel.write (buffer);
+        if (buffer.hasRemaining ())
+        {
+          connection.key.interestOps (SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          return;                               // the socket buffer is full
+        }
+        connection.output.remove ();
+      }
+      connection.key.interestOps (SelectionKey.OP_READ);
+    }
+    catch (IOException e)
+    {
+      close (connection);
+    }
+  }
+
+  private void close (Connection connection)
+  {
+    if (connection.closed)
+      return;
+
+    connection.closed = true;
+    connection.output.clear ();
+    --activeConnections;
+    connection.key.cancel ();
+    try
+    {
+      connection.channel.close ();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace ();
+    }
+  }
+
+  private void closeAll ()
+  {
+    if (selector != null)
+    {
+      for (SelectionKey key : selector.keys ())
+        if (key.attachment () instanceof Connection)
+          close ((Connection) key.attachment ());
+      try
+      {
+        selector.close ();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+      }
+    }
+
+    if (serverChannel != null)
+      try
+      {
+        serverChannel.close ();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+      }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Replies
+  // ---------------------------------------------------------------------------------//
+
+  // called from Connection.processRecord() and Connection.start()
+  private void reply (Connection connection)
+  {
+    if (thinkTime == 0)
+      sendStep (connection);
+    else
+      replies.add (new Reply (connection, System.nanoTime () + thinkTime * 1000000));
+  }
+
+  private void sendStep (Connection connection)
+  {
+    SessionScript.Step step = connection.script.getStep (connection.step);
+    connection.step = connection.script.nextStep (connection.step);
+
+    write (connection, step.getTelnetData (connection.extended));
+    ++stepsSent;
+  }
+
+  private void sendDueReplies ()
+  {
+    long now = System.nanoTime ();
+    while (!replies.isEmpty () && replies.peek ().due <= now)
+    {
+      Reply reply = replies.remove ();
+      if (!reply.connection.closed)
+        sendStep (reply.connection);
+    }
+  }
+
+  // milliseconds until the next reply is due, or zero to wait for the next event
+  private long nextTimeout ()
+  {
+    if (replies.isEmpty ())
+      return 0;
+    long nanos = replies.peek ().due - System.nanoTime ();
+    return Math.max (1, (nanos + 999999) / 1000000);
+  }
+
+  private static class Reply implements Comparable<Reply>
+  {
+    private final Connection connection;
+    private final long due;                     // System.nanoTime()
+
+    Reply (Connection connection, long due)
+    {
+      this.connection = connection;
+      this.due = due;
+    }
+
+    @Override
+    public int compareTo (Reply other)
+    {
+      return Long.compare (due, other.due);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Statistics
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("Connections: %,d  Active: %,d  Peak: %,d  Records in: %,d  "
+        + "Steps out: %,d  Bytes in: %,d  Bytes out: %,d", totalConnections,
+                          activeConnections, peakConnections, recordsReceived, stepsSent,
+                          bytesReceived, bytesSent);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Connection
+  // ---------------------------------------------------------------------------------//
+
+  // Each connection has its own TelnetProcessor, which calls back here with every
+  // complete telnet command, subcommand or data record.
+  private class Connection implements TelnetCommandProcessor
+  {
+    private final SocketChannel channel;
+    private final SessionScript script;
+    private final String luName;
+    private final TelnetProcessor telnetProcessor = new TelnetProcessor (this);
+    private final Deque<ByteBuffer> output = new ArrayDeque<> ();
+    private SelectionKey key;
+
+    private boolean extended;                   // TN3270E was agreed
+    private boolean started;                    // 3270 data can be sent
+    private boolean closed;
+    private int step;
+
+    // basic TN3270 negotiation
+    private boolean terminalTypeReceived;
+    private int clientWill;                     // options the client will send
+    private int clientDo;                       // options the client will accept
+    private int sentDo;
+    private int sentWill;
+
+    Connection (SocketChannel channel, SessionScript script, long number)
+    {
+      this.channel = channel;
+      this.script = script;
+      luName = String.format ("SIM%05d", number % 100000);
+    }
+
+    private void send (byte... buffer)
+    {
+      write (this, buffer);
+    }
+
+    private void sendCommand (byte command, byte option)
+    {
+      send (TelnetCommand.IAC, command, option);
+    }
+
+    private void start ()
+    {
+      started = true;
+      reply (this);                             // usually a Read Partition Query
+    }
+
+    // -------------------------------------------------------------------------------//
+    // TelnetCommandProcessor
+    // -------------------------------------------------------------------------------//
+
+    @Override
+    public void processData (byte[] buffer, int length)
+    {
+      // not telnet - ignore it
+    }
+
+    // the buffer ends with IAC EOR
+    @Override
+    public void processRecord (byte[] buffer, int length)
+    {
+      if (!started)
+        return;
+
+      // only 3270-DATA advances the script, not responses or SYSREQ
+      if (extended && (length < 7 || buffer[0] != 0))
+        return;
+
+      ++recordsReceived;
+      reply (this);
+    }
+
+    @Override
+    public void processTelnetCommand (byte[] buffer, int length)
+    {
+      if (length < 3)
+        return;                                 // NOP or IP
+
+      byte command = buffer[1];
+      byte option = buffer[2];
+
+      if (command == TelnetCommand.WILL)
+        clientWill (option);
+      else if (command == TelnetCommand.WONT)
+        clientWont (option);
+      else if (command == TelnetCommand.DO)
+        clientDo (option);
+      else if (command == TelnetCommand.DONT && !started)
+      {
+        System.out.printf ("%s refused option %02X%n", luName, option);
+        close (this);
+      }
+    }
+
+    private void clientWill (byte option)
+    {
+      switch (option)
+      {
+        case TelnetSubcommand.TN3270E:
+          send (TelnetCommand.IAC, TelnetCommand.SB, TelnetSubcommand.TN3270E,
+                EXT_SEND, EXT_DEVICE_TYPE, TelnetCommand.IAC, TelnetCommand.SE);
+          break;
+
+        case TelnetSubcommand.TERMINAL_TYPE:
+          send (TelnetCommand.IAC, TelnetCommand.SB, TelnetSubcommand.TERMINAL_TYPE,
+                TerminalTypeSubcommand.OPTION_SEND, TelnetCommand.IAC, TelnetCommand.SE);
+          break;
+
+        case TelnetSubcommand.BINARY:
+        case TelnetSubcommand.EOR:
+          int flag = flag (option);
+          clientWill |= flag;
+          if ((sentDo & flag) == 0)
+          {
+            sentDo |= flag;
+            sendCommand (TelnetCommand.DO, option);
+          }
+          checkStart ();
+          break;
+
+        default:
+          sendCommand (TelnetCommand.DONT, option);
+      }
+    }
+
+    private void clientWont (byte option)
+    {
+      if (option == TelnetSubcommand.TN3270E && !started)
+        sendCommand (TelnetCommand.DO, TelnetSubcommand.TERMINAL_TYPE);
+      else if (!started)
+      {
+        System.out.printf ("%s refused option %02X%n", luName, option);
+        close (this);
+      }
+    }
+
+    private void clientDo (byte option)
+    {
+      int flag = flag (option);
+      if (flag == 0)
+      {
+        sendCommand (TelnetCommand.WONT, option);
+        return;
+      }
+
+      clientDo |= flag;
+      if ((sentWill & flag) == 0)
+      {
+        sentWill |= flag;
+        sendCommand (TelnetCommand.WILL, option);
+      }
+      checkStart ();
+    }
+
+    private int flag (byte option)
+    {
+      return option == TelnetSubcommand.BINARY ? BINARY
+          : option == TelnetSubcommand.EOR ? EOR : 0;
+    }
+
+    private void checkStart ()
+    {
+      if (!started && !extended && terminalTypeReceived
+          && (clientWill & REQUIRED) == REQUIRED && (clientDo & REQUIRED) == REQUIRED)
+        start ();
+    }
+
+    // the buffer starts with IAC SB and ends with IAC SE
+    @Override
+    public void processTelnetSubcommand (byte[] buffer, int length)
+    {
+      if (length < 6)
+        return;
+
+      if (buffer[2] == TelnetSubcommand.TERMINAL_TYPE)
+        terminalType ();
+      else if (buffer[2] == TelnetSubcommand.TN3270E)
+      {
+        if (buffer[3] == EXT_DEVICE_TYPE && buffer[4] == EXT_REQUEST)
+          deviceType (buffer, length);
+        else if (buffer[3] == EXT_FUNCTIONS && buffer[4] == EXT_REQUEST)
+          functions (buffer, length);
+      }
+    }
+
+    private void terminalType ()
+    {
+      if (terminalTypeReceived)
+        return;
+
+      terminalTypeReceived = true;
+      sentDo |= REQUIRED;
+      sentWill |= REQUIRED;
+      sendCommand (TelnetCommand.DO, TelnetSubcommand.EOR);
+      sendCommand (TelnetCommand.WILL, TelnetSubcommand.EOR);
+      sendCommand (TelnetCommand.DO, TelnetSubcommand.BINARY);
+      sendCommand (TelnetCommand.WILL, TelnetSubcommand.BINARY);
+    }
+
+    // IAC SB TN3270E DEVICE-TYPE REQUEST <type> [CONNECT <name> | ASSOCIATE <name>]
+    // IAC SE - the requested name is ignored, every connection gets its own LU
+    private void deviceType (byte[] buffer, int length)
+    {
+      int end = 5;
+      while (end < length - 2 && buffer[end] != EXT_CONNECT
+          && buffer[end] != EXT_ASSOCIATE)
+        ++end;
+
+      byte[] name = luName.getBytes (StandardCharsets.US_ASCII);
+      byte[] reply = new byte[5 + (end - 5) + 1 + name.length + 2];
+      int ptr = 0;
+      reply[ptr++] = TelnetCommand.IAC;
+      reply[ptr++] = TelnetCommand.SB;
+      reply[ptr++] = TelnetSubcommand.TN3270E;
+      reply[ptr++] = EXT_DEVICE_TYPE;
+      reply[ptr++] = EXT_IS;
+      System.arraycopy (buffer, 5, reply, ptr, end - 5);
+      ptr += end - 5;
+      reply[ptr++] = EXT_CONNECT;
+      System.arraycopy (name, 0, reply, ptr, name.length);
+      ptr += name.length;
+      reply[ptr++] = TelnetCommand.IAC;
+      reply[ptr++] = TelnetCommand.SE;
+
+      send (reply);
+    }
+
+    // Agree to whatever the client asks for. The simulator never sends a BIND or asks
+    // for a response, and any SYSREQ from the client is ignored.
+    private void functions (byte[] buffer, int length)
+    {
+      byte[] reply = new byte[length];
+      System.arraycopy (buffer, 0, reply, 0, length);
+      reply[4] = EXT_IS;
+      send (reply);
+
+      if (!started)
+      {
+        extended = true;
+        start ();
+      }
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Command line
+  // ---------------------------------------------------------------------------------//
+
+  public static void main (String[] args) throws Exception
+  {
+    int port = 5555;
+    long thinkTime = 0;
+    boolean offerExtended = true;
+    List<String> names = new ArrayList<> ();
+
+    for (int i = 0; i < args.length; i++)
+      if (args[i].equals ("-port") && i + 1 < args.length)
+        port = Integer.parseInt (args[++i]);
+      else if (args[i].equals ("-think") && i + 1 < args.length)
+        thinkTime = Long.parseLong (args[++i]);
+      else if (args[i].equals ("-basic"))
+        offerExtended = false;
+      else
+        names.add (args[i]);
+
+    if (names.isEmpty ())
+    {
+      System.out.println ("Usage: HostSimulator [-port n] [-think ms] [-basic] "
+          + "<session file or folder> ...");
+      return;
+    }
+
+    List<Path> paths = new ArrayList<> ();
+    for (String name : names)
+    {
+      Path path = Paths.get (name);
+      if (Files.isDirectory (path))
+        try (Stream<Path> stream = Files.list (path))
+        {
+          paths.addAll (stream.filter (Files::isRegularFile).sorted ()
+              .collect (Collectors.toList ()));
+        }
+      else
+        paths.add (path);
+    }
+
+    HeadlessSession.startToolkit ();              // a Session needs the toolkit
+
+    List<SessionScript> scripts = new ArrayList<> ();
+    for (Path path : paths)
+    {
+      SessionScript script = new SessionScript (new Session (new TelnetState (), path),
+          path.getFileName ().toString ());
+      System.out.println (script);
+      scripts.add (script);
+    }
+
+    HostSimulator simulator = new HostSimulator (port, scripts);
+    simulator.setThinkTime (thinkTime);
+    simulator.setOfferExtended (offerExtended);
+
+    Thread thread = new Thread (simulator, "HostSimulator");
+    thread.start ();
+
+    while (thread.isAlive ())
+    {
+      thread.join (10000);
+      System.out.println (simulator);
+    }
+
+    Platform.exit ();
+  }
+}
@@ -0,0 +1,338 @@
+package com.bytezone.dm3270.headless;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.bytezone.dm3270.application.Console.Function;
+import com.bytezone.dm3270.buffers.Buffer;
+import com.bytezone.dm3270.display.Screen;
+import com.bytezone.dm3270.display.ScreenDimensions;
+import com.bytezone.dm3270.plugins.PluginsStage;
+import com.bytezone.dm3270.session.Session;
+import com.bytezone.dm3270.session.SessionRecord;
+import com.bytezone.dm3270.streams.TelnetSocket.Source;
+import com.bytezone.dm3270.streams.TelnetState;
+import com.bytezone.dm3270.utilities.Dm3270Utility;
+
+import javafx.application.Platform;
+
+// Replays a library of captured sessions (the same text format that Replay reads) as
+// regression tests. Each session is decoded on a fork-join pool and then applied to
+// its own Screen, exactly as ReplayStage does when every record is selected in turn.
+// The screen after each host record, together with any reply that the emulator
+// generates, is compared with the snapshot saved by an earlier run.
+//
+//   java com.bytezone.dm3270.headless.ReplayRunner [-update] [-threads n]
+//        <snapshot folder> <session file or folder> ...
+//
+// A folder argument is the root of a library, and each of its sessions is named by its
+// path relative to that root (a file argument is named by its file name). The
+// snapshot has the same name under the snapshot folder, so the library can be moved
+// or run from another checkout. A session without a snapshot counts as a failure
+// unless -update was given.
+//
+// The Screen is still a Canvas, so the screen stage of every session runs on the
+// application thread. Decoding, snapshot comparison and file i/o run in parallel.
+
+public class ReplayRunner
+{
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+  private final ForkJoinPool pool;
+  private final Path snapshotFolder;
+  private final boolean update;
+  private final Preferences prefs = Preferences.userNodeForPackage (ReplayRunner.class);
+
+  public enum Status
+  {
+    PASSED, FAILED, CREATED, UPDATED, ERROR
+  }
+
+  // update means that every snapshot is rewritten rather than compared
+  public ReplayRunner (Path snapshotFolder, int threads, boolean update)
+  {
+    if (threads <= 0)
+      throw new IllegalArgumentException ("Threads must be a positive integer");
+    if (!Files.isDirectory (snapshotFolder))
+      throw new IllegalArgumentException ("Not a folder: " + snapshotFolder);
+
+    this.snapshotFolder = snapshotFolder;
+    this.update = update;
+    pool = new ForkJoinPool (threads);
+  }
+
+  // Each session file is mapped to the relative path that names its snapshot. The
+  // results are in the same order as the map.
+  public List<ReplayResult> run (Map<Path, Path> sessions) throws InterruptedException
+  {
+    List<Callable<ReplayResult>> tasks = new ArrayList<> ();
+    for (Map.Entry<Path, Path> entry : sessions.entrySet ())
+      tasks.add ( () -> replay (entry.getKey (), entry.getValue ()));
+
+    List<ReplayResult> results = new ArrayList<> ();
+    for (Future<ReplayResult> future : pool.invokeAll (tasks))
+      try
+      {
+        results.add (future.get ());
+      }
+      catch (ExecutionException e)
+      {
+        // replay() reports its own exceptions, so this should never happen
+        throw new IllegalStateException (e.getCause ());
+      }
+
+    return results;
+  }
+
+  public void shutdown ()
+  {
+    pool.shutdown ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Replay a single session
+  // ---------------------------------------------------------------------------------//
+
+  // name is relative to the library root, so it cannot leave the snapshot folder
+  private Path getSnapshotPath (Path name)
+  {
+    if (name.isAbsolute () || name.normalize ().startsWith (".."))
+      throw new IllegalArgumentException ("Not a relative path: " + name);
+    return snapshotFolder.resolve (name.normalize ().toString () + SNAPSHOT_SUFFIX);
+  }
+
+  // called on a pool thread
+  private ReplayResult replay (Path path, Path name)
+  {
+    long start = System.nanoTime ();
+    try
+    {
+      Session session = new Session (new TelnetState (), path);
+      List<SessionRecord> records = new ArrayList<> (session.getDataRecords ());
+
+      List<String> actual =
+          CompletableFuture.supplyAsync ( () -> process (records), Platform::runLater)
+              .get ();
+
+      Path snapshotPath = getSnapshotPath (name);
+      Status status;
+      String message = "";
+
+      if (update || !Files.exists (snapshotPath))
+      {
+        status = Files.exists (snapshotPath) ? Status.UPDATED : Status.CREATED;
+        Files.createDirectories (snapshotPath.getParent ());
+        Files.write (snapshotPath, actual, StandardCharsets.UTF_8);
+      }
+      else
+      {
+        List<String> expected = Files.readAllLines (snapshotPath, StandardCharsets.UTF_8);
+        int line = firstDifference (expected, actual);
+        status = line < 0 ? Status.PASSED : Status.FAILED;
+        if (line >= 0)
+          message = String.format ("line %d : expected [%s] found [%s]", line + 1,
+                                   line < expected.size () ? expected.get (line) : "EOF",
+                                   line < actual.size () ? actual.get (line) : "EOF");
+      }
+
+      return new ReplayResult (path, name, status, records.size (),
+          System.nanoTime () - start, message);
+    }
+    catch (Exception e)
+    {
+      Throwable cause = e instanceof ExecutionException ? e.getCause () : e;
+      return new ReplayResult (path, name, Status.ERROR, 0, System.nanoTime () - start,
+          cause.toString ());
+    }
+  }
+
+  // Called on the application thread. Every record is processed (the client's AIDs
+  // put the user's input back on the screen), but only the host records produce a
+  // snapshot entry.
+  private List<String> process (List<SessionRecord> records)
+  {
+    List<String> lines = new ArrayList<> ();
+    Screen screen = createScreen ();
+
+    try
+    {
+      int recordNo = 0;
+      for (SessionRecord record : records)
+      {
+        ++recordNo;
+        record.getMessage ().process (screen);
+
+        if (record.getSource () != Source.SERVER || record.isTelnet ())
+          continue;
+
+        lines.add (String.format ("#%d %s", recordNo, record.getCommandName ()));
+        for (String line : screen.getScreenText ().split ("\n"))
+          lines.add (line);
+
+        Optional<Buffer> reply = record.getMessage ().getReply ();
+        if (reply.isPresent ())
+          lines.add ("reply: " + Dm3270Utility.toHexString (reply.get ().getData ()));
+      }
+    }
+    finally
+    {
+      screen.close ();
+    }
+
+    return lines;
+  }
+
+  // called on the application thread
+  private Screen createScreen ()
+  {
+    return new Screen (new ScreenDimensions (24, 80), new ScreenDimensions (27, 132),
+        prefs, Function.REPLAY, new PluginsStage (prefs), null, new TelnetState ());
+  }
+
+  // returns -1 if the lists are the same
+  private int firstDifference (List<String> expected, List<String> actual)
+  {
+    int max = Math.min (expected.size (), actual.size ());
+    for (int i = 0; i < max; i++)
+      if (!expected.get (i).equals (actual.get (i)))
+        return i;
+    return expected.size () == actual.size () ? -1 : max;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // ReplayResult
+  // ---------------------------------------------------------------------------------//
+
+  public static class ReplayResult
+  {
+    public final Path path;
+    public final Path name;                   // relative to the library root
+    public final Status status;
+    public final int records;
+    public final long nanos;
+    public final String message;
+
+    ReplayResult (Path path, Path name, Status status, int records, long nanos,
+        String message)
+    {
+      this.path = path;
+      this.name = name;
+      this.status = status;
+      this.records = records;
+      this.nanos = nanos;
+      this.message = message;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return String.format ("%-7s %-40s %,7d records %,9.1f ms  %s", status,
+                            name, records, nanos / 1_000_000.0, message);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Main
+  // ---------------------------------------------------------------------------------//
+
+  public static void main (String[] args) throws Exception
+  {
+    boolean update = false;
+    int threads = Runtime.getRuntime ().availableProcessors ();
+    List<String> names = new ArrayList<> ();
+
+    for (int i = 0; i < args.length; i++)
+      if (args[i].equals ("-update"))
+        update = true;
+      else if (args[i].equals ("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt (args[++i]);
+      else
+        names.add (args[i]);
+
+    if (names.size () < 2)
+    {
+      System.out.println ("Usage: ReplayRunner [-update] [-threads n] <snapshot folder> "
+          + "<session file or folder> ...");
+      return;
+    }
+
+    // each session is named by its path relative to the folder it was found in
+    Map<Path, Path> sessions = new LinkedHashMap<> ();
+    Map<Path, Path> sessionNames = new LinkedHashMap<> ();
+    for (String name : names.subList (1, names.size ()))
+    {
+      Path root = Paths.get (name);
+      List<Path> paths = new ArrayList<> ();
+      if (Files.isDirectory (root))
+        try (Stream<Path> stream = Files.walk (root))
+        {
+          paths.addAll (stream.filter (Files::isRegularFile).sorted ()
+              .collect (Collectors.toList ()));
+        }
+      else
+        paths.add (root);
+
+      for (Path path : paths)
+      {
+        Path sessionName = path == root ? root.getFileName () : root.relativize (path);
+        Path previous = sessionNames.put (sessionName, path);
+        if (previous != null && !previous.equals (path))
+        {
+          System.out.printf ("%s and %s would share the snapshot %s%n", previous, path,
+                             sessionName);
+          return;
+        }
+        sessions.put (path, sessionName);
+      }
+    }
+
+    HeadlessSession.startToolkit ();
+    ReplayRunner runner = new ReplayRunner (Paths.get (names.get (0)), threads, update);
+
+    long start = System.nanoTime ();
+    List<ReplayResult> results = runner.run (sessions);
+    long elapsed = System.nanoTime () - start;
+    runner.shutdown ();
+
+    int[] totals = new int[Status.values ().length];
+    long records = 0;
+    for (ReplayResult result : results)
+    {
+      System.out.println (result);
+      totals[result.status.ordinal ()]++;
+      records += result.records;
+    }
+
+    System.out.println ();
+    for (Status status : Status.values ())
+      if (totals[status.ordinal ()] > 0)
+        System.out.printf ("%-7s %,7d%n", status, totals[status.ordinal ()]);
+    System.out.printf ("%,d sessions, %,d records in %,.1f seconds : %,.0f records/sec%n",
+                       results.size (), records, elapsed / 1e9,
+                       records / (elapsed / 1e9));
+
+    // a missing snapshot is only expected when the snapshots are being rewritten
+    int failures = totals[Status.FAILED.ordinal ()] + totals[Status.ERROR.ordinal ()];
+    if (!update)
+      failures += totals[Status.CREATED.ordinal ()];
+
+    Platform.exit ();
+    System.exit (failures > 0 ? 1 : 0);
+  }
+}
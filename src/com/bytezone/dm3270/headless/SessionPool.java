@@ -0,0 +1,410 @@
+package com.bytezone.dm3270.headless;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.prefs.Preferences;
+
+import com.bytezone.dm3270.utilities.Site;
+
+// Keeps logged-on HeadlessSessions for each site and LU name so that callers don't
+// pay for telnet negotiation, BIND and logon on every job. A new session is
+// connected and then handed to the logon function, which should navigate to the
+// screen that callers expect. When a session is released the reset function must
+// return it to that same screen, otherwise the session is discarded. Idle sessions
+// are sent a NOOP at each health check, and any that have lost their connection
+// are dropped. When a host stops accepting sessions, the replacements for waiting
+// callers are opened with an increasing delay rather than all at once.
+
+public class SessionPool
+{
+  private static final long MIN_RETRY_DELAY = 500;        // milliseconds
+  private static final long MAX_RETRY_DELAY = 30000;
+
+  private final Preferences prefs;
+  private final int maxSessions;                  // per site and LU
+  private final long connectTimeout;              // milliseconds
+  private final Function<HeadlessSession, CompletableFuture<?>> logon;
+  private final Function<HeadlessSession, CompletableFuture<?>> reset;
+
+  private final Map<String, PoolEntry> entries = new HashMap<> ();
+  private final Map<HeadlessSession, PoolEntry> leasedSessions = new HashMap<> ();
+  private final Set<HeadlessSession> connectingSessions = new HashSet<> ();
+  private final ScheduledExecutorService executor;
+  private boolean closed;
+
+  // sessions that finish connecting after close() still need somewhere to run
+  private final Executor completionExecutor = task ->
+  {
+    try
+    {
+      executor.execute (task);
+    }
+    catch (RejectedExecutionException e)
+    {
+      task.run ();
+    }
+  };
+
+  public SessionPool (Preferences prefs, int maxSessions, long connectTimeout,
+      long healthCheckInterval, Function<HeadlessSession, CompletableFuture<?>> logon,
+      Function<HeadlessSession, CompletableFuture<?>> reset)
+  {
+    if (maxSessions <= 0)
+      throw new IllegalArgumentException ("Max sessions must be a positive integer");
+    if (logon == null || reset == null)
+      throw new IllegalArgumentException ("Logon and reset functions are required");
+
+    this.prefs = prefs;
+    this.maxSessions = maxSessions;
+    this.connectTimeout = connectTimeout;
+    this.logon = logon;
+    this.reset = reset;
+
+    executor = Executors.newSingleThreadScheduledExecutor (r ->
+    {
+      Thread thread = new Thread (r, "SessionPool");
+      thread.setDaemon (true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay ( () -> checkSessions (), healthCheckInterval,
+                                      healthCheckInterval, TimeUnit.MILLISECONDS);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Lease and release
+  // ---------------------------------------------------------------------------------//
+
+  // An empty luName means any LU that the server chooses. The future completes when
+  // an idle session is available, which may mean waiting for another caller to
+  // release one.
+  public CompletableFuture<HeadlessSession> lease (Site site, String luName)
+  {
+    CompletableFuture<HeadlessSession> future = new CompletableFuture<> ();
+    HeadlessSession session = null;
+
+    synchronized (this)
+    {
+      if (closed)
+      {
+        future.completeExceptionally (
+            new IllegalStateException ("SessionPool is closed"));
+        return future;
+      }
+
+      PoolEntry entry = getEntry (site, luName == null ? "" : luName);
+
+      while ((session = entry.idleSessions.pollFirst ()) != null)
+        if (session.isConnected ())
+          break;
+        else
+          discard (entry, session);
+
+      if (session != null)
+        leasedSessions.put (session, entry);
+      else if (entry.totalSessions < maxSessions
+          && System.currentTimeMillis () >= entry.retryTime)
+      {
+        entry.totalSessions++;
+        open (entry, future);
+      }
+      else
+      {
+        entry.waiting.add (future);
+        scheduleRetry (entry);
+      }
+    }
+
+    if (session != null)
+      future.complete (session);
+
+    return future;
+  }
+
+  public void release (HeadlessSession session)
+  {
+    PoolEntry entry;
+    synchronized (this)
+    {
+      entry = leasedSessions.remove (session);
+    }
+
+    if (entry == null)
+      throw new IllegalArgumentException ("Session was not leased from this pool");
+
+    reset.apply (session).whenCompleteAsync ( (result, exception) ->
+    {
+      if (exception == null && session.isConnected ())
+        makeAvailable (entry, session);
+      else
+      {
+        System.out.printf ("Discarding %s : %s%n", session, exception);
+        synchronized (this)
+        {
+          discard (entry, session);
+        }
+      }
+    }, completionExecutor);
+  }
+
+  public synchronized int idleSessions ()
+  {
+    int total = 0;
+    for (PoolEntry entry : entries.values ())
+      total += entry.idleSessions.size ();
+    return total;
+  }
+
+  public synchronized int leasedSessions ()
+  {
+    return leasedSessions.size ();
+  }
+
+  public void close ()
+  {
+    List<HeadlessSession> sessions = new ArrayList<> ();
+
+    synchronized (this)
+    {
+      closed = true;
+      for (PoolEntry entry : entries.values ())
+      {
+        sessions.addAll (entry.idleSessions);
+        entry.idleSessions.clear ();
+        for (CompletableFuture<HeadlessSession> future : entry.waiting)
+          future.completeExceptionally (
+              new IllegalStateException ("SessionPool is closed"));
+        entry.waiting.clear ();
+      }
+      sessions.addAll (leasedSessions.keySet ());
+      leasedSessions.clear ();
+      sessions.addAll (connectingSessions);     // open() disconnects them again
+    }
+
+    executor.shutdownNow ();
+    for (HeadlessSession session : sessions)
+      session.disconnect ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Utility methods
+  // ---------------------------------------------------------------------------------//
+
+  private PoolEntry getEntry (Site site, String luName)
+  {
+    String key = site.getName () + "/" + luName;
+    PoolEntry entry = entries.get (key);
+    if (entry == null)
+    {
+      entry = new PoolEntry (site, luName);
+      entries.put (key, entry);
+    }
+    return entry;
+  }
+
+  // called with the lock held, totalSessions has already been incremented
+  private void open (PoolEntry entry, CompletableFuture<HeadlessSession> future)
+  {
+    HeadlessSession session = new HeadlessSession (entry.site, prefs);
+    session.requestLogicalUnit (entry.luName);
+    connectingSessions.add (session);
+
+    session.connect (connectTimeout, TimeUnit.MILLISECONDS)
+        .thenComposeAsync (data -> logon.apply (session), completionExecutor)
+        .whenCompleteAsync (
+            (result, exception) -> opened (entry, session, future, exception),
+            completionExecutor);
+  }
+
+  private void opened (PoolEntry entry, HeadlessSession session,
+      CompletableFuture<HeadlessSession> future, Throwable exception)
+  {
+    synchronized (this)
+    {
+      connectingSessions.remove (session);
+
+      if (closed)
+        exception = new IllegalStateException ("SessionPool is closed");
+
+      if (exception != null)
+      {
+        if (!closed)
+          entry.failed ();
+        discard (entry, session);
+      }
+      else
+      {
+        entry.failures = 0;
+        leasedSessions.put (session, entry);
+      }
+    }
+
+    if (exception != null)
+      future.completeExceptionally (exception);
+    else
+      future.complete (session);
+  }
+
+  // the session is ready for the next caller
+  private void makeAvailable (PoolEntry entry, HeadlessSession session)
+  {
+    CompletableFuture<HeadlessSession> future;
+    synchronized (this)
+    {
+      if (closed)
+      {
+        discard (entry, session);
+        return;
+      }
+
+      future = entry.waiting.pollFirst ();
+      if (future == null)
+      {
+        entry.idleSessions.addLast (session);
+        return;
+      }
+      leasedSessions.put (session, entry);
+    }
+    future.complete (session);
+  }
+
+  // called with the lock held
+  private void discard (PoolEntry entry, HeadlessSession session)
+  {
+    entry.totalSessions--;
+    completionExecutor.execute ( () -> session.disconnect ());
+    reopen (entry);
+  }
+
+  // called with the lock held - replace sessions for anybody who is waiting, unless
+  // the host has been failing
+  private void reopen (PoolEntry entry)
+  {
+    if (closed)
+      return;
+
+    if (System.currentTimeMillis () < entry.retryTime)
+    {
+      scheduleRetry (entry);
+      return;
+    }
+
+    while (entry.waiting.size () > 0 && entry.totalSessions < maxSessions)
+    {
+      entry.totalSessions++;
+      open (entry, entry.waiting.pollFirst ());
+    }
+  }
+
+  // called with the lock held
+  private void scheduleRetry (PoolEntry entry)
+  {
+    if (entry.retryScheduled || closed)
+      return;
+
+    long delay = entry.retryTime - System.currentTimeMillis ();
+    if (delay <= 0)
+      return;
+
+    entry.retryScheduled = true;
+    executor.schedule ( () ->
+    {
+      synchronized (this)
+      {
+        entry.retryScheduled = false;
+        reopen (entry);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  // Called from the executor. The idle sessions are taken out of the pool while
+  // they are checked, so that a stalled socket never holds the lock.
+  private void checkSessions ()
+  {
+    Map<HeadlessSession, PoolEntry> sessions = new HashMap<> ();
+    synchronized (this)
+    {
+      for (PoolEntry entry : entries.values ())
+      {
+        for (HeadlessSession session : entry.idleSessions)
+          sessions.put (session, entry);
+        entry.idleSessions.clear ();
+      }
+    }
+
+    for (Map.Entry<HeadlessSession, PoolEntry> mapEntry : sessions.entrySet ())
+    {
+      HeadlessSession session = mapEntry.getKey ();
+      session.sendNoOp ();                      // a failed write closes the connection
+
+      if (session.isConnected ())
+        makeAvailable (mapEntry.getValue (), session);
+      else
+        synchronized (this)
+        {
+          discard (mapEntry.getValue (), session);
+        }
+    }
+  }
+
+  @Override
+  public synchronized String toString ()
+  {
+    StringBuilder text = new StringBuilder ();
+
+    for (PoolEntry entry : entries.values ())
+      text.append (String.format ("%-20s %-8s  total: %3d  idle: %3d  waiting: %3d%n",
+                                  entry.site.getName (), entry.luName,
+                                  entry.totalSessions, entry.idleSessions.size (),
+                                  entry.waiting.size ()));
+
+    if (text.length () > 0)
+      text.deleteCharAt (text.length () - 1);
+
+    return text.toString ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // PoolEntry
+  // ---------------------------------------------------------------------------------//
+
+  private class PoolEntry
+  {
+    private final Site site;
+    private final String luName;
+    private int totalSessions;              // idle + leased + connecting
+    private final Deque<HeadlessSession> idleSessions = new ArrayDeque<> ();
+    private final Deque<CompletableFuture<HeadlessSession>> waiting =
+        new ArrayDeque<> ();
+
+    private int failures;                   // connects or logons in a row
+    private long retryTime;                 // no new sessions before this
+    private boolean retryScheduled;
+
+    PoolEntry (Site site, String luName)
+    {
+      this.site = site;
+      this.luName = luName;
+    }
+
+    // the delay doubles with each failure
+    void failed ()
+    {
+      long delay = Math.min (MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min (failures, 16));
+      ++failures;
+      retryTime = System.currentTimeMillis () + delay;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.bytezone.dm3270.headless;
+
+public class StepTiming
+{
+  public final String name;
+  public final int sequence;
+  public final long startNanos;
+  public final long elapsedNanos;
+
+  public StepTiming (String name, int sequence, long startNanos, long elapsedNanos)
+  {
+    this.name = name;
+    this.sequence = sequence;
+    this.startNanos = startNanos;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public double getMillis ()
+  {
+    return elapsedNanos / 1_000_000.0;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("%5d  %-12s %,10.3f ms", sequence, name, getMillis ());
+  }
+}
@@ -0,0 +1,6 @@
+package com.bytezone.dm3270.headless;
+
+public interface StepTimingListener
+{
+  public void stepCompleted (StepTiming stepTiming);
+}
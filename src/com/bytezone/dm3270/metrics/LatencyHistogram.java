@@ -0,0 +1,106 @@
+package com.bytezone.dm3270.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear histogram of nanosecond values in the style of HdrHistogram. Every power
+// of two is split into 32 equal buckets, so a reported percentile is within about 3%
+// of the true value. Recording is lock-free and never allocates, so it is cheap enough
+// to call on every record and every screen.
+
+public class LatencyHistogram
+{
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;          // 32
+  private static final int TOTAL_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray (TOTAL_BUCKETS);
+  private final LongAdder totalCount = new LongAdder ();
+  private final LongAdder totalNanos = new LongAdder ();
+  private final LongAccumulator maxNanos = new LongAccumulator (Math::max, 0);
+
+  public void record (long nanos)
+  {
+    if (nanos < 0)
+      nanos = 0;
+
+    counts.incrementAndGet (getIndex (nanos));
+    totalCount.increment ();
+    totalNanos.add (nanos);
+    maxNanos.accumulate (nanos);
+  }
+
+  public long getCount ()
+  {
+    return totalCount.sum ();
+  }
+
+  public long getMeanNanos ()
+  {
+    long count = totalCount.sum ();
+    return count == 0 ? 0 : totalNanos.sum () / count;
+  }
+
+  public long getMaxNanos ()
+  {
+    return maxNanos.get ();
+  }
+
+  // percentile is between 0 and 100
+  public long getPercentileNanos (double percentile)
+  {
+    long count = totalCount.sum ();
+    if (count == 0)
+      return 0;
+
+    long target = Math.max (1, (long) Math.ceil (count * percentile / 100));
+    long total = 0;
+    for (int i = 0; i < TOTAL_BUCKETS; i++)
+    {
+      total += counts.get (i);
+      if (total >= target)
+        return Math.min (getMidpoint (i), getMaxNanos ());
+    }
+    return getMaxNanos ();
+  }
+
+  public void reset ()
+  {
+    for (int i = 0; i < TOTAL_BUCKETS; i++)
+      counts.set (i, 0);
+    totalCount.reset ();
+    totalNanos.reset ();
+    maxNanos.reset ();
+  }
+
+  // values below 64 have their own bucket, above that each bucket is 1/32 of its
+  // power of two
+  private static int getIndex (long value)
+  {
+    if (value < SUB_BUCKETS * 2)
+      return (int) value;
+
+    int shift = 63 - Long.numberOfLeadingZeros (value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  private static long getMidpoint (int index)
+  {
+    if (index < SUB_BUCKETS * 2)
+      return index;
+
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    return lowest + ((1L << shift) >> 1);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("count: %,d  mean: %,.3f ms  p50: %,.3f ms  p99: %,.3f ms  "
+        + "max: %,.3f ms", getCount (), getMeanNanos () / 1e6,
+                          getPercentileNanos (50) / 1e6, getPercentileNanos (99) / 1e6,
+                          getMaxNanos () / 1e6);
+  }
+}
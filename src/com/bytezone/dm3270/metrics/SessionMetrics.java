@@ -0,0 +1,318 @@
+package com.bytezone.dm3270.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Latency histograms and IO counters for a single session. Each TelnetState owns one,
+// and registers it with the platform MBeanServer while it is connected, as
+//   com.bytezone.dm3270:type=SessionMetrics,name="<server>#<n>"
+
+public class SessionMetrics implements SessionMetricsMBean
+{
+  private static final AtomicInteger sessionCount = new AtomicInteger ();
+
+  private final LatencyHistogram hostResponse = new LatencyHistogram ();
+  private final LatencyHistogram parse = new LatencyHistogram ();
+  private final LatencyHistogram render = new LatencyHistogram ();
+
+  private final LongAdder bytesRead = new LongAdder ();
+  private final LongAdder bytesWritten = new LongAdder ();
+  private final LongAdder recordsRead = new LongAdder ();
+  private final LongAdder transferBytes = new LongAdder ();
+
+  private volatile long startNanos = System.nanoTime ();
+  private volatile long aidSentNanos;               // zero when no AID is outstanding
+  private volatile long transferStartNanos;         // zero when no transfer is active
+  private final LongAdder transferNanos = new LongAdder ();
+
+  private ObjectName objectName;
+
+  // ---------------------------------------------------------------------------------//
+  // Registration
+  // ---------------------------------------------------------------------------------//
+
+  // called from TelnetState.setTerminalServer()
+  public synchronized void register (String serverName)
+  {
+    if (objectName != null)
+      return;
+
+    try
+    {
+      String id = serverName + "#" + sessionCount.incrementAndGet ();
+      ObjectName name = new ObjectName (
+          "com.bytezone.dm3270:type=SessionMetrics,name=" + ObjectName.quote (id));
+      ManagementFactory.getPlatformMBeanServer ().registerMBean (this, name);
+      objectName = name;
+    }
+    catch (JMException e)
+    {
+      System.out.println ("Unable to register metrics: " + e);
+    }
+  }
+
+  // called from TelnetState.close()
+  public synchronized void unregister ()
+  {
+    if (objectName == null)
+      return;
+
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+      if (server.isRegistered (objectName))
+        server.unregisterMBean (objectName);
+    }
+    catch (JMException e)
+    {
+      System.out.println ("Unable to unregister metrics: " + e);
+    }
+    objectName = null;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Recording
+  // ---------------------------------------------------------------------------------//
+
+  // called from ConsolePane.sendAID()
+  // called from HeadlessSession.sendAID()
+  public void aidSent ()
+  {
+    aidSentNanos = System.nanoTime ();
+  }
+
+  // called from WriteControlCharacter.process()
+  public void keyboardRestored ()
+  {
+    long sent = aidSentNanos;
+    if (sent != 0)
+    {
+      aidSentNanos = 0;
+      hostResponse.record (System.nanoTime () - sent);
+    }
+  }
+
+  // called from TelnetState.setLastAccess()
+  public void bytesRead (int bytes)
+  {
+    bytesRead.add (bytes);
+  }
+
+  // called from TelnetState.write()
+  public void bytesWritten (int bytes)
+  {
+    bytesWritten.add (bytes);
+  }
+
+  // called from TelnetListener.processRecord()
+  public void recordParsed (long nanos)
+  {
+    recordsRead.increment ();
+    parse.record (nanos);
+  }
+
+  // called from Screen.draw()
+  public void screenRendered (long nanos)
+  {
+    render.record (nanos);
+  }
+
+  // called from FileTransferOutboundSF.processOpen()
+  public void transferStarted ()
+  {
+    transferStartNanos = System.nanoTime ();
+  }
+
+  // called from FileTransferOutboundSF.processUpload()
+  // called from FileTransferOutboundSF.processDownload()
+  public void transferData (int bytes)
+  {
+    transferBytes.add (bytes);
+  }
+
+  // called from FileTransferOutboundSF.processClose()
+  public void transferFinished ()
+  {
+    long started = transferStartNanos;
+    if (started != 0)
+    {
+      transferStartNanos = 0;
+      transferNanos.add (System.nanoTime () - started);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // SessionMetricsMBean
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public long getHostResponseCount ()
+  {
+    return hostResponse.getCount ();
+  }
+
+  @Override
+  public double getHostResponseMeanMillis ()
+  {
+    return hostResponse.getMeanNanos () / 1e6;
+  }
+
+  @Override
+  public double getHostResponse50thMillis ()
+  {
+    return hostResponse.getPercentileNanos (50) / 1e6;
+  }
+
+  @Override
+  public double getHostResponse95thMillis ()
+  {
+    return hostResponse.getPercentileNanos (95) / 1e6;
+  }
+
+  @Override
+  public double getHostResponse99thMillis ()
+  {
+    return hostResponse.getPercentileNanos (99) / 1e6;
+  }
+
+  @Override
+  public double getHostResponseMaxMillis ()
+  {
+    return hostResponse.getMaxNanos () / 1e6;
+  }
+
+  @Override
+  public long getParseCount ()
+  {
+    return parse.getCount ();
+  }
+
+  @Override
+  public double getParseMeanMicros ()
+  {
+    return parse.getMeanNanos () / 1e3;
+  }
+
+  @Override
+  public double getParse99thMicros ()
+  {
+    return parse.getPercentileNanos (99) / 1e3;
+  }
+
+  @Override
+  public double getParseMaxMicros ()
+  {
+    return parse.getMaxNanos () / 1e3;
+  }
+
+  @Override
+  public long getRenderCount ()
+  {
+    return render.getCount ();
+  }
+
+  @Override
+  public double getRenderMeanMillis ()
+  {
+    return render.getMeanNanos () / 1e6;
+  }
+
+  @Override
+  public double getRender99thMillis ()
+  {
+    return render.getPercentileNanos (99) / 1e6;
+  }
+
+  @Override
+  public double getRenderMaxMillis ()
+  {
+    return render.getMaxNanos () / 1e6;
+  }
+
+  @Override
+  public long getBytesRead ()
+  {
+    return bytesRead.sum ();
+  }
+
+  @Override
+  public long getBytesWritten ()
+  {
+    return bytesWritten.sum ();
+  }
+
+  @Override
+  public long getRecordsRead ()
+  {
+    return recordsRead.sum ();
+  }
+
+  @Override
+  public double getBytesReadPerSecond ()
+  {
+    return perSecond (bytesRead.sum (), System.nanoTime () - startNanos);
+  }
+
+  @Override
+  public double getRecordsReadPerSecond ()
+  {
+    return perSecond (recordsRead.sum (), System.nanoTime () - startNanos);
+  }
+
+  @Override
+  public long getTransferBytes ()
+  {
+    return transferBytes.sum ();
+  }
+
+  // only counts the time that a transfer was in progress
+  @Override
+  public double getTransferBytesPerSecond ()
+  {
+    long nanos = transferNanos.sum ();
+    long started = transferStartNanos;
+    if (started != 0)
+      nanos += System.nanoTime () - started;
+    return perSecond (transferBytes.sum (), nanos);
+  }
+
+  @Override
+  public void reset ()
+  {
+    hostResponse.reset ();
+    parse.reset ();
+    render.reset ();
+    bytesRead.reset ();
+    bytesWritten.reset ();
+    recordsRead.reset ();
+    transferBytes.reset ();
+    transferNanos.reset ();
+    startNanos = System.nanoTime ();
+  }
+
+  private double perSecond (long value, long nanos)
+  {
+    return nanos <= 0 ? 0 : value * 1e9 / nanos;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Summary
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public String toString ()
+  {
+    StringBuilder text = new StringBuilder ();
+
+    text.append (String.format ("Host response  %s%n", hostResponse));
+    text.append (String.format ("Parse          %s%n", parse));
+    text.append (String.format ("Render         %s", render));
+
+    return text.toString ();
+  }
+}
@@ -0,0 +1,56 @@
+package com.bytezone.dm3270.metrics;
+
+// The attributes that a JMX console (jconsole, VisualVM etc) shows for each session.
+// Times are in milliseconds, except for parse times which are in microseconds.
+
+public interface SessionMetricsMBean
+{
+  // AID sent until the host's WCC restores the keyboard
+  public long getHostResponseCount ();
+
+  public double getHostResponseMeanMillis ();
+
+  public double getHostResponse50thMillis ();
+
+  public double getHostResponse95thMillis ();
+
+  public double getHostResponse99thMillis ();
+
+  public double getHostResponseMaxMillis ();
+
+  // converting one telnet record into a command
+  public long getParseCount ();
+
+  public double getParseMeanMicros ();
+
+  public double getParse99thMicros ();
+
+  public double getParseMaxMicros ();
+
+  // drawing one screen
+  public long getRenderCount ();
+
+  public double getRenderMeanMillis ();
+
+  public double getRender99thMillis ();
+
+  public double getRenderMaxMillis ();
+
+  // IO totals and rates since the metrics were started or reset
+  public long getBytesRead ();
+
+  public long getBytesWritten ();
+
+  public long getRecordsRead ();
+
+  public double getBytesReadPerSecond ();
+
+  public double getRecordsReadPerSecond ();
+
+  // IND$FILE transfers
+  public long getTransferBytes ();
+
+  public double getTransferBytesPerSecond ();
+
+  public void reset ();
+}
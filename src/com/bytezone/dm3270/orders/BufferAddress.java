@@ -56,11 +56,22 @@ public class BufferAddress
     return isValid;
   }
 
+  // 12-bit addresses only reach 4095, so larger screens need the 14-bit form
   public BufferAddress (int location)
   {
     this.location = location;
-    b1 = address[location >> 6];
-    b2 = address[location & 0x3F];
+    b1 = highByte (location);
+    b2 = lowByte (location);
+  }
+
+  private static byte highByte (int location)
+  {
+    return location < 0x1000 ? address[location >> 6] : (byte) ((location >> 8) & 0x3F);
+  }
+
+  private static byte lowByte (int location)
+  {
+    return location < 0x1000 ? address[location & 0x3F] : (byte) location;
   }
 
   public int getLocation ()
@@ -70,8 +81,8 @@ public class BufferAddress
 
   public int packAddress (byte[] buffer, int offset)
   {
-    buffer[offset++] = address[location >> 6];
-    buffer[offset++] = address[location & 0x3F];
+    buffer[offset++] = highByte (location);
+    buffer[offset++] = lowByte (location);
 
     return offset;
   }
@@ -1,7 +1,6 @@
 package com.bytezone.dm3270.orders;
 
 import com.bytezone.dm3270.display.DisplayScreen;
-import com.bytezone.dm3270.display.Pen;
 
 public class FormatControlOrder extends Order
 {
@@ -21,10 +20,8 @@ public class FormatControlOrder extends Order
   @Override
   public void process (DisplayScreen screen)
   {
-    Pen pen = screen.getPen ();
-    int max = duplicates;
-    while (max-- >= 0)                    // always do at least one
-      pen.write ((byte) 0x40);
+    // always do at least one
+    screen.getPen ().repeat ((byte) 0x40, duplicates + 1);
   }
 
   @Override
@@ -34,6 +34,15 @@ public abstract class Order
         FCO_FORM_FEED, FCO_CARRIAGE_RETURN, FCO_NEWLINE, FCO_END_OF_MEDIUM,
         FCO_EIGHT_ONES };
 
+  // one entry for every possible byte value, true if the byte starts an order
+  private static final boolean[] orderTable = new boolean[256];
+
+  static
+  {
+    for (byte value : orderValues)
+      orderTable[value & 0xFF] = true;
+  }
+
   protected boolean rejected;
 
   protected byte[] buffer;
@@ -89,6 +98,48 @@ public abstract class Order
     }
   }
 
+  public static boolean isOrder (byte value)
+  {
+    return orderTable[value & 0xFF];
+  }
+
+  // Returns the number of bytes that Order.getOrder() would consume, without creating
+  // the Order. A text run ends at the next order byte (or at max).
+  public static int getOrderLength (byte[] buffer, int ptr, int max)
+  {
+    switch (buffer[ptr])
+    {
+      case START_FIELD:
+      case GRAPHICS_ESCAPE:
+        return 2;
+
+      case START_FIELD_EXTENDED:
+      case MODIFY_FIELD:
+        return (buffer[ptr + 1] & 0xFF) * 2 + 2;
+
+      case SET_BUFFER_ADDRESS:
+      case SET_ATTRIBUTE:
+      case ERASE_UNPROTECTED:
+        return 3;
+
+      case REPEAT_TO_ADDRESS:
+        return buffer[ptr + 3] == GRAPHICS_ESCAPE ? 6 : 4;
+
+      case INSERT_CURSOR:
+      case PROGRAM_TAB:
+        return 1;
+
+      default:
+        if (isOrder (buffer[ptr]))
+          return 1;                                       // format control order
+
+        int end = ptr + 1;
+        while (end < max && !orderTable[buffer[end] & 0xFF])
+          end++;
+        return end - ptr;
+    }
+  }
+
   public boolean rejected ()
   {
     return rejected;
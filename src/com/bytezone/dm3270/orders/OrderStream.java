@@ -0,0 +1,98 @@
+package com.bytezone.dm3270.orders;
+
+import java.util.Arrays;
+
+// Splits a 3270 data stream into orders in a single pass without creating any Order
+// objects. Each token is recorded as an opcode, offset and length into the original
+// buffer, so a WriteCommand can be decoded (or skipped over) cheaply and the Order
+// objects built only when something asks for them.
+
+public class OrderStream
+{
+  public static final int TEXT = -1;              // opcode of a text run
+
+  private final byte[] buffer;
+  private int[] opcodes = new int[16];
+  private int[] offsets = new int[16];
+  private int[] lengths = new int[16];
+  private int size;
+
+  public OrderStream (byte[] buffer, int offset, int max)
+  {
+    this.buffer = buffer;
+
+    int ptr = offset;
+    while (ptr < max)
+    {
+      int length = Order.getOrderLength (buffer, ptr, max);
+      add (Order.isOrder (buffer[ptr]) ? buffer[ptr] & 0xFF : TEXT, ptr, length);
+      ptr += length;
+    }
+  }
+
+  private void add (int opcode, int offset, int length)
+  {
+    if (size == opcodes.length)
+    {
+      opcodes = Arrays.copyOf (opcodes, size * 2);
+      offsets = Arrays.copyOf (offsets, size * 2);
+      lengths = Arrays.copyOf (lengths, size * 2);
+    }
+    opcodes[size] = opcode;
+    offsets[size] = offset;
+    lengths[size] = length;
+    size++;
+  }
+
+  public int size ()
+  {
+    return size;
+  }
+
+  public byte[] getBuffer ()
+  {
+    return buffer;
+  }
+
+  public int getOpcode (int index)
+  {
+    return opcodes[index];
+  }
+
+  public boolean isText (int index)
+  {
+    return opcodes[index] == TEXT;
+  }
+
+  public int getOffset (int index)
+  {
+    return offsets[index];
+  }
+
+  public int getLength (int index)
+  {
+    return lengths[index];
+  }
+
+  // creates the Order object for a single token
+  public Order getOrder (int index)
+  {
+    return Order.getOrder (buffer, offsets[index], offsets[index] + lengths[index]);
+  }
+
+  @Override
+  public String toString ()
+  {
+    StringBuilder text = new StringBuilder ();
+
+    for (int i = 0; i < size; i++)
+      text.append (String.format ("%s %04X %4d%n",
+                                  isText (i) ? "TX" : String.format ("%02X", opcodes[i]),
+                                  offsets[i], lengths[i]));
+
+    if (text.length () > 0)
+      text.deleteCharAt (text.length () - 1);
+
+    return text.toString ();
+  }
+}
@@ -1,10 +1,10 @@
 package com.bytezone.dm3270.orders;
 
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.display.DisplayScreen;
 import com.bytezone.dm3270.display.Pen;
-import com.bytezone.dm3270.utilities.Dm3270Utility;
 
-public class RepeatToAddressOrder extends Order
+public class RepeatToAddressOrder extends Order implements BufferAddressSource
 {
   private final BufferAddress stopAddress;
   private char repeatCharacter;
@@ -18,7 +18,7 @@ public class RepeatToAddressOrder extends Order
 
     if (buffer[offset + 3] == Order.GRAPHICS_ESCAPE)
     {
-      repeatCharacter = (char) Dm3270Utility.ebc2asc[buffer[offset + 4] & 0xFF];
+      repeatCharacter = CodePage.getDefault ().toChar (buffer[offset + 4]);
       // offset + 5 can be used, but I haven't seen one yet
       rptChar = buffer[offset + 4];
 
@@ -26,7 +26,7 @@ public class RepeatToAddressOrder extends Order
     }
     else
     {
-      repeatCharacter = (char) Dm3270Utility.ebc2asc[buffer[offset + 3] & 0xFF];
+      repeatCharacter = CodePage.getDefault ().toChar (buffer[offset + 3]);
       rptChar = buffer[offset + 3];
 
       this.buffer = new byte[4];
@@ -38,17 +38,23 @@ public class RepeatToAddressOrder extends Order
       repeatCharacter = ' ';
   }
 
+  @Override
+  public BufferAddress getBufferAddress ()
+  {
+    return stopAddress;
+  }
+
   @Override
   public void process (DisplayScreen screen)
   {
     int stopLocation = stopAddress.getLocation ();
 
     Pen pen = screen.getPen ();
-    if (pen.getPosition () == stopLocation)
+    int count = pen.validate (stopLocation - pen.getPosition ());
+    if (count == 0)
       screen.clearScreen ();
     else
-      while (pen.getPosition () != stopLocation)
-        pen.write (rptChar);
+      pen.repeat (rptChar, count);
   }
 
   @Override
@@ -1,10 +1,7 @@
 package com.bytezone.dm3270.orders;
 
-import java.io.UnsupportedEncodingException;
-
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.display.DisplayScreen;
-import com.bytezone.dm3270.display.Pen;
-import com.bytezone.dm3270.utilities.Dm3270Utility;
 
 public class TextOrder extends Order
 {
@@ -23,30 +20,20 @@ public class TextOrder extends Order
 
   public TextOrder (String text)
   {
-    try
-    {
-      buffer = text.getBytes ("CP1047");
-    }
-    catch (UnsupportedEncodingException e)
-    {
-      e.printStackTrace ();
-    }
+    this (text, CodePage.getDefault ());
+  }
+
+  public TextOrder (String text, CodePage codePage)
+  {
+    buffer = codePage.getBytes (text);
   }
 
   private int getDataLength (byte[] buffer, int offset, int max)
   {
     int ptr = offset + 1;
-    int length = 1;
-    outer_loop: while (ptr < max)
-    {
-      byte value = buffer[ptr++];
-      for (int i = 0; i < orderValues.length; i++)
-        if (value == orderValues[i])
-          break outer_loop;
-      length++;
-    }
-
-    return length;
+    while (ptr < max && !isOrder (buffer[ptr]))
+      ptr++;
+    return ptr - offset;
   }
 
   public void scramble ()
@@ -57,7 +44,12 @@ public class TextOrder extends Order
 
   public String getTextString ()
   {
-    return Dm3270Utility.getString (buffer);
+    return getTextString (CodePage.getDefault ());
+  }
+
+  public String getTextString (CodePage codePage)
+  {
+    return codePage.getString (buffer);
   }
 
   @Override
@@ -69,14 +61,12 @@ public class TextOrder extends Order
   @Override
   public void process (DisplayScreen screen)
   {
-    Pen pen = screen.getPen ();
-    for (byte b : buffer)
-      pen.write (b);
+    screen.getPen ().write (buffer, 0, buffer.length);
   }
 
   @Override
   public String toString ()
   {
-    return buffer.length == 0 ? "" : "Text: [" + Dm3270Utility.getString (buffer) + "]";
+    return buffer.length == 0 ? "" : "Text: [" + getTextString () + "]";
   }
 }
\ No newline at end of file
@@ -27,4 +27,14 @@ public interface Plugin
   default void processRequest (PluginData screen)
   {
   }
+
+  // plugins that only care about what changed since the previous screen
+  default boolean doesDelta ()
+  {
+    return false;
+  }
+
+  default void processDelta (PluginDelta delta)
+  {
+  }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.bytezone.dm3270.plugins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PluginDelta
+{
+  public final PluginData data;                   // the current screen
+  public final ScreenLocation previousCursorLocation;
+
+  public final List<PluginField> addedFields = new ArrayList<> ();
+  public final List<PluginField> removedFields = new ArrayList<> ();
+  public final List<PluginField> modifiedFields = new ArrayList<> ();
+
+  // previous is null when this is the first screen the plugins have seen
+  public PluginDelta (PluginData previous, PluginData current)
+  {
+    this.data = current;
+    previousCursorLocation = previous == null ? null : previous.initialCursorLocation;
+
+    // fields are identified by their first display location
+    Map<Integer, PluginField> previousFields = new HashMap<> ();
+    if (previous != null)
+      for (PluginField field : previous.screenFields)
+        previousFields.put (field.location.location, field);
+
+    for (PluginField field : current.screenFields)
+    {
+      PluginField previousField = previousFields.remove (field.location.location);
+      if (previousField == null)
+        addedFields.add (field);
+      else if (!matches (previousField, field))
+        modifiedFields.add (field);
+      else
+        continue;
+
+      field.setData (current);          // allow PluginField.change (String)
+    }
+
+    removedFields.addAll (previousFields.values ());
+  }
+
+  private static boolean matches (PluginField field1, PluginField field2)
+  {
+    return field1.isProtected == field2.isProtected && field1.isAlpha == field2.isAlpha
+        && field1.isVisible == field2.isVisible && field1.isAltered == field2.isAltered
+        && field1.getLength ().equals (field2.getLength ())
+        && field1.getFieldValue ().equals (field2.getFieldValue ());
+  }
+
+  public boolean cursorChanged ()
+  {
+    return previousCursorLocation == null
+        || !previousCursorLocation.matches (data.initialCursorLocation);
+  }
+
+  public boolean fieldsChanged ()
+  {
+    return addedFields.size () > 0 || removedFields.size () > 0
+        || modifiedFields.size () > 0;
+  }
+
+  public boolean isEmpty ()
+  {
+    return !fieldsChanged () && !cursorChanged ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    StringBuilder text = new StringBuilder ();
+
+    text.append (String.format ("Sequence      : %d%n", data.sequence));
+    text.append (String.format ("Cursor from   : %s%n", previousCursorLocation));
+    text.append (String.format ("Cursor to     : %s%n", data.initialCursorLocation));
+
+    for (PluginField field : addedFields)
+      text.append (String.format (" + %s%n", field));
+    for (PluginField field : removedFields)
+      text.append (String.format (" - %s%n", field));
+    for (PluginField field : modifiedFields)
+      text.append (String.format (" * %s%n", field));
+
+    return text.toString ();
+  }
+}
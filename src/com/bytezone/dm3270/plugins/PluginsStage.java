@@ -1,6 +1,5 @@
 package com.bytezone.dm3270.plugins;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -45,6 +44,7 @@ public class PluginsStage extends PreferencesStage
   private ScreenDimensions screenDimensions;
   private int sequence;
   private ConsolePane consolePane;
+  private PluginData previousData;          // last screen seen by the auto plugins
 
   public PluginsStage (Preferences prefs)
   {
@@ -118,20 +118,35 @@ public class PluginsStage extends PreferencesStage
 
   public void processAll (PluginData data)
   {
+    PluginDelta delta = null;         // only built if a plugin wants it
+
     for (PluginEntry pluginEntry : plugins)
       if (pluginEntry.isActivated)
       {
         Plugin plugin = pluginEntry.plugin;
-        if (plugin != null && plugin.doesAuto ())
-          try
-          {
+        if (plugin == null)
+          continue;
+
+        try
+        {
+          if (plugin.doesAuto ())
             plugin.processAuto (data);
-          }
-          catch (Exception e)
+
+          if (plugin.doesDelta ())
           {
-            e.printStackTrace ();
+            if (delta == null)
+              delta = new PluginDelta (previousData, data);
+            if (!delta.isEmpty ())
+              plugin.processDelta (delta);
           }
+        }
+        catch (Exception e)
+        {
+          e.printStackTrace ();
+        }
       }
+
+    previousData = data;
   }
 
   public int activePlugins ()
@@ -334,16 +349,9 @@ public class PluginsStage extends PreferencesStage
         }
         else
         {
-          try
-          {
-            // should this type the characters instead?
-            field.setText (screenField.newData.getBytes ("CP1047"));
-            field.setModified (true);
-          }
-          catch (UnsupportedEncodingException e)
-          {
-            e.printStackTrace ();
-          }
+          // should this type the characters instead?
+          field.setText (screen.getCodePage ().getBytes (screenField.newData));
+          field.setModified (true);
         }
         field.draw ();      // draws the field without a cursor
       }
@@ -18,10 +18,16 @@ public class ScreenLocation
   }
 
   public ScreenLocation (int row, int column)
+  {
+    this (row, column, screenColumns);
+  }
+
+  // for screens that are not 80 columns wide
+  public ScreenLocation (int row, int column, int columns)
   {
     this.row = row;
     this.column = column;
-    location = row * screenColumns + column;
+    location = row * columns + column;
   }
 
   public boolean matches (ScreenLocation other)
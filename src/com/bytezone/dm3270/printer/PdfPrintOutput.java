@@ -0,0 +1,155 @@
+package com.bytezone.dm3270.printer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Writes a PDF file one page at a time. Each page is written to the file as soon as
+// it is finished, and only the object offsets are kept until close() writes the page
+// tree and the cross-reference table. Every page is US letter landscape in 8 point
+// Courier (one of the standard fonts, so nothing is embedded), which fits the usual
+// 132 x 66 printer page.
+//
+// Object 1 is the catalog, 2 is the page tree and 3 is the font. Each page then uses
+// two objects, its content stream followed by the page itself.
+
+class PdfPrintOutput implements PrintOutput
+{
+  private static final int PAGE_WIDTH = 792;
+  private static final int PAGE_HEIGHT = 612;
+  private static final int MARGIN = 36;
+  private static final int FONT_SIZE = 8;
+  private static final int LEADING = 8;
+  private static final int MAX_LINES = (PAGE_HEIGHT - 2 * MARGIN) / LEADING;
+
+  private static final int CATALOG = 1;
+  private static final int PAGES = 2;
+  private static final int FONT = 3;
+
+  private final OutputStream out;
+  private long offset;                                // bytes written so far
+  private final List<Long> offsets = new ArrayList<> ();      // indexed by object - 1
+
+  private final ByteArrayOutputStream page = new ByteArrayOutputStream ();
+  private int linesOnPage;
+  private int totalPages;
+
+  PdfPrintOutput (Path path) throws IOException
+  {
+    out = new BufferedOutputStream (Files.newOutputStream (path));
+
+    write ("%PDF-1.4\n");
+    write (new byte[] { '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n' });
+
+    startObject (CATALOG);
+    write (String.format ("<< /Type /Catalog /Pages %d 0 R >>%nendobj%n", PAGES));
+
+    offsets.add (0L);                                 // page tree is written last
+
+    startObject (FONT);
+    write ("<< /Type /Font /Subtype /Type1 /BaseFont /Courier "
+        + "/Encoding /WinAnsiEncoding >>\nendobj\n");
+  }
+
+  @Override
+  public void writeLine (String line) throws IOException
+  {
+    if (linesOnPage == MAX_LINES)                     // the host's page is too long
+      newPage ();
+
+    if (linesOnPage == 0)
+      page.write (String.format ("BT /F1 %d Tf %d TL %d %d Td%n", FONT_SIZE, LEADING,
+                                 MARGIN, PAGE_HEIGHT - MARGIN - FONT_SIZE)
+          .getBytes (StandardCharsets.US_ASCII));
+
+    page.write ('(');
+    for (int i = 0; i < line.length (); i++)
+    {
+      char ch = line.charAt (i);
+      if (ch == '(' || ch == ')' || ch == '\\')
+        page.write ('\\');
+      boolean printable = (ch >= 0x20 && ch < 0x7F) || (ch >= 0xA0 && ch <= 0xFF);
+      page.write (printable ? ch : ' ');          // WinAnsi matches Latin-1 here
+    }
+    page.write (") Tj T*\n".getBytes (StandardCharsets.US_ASCII));
+
+    ++linesOnPage;
+  }
+
+  // a page with no lines is still written, so that a form feed is never lost
+  @Override
+  public void newPage () throws IOException
+  {
+    if (linesOnPage > 0)
+      page.write ("ET\n".getBytes (StandardCharsets.US_ASCII));
+
+    int contents = offsets.size () + 1;
+    startObject (contents);
+    write (String.format ("<< /Length %d >>%nstream%n", page.size ()));
+    page.writeTo (out);
+    offset += page.size ();
+    write ("\nendstream\nendobj\n");
+
+    startObject (contents + 1);
+    write (String.format ("<< /Type /Page /Parent %d 0 R /MediaBox [0 0 %d %d] "
+        + "/Resources << /Font << /F1 %d 0 R >> >> /Contents %d 0 R >>%nendobj%n",
+                          PAGES, PAGE_WIDTH, PAGE_HEIGHT, FONT, contents));
+
+    page.reset ();
+    linesOnPage = 0;
+    ++totalPages;
+  }
+
+  @Override
+  public void flush () throws IOException
+  {
+    out.flush ();
+  }
+
+  @Override
+  public void close () throws IOException
+  {
+    if (linesOnPage > 0 || totalPages == 0)
+      newPage ();
+
+    offsets.set (PAGES - 1, offset);
+    write ("2 0 obj\n<< /Type /Pages /Kids [");
+    for (int i = 0; i < totalPages; i++)
+      write (String.format ("%s%d 0 R", i == 0 ? "" : " ", FONT + 2 + i * 2));
+    write (String.format ("] /Count %d >>%nendobj%n", totalPages));
+
+    long xref = offset;
+    write (String.format ("xref%n0 %d%n0000000000 65535 f \n", offsets.size () + 1));
+    for (long objectOffset : offsets)
+      write (String.format ("%010d 00000 n \n", objectOffset));
+
+    write (String.format ("trailer%n<< /Size %d /Root %d 0 R >>%n", offsets.size () + 1,
+                          CATALOG));
+    write (String.format ("startxref%n%d%n%%%%EOF%n", xref));
+    out.close ();
+  }
+
+  private void startObject (int number) throws IOException
+  {
+    assert number == offsets.size () + 1;
+    offsets.add (offset);
+    write (String.format ("%d 0 obj%n", number));
+  }
+
+  private void write (String text) throws IOException
+  {
+    write (text.getBytes (StandardCharsets.US_ASCII));
+  }
+
+  private void write (byte[] buffer) throws IOException
+  {
+    out.write (buffer);
+    offset += buffer.length;
+  }
+}
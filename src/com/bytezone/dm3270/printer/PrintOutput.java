@@ -0,0 +1,26 @@
+package com.bytezone.dm3270.printer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Where a ScsPrinter sends its formatted lines. Each line is written as soon as it
+// is complete, so an implementation should never need to hold more than one page.
+
+public interface PrintOutput extends Closeable
+{
+  // a file name ending in .pdf gets a PDF file, anything else gets plain text
+  static PrintOutput getInstance (Path path) throws IOException
+  {
+    if (path.getFileName ().toString ().toLowerCase ().endsWith (".pdf"))
+      return new PdfPrintOutput (path);
+    return new TextPrintOutput (path);
+  }
+
+  void writeLine (String line) throws IOException;
+
+  // the next line starts on a new page
+  void newPage () throws IOException;
+
+  void flush () throws IOException;
+}
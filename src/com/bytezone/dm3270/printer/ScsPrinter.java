@@ -0,0 +1,406 @@
+package com.bytezone.dm3270.printer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.bytezone.dm3270.codepage.CodePage;
+
+// Interprets an SNA Character String (SCS) print stream, as sent to an LU type 1
+// printer, and passes each line to a PrintOutput as soon as it is complete. Only the
+// current line is kept, so a report of any size can be printed. The host may split a
+// control sequence across two records, so the parser keeps its state between calls
+// to print().
+//
+// LU type 3 printers are sent ordinary 3270 writes instead, and Screen.startPrinter()
+// passes the rows of the screen to printLines().
+//
+// Called from the TelnetListener thread (SCS data) and the application thread
+// (startPrinter), so every public method is synchronized.
+
+public class ScsPrinter
+{
+  // single byte controls
+  private static final byte HT = 0x05;          // horizontal tab
+  private static final byte VT = 0x0B;          // vertical tab
+  private static final byte FF = 0x0C;          // form feed
+  private static final byte CR = 0x0D;          // carriage return
+  private static final byte NL = 0x15;          // new line
+  private static final byte BS = 0x16;          // backspace
+  private static final byte IRS = 0x1E;         // interchange record separator
+  private static final byte LF = 0x25;          // line feed
+  private static final byte CSP = 0x2B;         // control sequence prefix
+  private static final byte PP = 0x34;          // presentation position
+  private static final byte TRN = 0x35;         // transparent data
+
+  // control sequences (following CSP)
+  private static final byte SHF = (byte) 0xC1;  // set horizontal format
+  private static final byte SVF = (byte) 0xC2;  // set vertical format
+
+  // presentation positions (following PP)
+  private static final byte AHPP = (byte) 0xC0; // absolute horizontal
+  private static final byte AVPP = (byte) 0xC4; // absolute vertical
+  private static final byte RHPP = (byte) 0xC8; // relative horizontal
+  private static final byte RVPP = 0x4C;        // relative vertical
+
+  private static final int DEFAULT_WIDTH = 132;
+  private static final int DEFAULT_LENGTH = 66; // 11 inches at 6 lines per inch
+
+  private enum State
+  {
+    TEXT, CSP_CLASS, CSP_LENGTH, CSP_PARAMETERS, PP_TYPE, PP_VALUE, TRN_LENGTH, TRN_DATA
+  }
+
+  private final PrintOutput output;
+  private final CodePage codePage;
+
+  private State state = State.TEXT;
+  private byte controlType;                     // the byte after CSP or PP
+  private final byte[] parameters = new byte[255];
+  private int parametersLength;
+  private int parametersRead;
+  private int transparentLength;
+
+  // formats set by SHF and SVF
+  private int maxPosition = DEFAULT_WIDTH;
+  private int leftMargin;
+  private int[] tabStops = new int[0];
+  private int maxLines = DEFAULT_LENGTH;
+
+  private char[] line = new char[DEFAULT_WIDTH];
+  private int lineLength;                       // rightmost position written + 1
+  private int column;
+  private int lineOnPage;
+  private boolean pageStarted;                  // ignore a form feed at the top
+  private boolean failed;                       // stop after the first write error
+
+  private long totalBytes;
+  private long totalLines;
+  private long totalPages;
+
+  public ScsPrinter (PrintOutput output, CodePage codePage)
+  {
+    if (output == null)
+      throw new IllegalArgumentException ("PrintOutput cannot be null");
+    if (codePage == null)
+      throw new IllegalArgumentException ("CodePage cannot be null");
+
+    this.output = output;
+    this.codePage = codePage;
+    Arrays.fill (line, ' ');
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // SCS data
+  // ---------------------------------------------------------------------------------//
+
+  // called from ScsCommand.process()
+  public synchronized void print (byte[] buffer, int offset, int length)
+  {
+    totalBytes += length;
+
+    for (int ptr = offset, max = offset + length; ptr < max; ptr++)
+    {
+      byte value = buffer[ptr];
+      switch (state)
+      {
+        case TEXT:
+          text (value);
+          break;
+
+        case CSP_CLASS:
+          controlType = value;
+          state = State.CSP_LENGTH;
+          break;
+
+        case CSP_LENGTH:
+          parametersLength = Math.max (0, (value & 0xFF) - 1);   // includes itself
+          parametersRead = 0;
+          state = State.CSP_PARAMETERS;
+          if (parametersLength == 0)
+            controlSequence ();
+          break;
+
+        case CSP_PARAMETERS:
+          parameters[parametersRead++] = value;
+          if (parametersRead == parametersLength)
+            controlSequence ();
+          break;
+
+        case PP_TYPE:
+          controlType = value;
+          state = State.PP_VALUE;
+          break;
+
+        case PP_VALUE:
+          presentationPosition (value & 0xFF);
+          state = State.TEXT;
+          break;
+
+        case TRN_LENGTH:
+          transparentLength = value & 0xFF;
+          state = transparentLength == 0 ? State.TEXT : State.TRN_DATA;
+          break;
+
+        case TRN_DATA:
+          printChar (codePage.toChar (value));
+          if (--transparentLength == 0)
+            state = State.TEXT;
+          break;
+      }
+    }
+  }
+
+  private void text (byte value)
+  {
+    switch (value)
+    {
+      case CSP:
+        state = State.CSP_CLASS;
+        break;
+
+      case PP:
+        state = State.PP_TYPE;
+        break;
+
+      case TRN:
+        state = State.TRN_LENGTH;
+        break;
+
+      case NL:
+      case IRS:
+      case VT:
+        newLine ();
+        column = leftMargin;
+        break;
+
+      case LF:
+        newLine ();                             // stay in the same column
+        break;
+
+      case CR:
+        column = leftMargin;                    // the next text overprints
+        break;
+
+      case FF:
+        formFeed ();
+        column = leftMargin;
+        break;
+
+      case BS:
+        if (column > 0)
+          --column;
+        break;
+
+      case HT:
+        tab ();
+        break;
+
+      default:
+        if ((value & 0xC0) != 0)                // 0x00-0x3F are other controls
+          printChar (codePage.toChar (value));
+    }
+  }
+
+  private void controlSequence ()
+  {
+    state = State.TEXT;
+
+    if (controlType == SHF)
+    {
+      // max print position, left margin, right margin, tab stops (all one-based)
+      maxPosition = parameter (0, DEFAULT_WIDTH);
+      leftMargin = Math.max (0, parameter (1, 1) - 1);
+      int rightMargin = parameter (2, maxPosition);
+      maxPosition = Math.min (maxPosition, rightMargin);
+
+      tabStops = new int[Math.max (0, parametersLength - 3)];
+      for (int i = 0; i < tabStops.length; i++)
+        tabStops[i] = (parameters[i + 3] & 0xFF) - 1;
+
+      if (line.length < maxPosition)
+      {
+        line = Arrays.copyOf (line, maxPosition);
+        Arrays.fill (line, lineLength, line.length, ' ');
+      }
+    }
+    else if (controlType == SVF)
+      maxLines = parameter (0, DEFAULT_LENGTH);    // also margins and vertical tabs
+  }
+
+  // a missing or zero parameter takes the default value
+  private int parameter (int index, int defaultValue)
+  {
+    int value = index < parametersLength ? parameters[index] & 0xFF : 0;
+    return value == 0 ? defaultValue : value;
+  }
+
+  private void presentationPosition (int value)
+  {
+    if (controlType == AHPP)
+      column = Math.max (0, value - 1);
+    else if (controlType == RHPP)
+      column += value;
+    else if (controlType == AVPP)
+    {
+      int target = Math.min (value, maxLines) - 1;
+      if (target < lineOnPage)
+        formFeed ();
+      while (lineOnPage < target)
+        newLine ();
+    }
+    else if (controlType == RVPP)
+      for (int i = 0; i < value; i++)
+        newLine ();
+    else
+      System.out.printf ("Unknown presentation position: %02X%n", controlType);
+  }
+
+  private void tab ()
+  {
+    for (int tabStop : tabStops)
+      if (tabStop > column)
+      {
+        column = tabStop;
+        return;
+      }
+    printChar (' ');
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Lines and pages
+  // ---------------------------------------------------------------------------------//
+
+  private void printChar (char ch)
+  {
+    if (column >= maxPosition)                  // wrap at the right margin
+    {
+      newLine ();
+      column = leftMargin;
+    }
+
+    line[column++] = ch;
+    lineLength = Math.max (lineLength, column);
+    pageStarted = true;
+  }
+
+  private void newLine ()
+  {
+    write (new String (line, 0, lineLength));
+    Arrays.fill (line, 0, lineLength, ' ');
+    lineLength = 0;
+    pageStarted = true;
+
+    ++totalLines;
+    if (++lineOnPage >= maxLines)
+      formFeed ();
+  }
+
+  private void formFeed ()
+  {
+    if (lineLength > 0)
+    {
+      newLine ();                               // may have started a new page already
+      if (lineOnPage == 0)
+        return;
+    }
+
+    if (!pageStarted)
+      return;
+
+    try
+    {
+      if (!failed)
+        output.newPage ();
+    }
+    catch (IOException e)
+    {
+      failed (e);
+    }
+
+    ++totalPages;
+    lineOnPage = 0;
+    pageStarted = false;
+  }
+
+  private void write (String text)
+  {
+    if (failed)
+      return;
+
+    try
+    {
+      output.writeLine (text);
+    }
+    catch (IOException e)
+    {
+      failed (e);
+    }
+  }
+
+  private void failed (IOException e)
+  {
+    e.printStackTrace ();
+    failed = true;                              // don't report every line
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Jobs
+  // ---------------------------------------------------------------------------------//
+
+  // called from Screen.startPrinter() with the rows of the screen
+  public synchronized void printLines (List<String> lines)
+  {
+    for (String text : lines)
+    {
+      for (int i = 0; i < text.length (); i++)
+        printChar (text.charAt (i));
+      newLine ();
+      column = leftMargin;
+    }
+    endJob ();
+  }
+
+  // called from ScsCommand.process() at the end of each TN3270E print job
+  public synchronized void endJob ()
+  {
+    if (lineLength > 0)
+      newLine ();
+    formFeed ();
+    column = leftMargin;
+    state = State.TEXT;
+
+    try
+    {
+      if (!failed)
+        output.flush ();
+    }
+    catch (IOException e)
+    {
+      failed (e);
+    }
+  }
+
+  // called from HeadlessSession.disconnect()
+  public synchronized void close ()
+  {
+    if (lineLength > 0)
+      newLine ();
+
+    try
+    {
+      output.close ();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace ();
+    }
+  }
+
+  @Override
+  public synchronized String toString ()
+  {
+    return String.format ("Bytes: %,d  Lines: %,d  Pages: %,d%s", totalBytes,
+                          totalLines, totalPages, failed ? "  (write failed)" : "");
+  }
+}
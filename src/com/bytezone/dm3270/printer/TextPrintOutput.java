@@ -0,0 +1,44 @@
+package com.bytezone.dm3270.printer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes each line as UTF-8 text, with a form feed between pages.
+
+class TextPrintOutput implements PrintOutput
+{
+  private final BufferedWriter writer;
+
+  TextPrintOutput (Path path) throws IOException
+  {
+    writer = Files.newBufferedWriter (path, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void writeLine (String line) throws IOException
+  {
+    writer.write (line);
+    writer.newLine ();
+  }
+
+  @Override
+  public void newPage () throws IOException
+  {
+    writer.write ('\f');
+  }
+
+  @Override
+  public void flush () throws IOException
+  {
+    writer.flush ();
+  }
+
+  @Override
+  public void close () throws IOException
+  {
+    writer.close ();
+  }
+}
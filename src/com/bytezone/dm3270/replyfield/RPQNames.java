@@ -1,7 +1,6 @@
 package com.bytezone.dm3270.replyfield;
 
-import java.io.UnsupportedEncodingException;
-
+import com.bytezone.dm3270.codepage.CodePage;
 import com.bytezone.dm3270.utilities.Dm3270Utility;
 
 public class RPQNames extends QueryReplyField
@@ -14,25 +13,16 @@ public class RPQNames extends QueryReplyField
   {
     super (RPQ_NAMES_REPLY);
 
-    try
-    {
-      String rpqName = "dm3270";
-      int ptr = createReply (9 + rpqName.length ());
-
-      ptr = Dm3270Utility.packUnsignedLong (0, reply, ptr);     // deviceType
-      ptr = Dm3270Utility.packUnsignedLong (0, reply, ptr);     // model
+    String rpqName = "dm3270";
+    int ptr = createReply (9 + rpqName.length ());
 
-      reply[ptr++] = (byte) (rpqName.length () + 1);      // name length + 1
+    ptr = Dm3270Utility.packUnsignedLong (0, reply, ptr);     // deviceType
+    ptr = Dm3270Utility.packUnsignedLong (0, reply, ptr);     // model
 
-      for (byte b : rpqName.getBytes ("CP1047"))
-        reply[ptr++] = b;
+    reply[ptr++] = (byte) (rpqName.length () + 1);      // name length + 1
+    ptr = CodePage.get (CodePage.CP1047).translate (rpqName, reply, ptr);
 
-      checkDataLength (ptr);
-    }
-    catch (UnsupportedEncodingException e)
-    {
-      e.printStackTrace ();
-    }
+    checkDataLength (ptr);
   }
 
   public RPQNames (byte[] buffer)
@@ -40,20 +30,14 @@ public class RPQNames extends QueryReplyField
     super (buffer);
     assert data[1] == RPQ_NAMES_REPLY;
 
-    try
-    {
-      deviceType = new String (data, 2, 4, "CP1047");
-      model = Dm3270Utility.unsignedLong (data, 6);
-      int len = (data[10] & 0xFF) - 1;
-      if (len > 0)
-        rpqName = new String (data, 11, len, "CP1047");
-      else
-        rpqName = "";
-    }
-    catch (UnsupportedEncodingException e)
-    {
-      e.printStackTrace ();
-    }
+    CodePage codePage = CodePage.get (CodePage.CP1047);
+    deviceType = codePage.getString (data, 2, 4);
+    model = Dm3270Utility.unsignedLong (data, 6);
+    int len = (data[10] & 0xFF) - 1;
+    if (len > 0)
+      rpqName = codePage.getString (data, 11, len);
+    else
+      rpqName = "";
   }
 
   public String getRPQName ()
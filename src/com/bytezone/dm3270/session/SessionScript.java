@@ -0,0 +1,201 @@
+package com.bytezone.dm3270.session;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import com.bytezone.dm3270.commands.AIDCommand;
+import com.bytezone.dm3270.commands.Command;
+import com.bytezone.dm3270.extended.CommandHeader;
+import com.bytezone.dm3270.extended.TN3270ExtendedCommand;
+import com.bytezone.dm3270.streams.TelnetSocket.Source;
+
+// A recorded Session reduced to what a simulated host needs in order to play the
+// server's part. Step 0 holds whatever the server sent before the client's first
+// command (usually the Read Partition Query). Every later step starts with a client
+// command, and holds the commands that the server sent back before the next one.
+//
+// The telnet data for each step is built once, in both TN3270 and TN3270E form, so
+// that a single script can be shared by any number of connections. Telnet records
+// (the negotiation) and records added by the spy are left out.
+
+public class SessionScript
+{
+  // 3270-DATA, no response requested, sequence number zero
+  private static final byte[] EXTENDED_HEADER = { 0x00, 0x00, 0x00, 0x00, 0x00 };
+
+  private final List<Step> steps = new ArrayList<> ();
+  private final String name;
+
+  public SessionScript (Session session, String name)
+  {
+    this.name = name;
+
+    Step step = new Step (null, null);
+    steps.add (step);
+
+    for (SessionRecord sessionRecord : session)
+    {
+      if (!sessionRecord.isCommand () || !sessionRecord.isGenuine ())
+        continue;
+
+      Command command = sessionRecord.getCommand ();
+      if (sessionRecord.getSource () == Source.CLIENT)
+      {
+        step = new Step (command, sessionRecord.getDateTime ());
+        steps.add (step);
+      }
+      else
+        step.add (command, sessionRecord.getDateTime ());
+    }
+
+    for (Step thisStep : steps)
+      thisStep.build ();
+  }
+
+  public String getName ()
+  {
+    return name;
+  }
+
+  public int size ()
+  {
+    return steps.size ();
+  }
+
+  public Step getStep (int index)
+  {
+    return steps.get (index);
+  }
+
+  public List<Step> getSteps ()
+  {
+    return Collections.unmodifiableList (steps);
+  }
+
+  // the step after this one, going back to step 1 after the last step so that a
+  // simulated client can keep cycling through the screens
+  public int nextStep (int index)
+  {
+    return index + 1 < steps.size () ? index + 1 : Math.min (1, steps.size () - 1);
+  }
+
+  @Override
+  public String toString ()
+  {
+    int commands = 0;
+    for (Step step : steps)
+      commands += step.commands.size ();
+    return String.format ("%s: %,d steps, %,d server commands", name, steps.size (),
+                          commands);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Step
+  // ---------------------------------------------------------------------------------//
+
+  public static class Step
+  {
+    private final Command trigger;                // null for step 0
+    private final LocalDateTime triggerTime;
+    private final List<Command> commands = new ArrayList<> ();
+    private long latency;                         // milliseconds before the reply
+
+    private byte[] telnetData;
+    private byte[] extendedTelnetData;
+
+    private Step (Command trigger, LocalDateTime triggerTime)
+    {
+      this.trigger = trigger;
+      this.triggerTime = triggerTime;
+    }
+
+    private void add (Command command, LocalDateTime dateTime)
+    {
+      if (commands.isEmpty () && triggerTime != null && dateTime != null)
+        latency = Math.max (0, Duration.between (triggerTime, dateTime).toMillis ());
+      commands.add (command);
+    }
+
+    private void build ()
+    {
+      List<byte[]> buffers = new ArrayList<> ();
+      List<byte[]> extendedBuffers = new ArrayList<> ();
+
+      for (Command command : commands)
+      {
+        buffers.add (command.getTelnetData ());
+        extendedBuffers.add (new TN3270ExtendedCommand (
+            new CommandHeader (EXTENDED_HEADER.clone ()), command).getTelnetData ());
+      }
+
+      telnetData = join (buffers);
+      extendedTelnetData = join (extendedBuffers);
+    }
+
+    private static byte[] join (List<byte[]> buffers)
+    {
+      int length = 0;
+      for (byte[] buffer : buffers)
+        length += buffer.length;
+
+      byte[] joined = new byte[length];
+      int ptr = 0;
+      for (byte[] buffer : buffers)
+      {
+        System.arraycopy (buffer, 0, joined, ptr, buffer.length);
+        ptr += buffer.length;
+      }
+      return joined;
+    }
+
+    public Optional<Command> getTrigger ()
+    {
+      return Optional.ofNullable (trigger);
+    }
+
+    public List<Command> getCommands ()
+    {
+      return Collections.unmodifiableList (commands);
+    }
+
+    public long getLatency ()
+    {
+      return latency;
+    }
+
+    // every command in this step, ready to write to a socket
+    public byte[] getTelnetData (boolean extended)
+    {
+      return extended ? extendedTelnetData : telnetData;
+    }
+
+    // An AID must be the same key with the same modified fields, but the cursor may
+    // be anywhere. Any other client command (eg a query reply) matches its own type.
+    public boolean matches (Command command)
+    {
+      if (trigger == null || command == null)
+        return false;
+
+      if (trigger instanceof AIDCommand && command instanceof AIDCommand)
+      {
+        AIDCommand aidCommand = (AIDCommand) command;
+        return ((AIDCommand) trigger).getKeyCommand () == aidCommand.getKeyCommand ()
+            && ((AIDCommand) trigger).matches (aidCommand);
+      }
+
+      return trigger.getClass () == command.getClass ();
+    }
+
+    @Override
+    public String toString ()
+    {
+      return String.format ("%-20s %,3d commands %,6d bytes %,6d ms",
+                            trigger == null ? "Start" : trigger.getName (),
+                            commands.size (), telnetData.length, latency);
+    }
+  }
+}
@@ -0,0 +1,540 @@
+package com.bytezone.dm3270.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.bytezone.dm3270.buffers.ReplyBuffer;
+import com.bytezone.dm3270.commands.AIDCommand;
+import com.bytezone.dm3270.commands.WriteCommand;
+import com.bytezone.dm3270.extended.TN3270ExtendedCommand;
+import com.bytezone.dm3270.headless.HeadlessSession;
+import com.bytezone.dm3270.orders.BufferAddressSource;
+import com.bytezone.dm3270.orders.Order;
+import com.bytezone.dm3270.orders.TextOrder;
+import com.bytezone.dm3270.streams.TelnetState;
+
+import javafx.application.Platform;
+
+// Inverted index of the words in an archive of recorded sessions. The text of every
+// TextOrder written by the host and every modified field sent back in an AIDCommand
+// is split into words, and each word points to the session file, the record number
+// (the same index as Session.getDataRecords()) and the screen position.
+//
+// Each session file gets its own segment file in the index folder, which is written
+// once and never changed. update() only indexes session files that have no segment,
+// or whose size or date no longer match the segment, so adding a day's captures to a
+// large archive only costs the new files. removeStale() deletes the segments of
+// session files that have since been deleted or replaced.
+//
+// Nothing is kept in memory between queries. A segment's words are written in sorted
+// order, after a directory of fixed-size offsets, so each query word is found by a
+// binary search of the file and only its postings are read.
+
+public class SessionSearchIndex
+{
+  private static final int MAGIC = 0x444D4931;              // DMI1
+  private static final String SEGMENT_SUFFIX = ".idx";
+  private static final int MIN_WORD_LENGTH = 2;
+
+  private final Path indexFolder;
+
+  public SessionSearchIndex (Path indexFolder) throws IOException
+  {
+    this.indexFolder = indexFolder;
+    Files.createDirectories (indexFolder);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Indexing
+  // ---------------------------------------------------------------------------------//
+
+  // returns the number of files that were (re)indexed
+  public synchronized int update (List<Path> sessionFiles)
+  {
+    int total = 0;
+    for (Path sessionFile : sessionFiles)
+      try
+      {
+        if (update (sessionFile))
+          ++total;
+      }
+      catch (Exception e)
+      {
+        System.out.printf ("Cannot index %s : %s%n", sessionFile, e);
+      }
+    return total;
+  }
+
+  // Removes the segment of every session file that no longer exists, or whose size or
+  // date have changed since it was indexed. Only the segment headers are read.
+  // Returns the number of segments that were removed.
+  public synchronized int removeStale () throws IOException
+  {
+    List<Path> segmentPaths;
+    try (Stream<Path> stream = Files.list (indexFolder))
+    {
+      segmentPaths = stream.filter (p -> p.toString ().endsWith (SEGMENT_SUFFIX))
+          .collect (Collectors.toList ());
+    }
+
+    int total = 0;
+    for (Path segmentPath : segmentPaths)
+      if (isStale (segmentPath))
+      {
+        Files.deleteIfExists (segmentPath);
+        ++total;
+      }
+    return total;
+  }
+
+  // an unreadable segment is stale as well, it will be rebuilt when needed
+  private boolean isStale (Path segmentPath)
+  {
+    try (DataInputStream in = new DataInputStream (
+        new BufferedInputStream (Files.newInputStream (segmentPath))))
+    {
+      if (in.readInt () != MAGIC)
+        return true;
+
+      Path sessionPath = Paths.get (in.readUTF ());
+      long size = in.readLong ();
+      long lastModified = in.readLong ();
+
+      return !Files.exists (sessionPath) || Files.size (sessionPath) != size
+          || Files.getLastModifiedTime (sessionPath).toMillis () != lastModified;
+    }
+    catch (IOException e)
+    {
+      return true;
+    }
+  }
+
+  // returns false if the existing segment is up to date
+  public synchronized boolean update (Path sessionFile) throws Exception
+  {
+    Path sessionPath = sessionFile.toAbsolutePath ().normalize ();
+    Path segmentPath = getSegmentPath (sessionPath);
+    long size = Files.size (sessionPath);
+    long lastModified = Files.getLastModifiedTime (sessionPath).toMillis ();
+
+    if (Files.exists (segmentPath))
+      try (Segment segment = new Segment (segmentPath))
+      {
+        if (segment.size == size && segment.lastModified == lastModified)
+          return false;
+      }
+      catch (IOException e)
+      {
+        // an older or damaged segment is simply rebuilt
+      }
+
+    Session session = new Session (new TelnetState (), sessionPath);
+    Map<String, PostingsBuilder> words = new TreeMap<> ();
+
+    int recordNo = 0;
+    for (SessionRecord sessionRecord : session)
+      addRecord (words, recordNo++, sessionRecord.getMessage ());
+
+    writeSegment (segmentPath, sessionPath, size, lastModified, words);
+    return true;
+  }
+
+  private void addRecord (Map<String, PostingsBuilder> words, int recordNo,
+      ReplyBuffer message)
+  {
+    if (message instanceof TN3270ExtendedCommand)
+      message = ((TN3270ExtendedCommand) message).getCommand ();
+
+    Iterable<Order> orders;
+    if (message instanceof WriteCommand)
+      orders = ((WriteCommand) message).getOrdersList ();
+    else if (message instanceof AIDCommand)
+      orders = (AIDCommand) message;            // SBA + text for each modified field
+    else
+      return;
+
+    // the position is only approximate, orders such as PT are not followed
+    int position = 0;
+    for (Order order : orders)
+    {
+      if (order instanceof BufferAddressSource)
+        position = ((BufferAddressSource) order).getBufferAddress ().getLocation ();
+      else if (order.isText ())
+      {
+        String text = ((TextOrder) order).getTextString ();
+        addWords (words, recordNo, position, text);
+        position += text.length ();
+      }
+      else if (order.getType () == Order.START_FIELD
+          || order.getType () == Order.START_FIELD_EXTENDED
+          || order.getType () == Order.GRAPHICS_ESCAPE)
+        ++position;
+    }
+  }
+
+  private void addWords (Map<String, PostingsBuilder> words, int recordNo, int position,
+      String text)
+  {
+    splitWords (text, (word, offset) ->
+    {
+      PostingsBuilder postings = words.get (word);
+      if (postings == null)
+      {
+        postings = new PostingsBuilder ();
+        words.put (word, postings);
+      }
+      postings.add (recordNo, position + offset);
+    });
+  }
+
+  // the same rules as the indexer, so that a query finds what was indexed
+  public static List<String> getWords (String text)
+  {
+    List<String> words = new ArrayList<> ();
+    splitWords (text, (word, offset) ->
+    {
+      if (!words.contains (word))
+        words.add (word);
+    });
+    return words;
+  }
+
+  private static void splitWords (String text, BiConsumer<String, Integer> action)
+  {
+    int start = -1;
+    for (int i = 0; i <= text.length (); i++)
+    {
+      boolean wordChar = i < text.length () && isWordChar (text.charAt (i));
+      if (wordChar && start < 0)
+        start = i;
+      else if (!wordChar && start >= 0)
+      {
+        if (i - start >= MIN_WORD_LENGTH)
+          action.accept (text.substring (start, i).toUpperCase (), start);
+        start = -1;
+      }
+    }
+  }
+
+  private static boolean isWordChar (char c)
+  {
+    return Character.isLetterOrDigit (c) || c == '@' || c == '#' || c == '$';
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Searching
+  // ---------------------------------------------------------------------------------//
+
+  // every word in the query must appear in the same record
+  public synchronized List<SearchHit> search (String query) throws IOException
+  {
+    List<SearchHit> hits = new ArrayList<> ();
+    try (Stream<Path> stream = Files.list (indexFolder))
+    {
+      for (Path segmentPath : stream.filter (p -> p.toString ().endsWith (SEGMENT_SUFFIX))
+          .sorted ().collect (Collectors.toList ()))
+        try (Segment segment = new Segment (segmentPath))
+        {
+          search (segment, getWords (query), hits);
+        }
+        catch (IOException e)
+        {
+          System.out.printf ("Cannot search %s : %s%n", segmentPath, e);
+        }
+    }
+    return hits;
+  }
+
+  // only searches a single session file, which should already have been indexed
+  public synchronized List<SearchHit> search (String query, Path sessionFile)
+      throws IOException
+  {
+    List<SearchHit> hits = new ArrayList<> ();
+    Path segmentPath = getSegmentPath (sessionFile.toAbsolutePath ().normalize ());
+    if (Files.exists (segmentPath))
+      try (Segment segment = new Segment (segmentPath))
+      {
+        search (segment, getWords (query), hits);
+      }
+    return hits;
+  }
+
+  private void search (Segment segment, List<String> words, List<SearchHit> hits)
+      throws IOException
+  {
+    if (words.isEmpty ())
+      return;
+
+    // start with the rarest word, it has the fewest records to check
+    List<int[]> postings = new ArrayList<> ();
+    for (String word : words)
+    {
+      int[] wordPostings = segment.getPostings (word);
+      if (wordPostings.length == 0)
+        return;
+      postings.add (wordPostings);
+    }
+    Collections.sort (postings, (a, b) -> a.length - b.length);
+
+    int[] first = postings.get (0);
+    for (int i = 0; i < first.length; i += 2)
+    {
+      int recordNo = first[i];
+      if (i > 0 && first[i - 2] == recordNo)
+        continue;                             // only the first match in a record
+
+      boolean found = true;
+      for (int j = 1; j < postings.size () && found; j++)
+        found = containsRecord (postings.get (j), recordNo);
+
+      if (found)
+        hits.add (new SearchHit (segment.sessionPath, recordNo, first[i + 1]));
+    }
+  }
+
+  // postings are (record, position) pairs in record order
+  private boolean containsRecord (int[] postings, int recordNo)
+  {
+    int lo = 0;
+    int hi = postings.length / 2 - 1;
+    while (lo <= hi)
+    {
+      int mid = (lo + hi) >>> 1;
+      int value = postings[mid * 2];
+      if (value < recordNo)
+        lo = mid + 1;
+      else if (value > recordNo)
+        hi = mid - 1;
+      else
+        return true;
+    }
+    return false;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Segment files
+  // ---------------------------------------------------------------------------------//
+
+  // the hash keeps files with the same name in different folders apart
+  private Path getSegmentPath (Path sessionPath)
+  {
+    return indexFolder.resolve (String.format ("%s-%08X%s", sessionPath.getFileName (),
+                                               sessionPath.toString ().hashCode (),
+                                               SEGMENT_SUFFIX));
+  }
+
+  // Written to a temporary file first, so a failed run never leaves half a segment.
+  // The header is followed by the offset of each word's entry (relative to the first
+  // entry) and then the entries themselves, in word order.
+  private void writeSegment (Path segmentPath, Path sessionPath, long size,
+      long lastModified, Map<String, PostingsBuilder> words) throws IOException
+  {
+    ByteArrayOutputStream entries = new ByteArrayOutputStream ();
+    int[] offsets = new int[words.size ()];
+    int totalWords = 0;
+
+    try (DataOutputStream out = new DataOutputStream (entries))
+    {
+      for (Map.Entry<String, PostingsBuilder> entry : words.entrySet ())
+      {
+        PostingsBuilder postings = entry.getValue ();
+        offsets[totalWords++] = out.size ();
+        out.writeUTF (entry.getKey ());
+        out.writeInt (postings.size);
+        for (int i = 0; i < postings.size; i++)
+          out.writeInt (postings.values[i]);
+      }
+    }
+
+    Path tempPath = segmentPath.resolveSibling (segmentPath.getFileName () + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream (
+        new BufferedOutputStream (Files.newOutputStream (tempPath))))
+    {
+      out.writeInt (MAGIC);
+      out.writeUTF (sessionPath.toString ());
+      out.writeLong (size);
+      out.writeLong (lastModified);
+      out.writeInt (totalWords);
+      for (int offset : offsets)
+        out.writeInt (offset);
+      entries.writeTo (out);
+    }
+
+    Files.move (tempPath, segmentPath, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  // An open segment file. Only the header is read when it is opened, each word is
+  // found by a binary search of the offsets.
+  private static class Segment implements AutoCloseable
+  {
+    private final RandomAccessFile file;
+    private final Path sessionPath;
+    private final long size;
+    private final long lastModified;
+    private final int totalWords;
+    private final long offsetsStart;
+    private final long entriesStart;
+
+    Segment (Path segmentPath) throws IOException
+    {
+      file = new RandomAccessFile (segmentPath.toFile (), "r");
+      try
+      {
+        if (file.readInt () != MAGIC)
+          throw new IOException ("Not an index segment: " + segmentPath);
+
+        sessionPath = Paths.get (file.readUTF ());
+        size = file.readLong ();
+        lastModified = file.readLong ();
+        totalWords = file.readInt ();
+        offsetsStart = file.getFilePointer ();
+        entriesStart = offsetsStart + totalWords * 4L;
+      }
+      catch (IOException e)
+      {
+        file.close ();
+        throw e;
+      }
+    }
+
+    int[] getPostings (String word) throws IOException
+    {
+      int lo = 0;
+      int hi = totalWords - 1;
+      while (lo <= hi)
+      {
+        int mid = (lo + hi) >>> 1;
+        file.seek (offsetsStart + mid * 4L);
+        file.seek (entriesStart + file.readInt ());
+
+        int comparison = file.readUTF ().compareTo (word);
+        if (comparison < 0)
+          lo = mid + 1;
+        else if (comparison > 0)
+          hi = mid - 1;
+        else
+          return readPostings ();
+      }
+      return new int[0];
+    }
+
+    // the file is positioned at the count that follows the word
+    private int[] readPostings () throws IOException
+    {
+      int[] values = new int[file.readInt ()];
+      byte[] buffer = new byte[values.length * 4];
+      file.readFully (buffer);
+      for (int i = 0, ptr = 0; i < values.length; i++, ptr += 4)
+        values[i] = (buffer[ptr] & 0xFF) << 24 | (buffer[ptr + 1] & 0xFF) << 16
+            | (buffer[ptr + 2] & 0xFF) << 8 | (buffer[ptr + 3] & 0xFF);
+      return values;
+    }
+
+    @Override
+    public void close () throws IOException
+    {
+      file.close ();
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // PostingsBuilder
+  // ---------------------------------------------------------------------------------//
+
+  // (record, position) pairs, added in record order
+  private static class PostingsBuilder
+  {
+    private int[] values = new int[8];
+    private int size;
+
+    void add (int recordNo, int position)
+    {
+      if (size == values.length)
+        values = Arrays.copyOf (values, size * 2);
+      values[size++] = recordNo;
+      values[size++] = position;
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // SearchHit
+  // ---------------------------------------------------------------------------------//
+
+  public static class SearchHit
+  {
+    public final Path sessionPath;
+    public final int recordNo;
+    public final int position;
+
+    SearchHit (Path sessionPath, int recordNo, int position)
+    {
+      this.sessionPath = sessionPath;
+      this.recordNo = recordNo;
+      this.position = position;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return String.format ("%-50s record %,7d  position %4d", sessionPath, recordNo,
+                            position);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Main
+  // ---------------------------------------------------------------------------------//
+
+  public static void main (String[] args) throws Exception
+  {
+    if (args.length < 3)
+    {
+      System.out.println (
+          "Usage: SessionSearchIndex <index folder> <session folder> <word> ...");
+      return;
+    }
+
+    HeadlessSession.startToolkit ();            // Session creates a Label
+    SessionSearchIndex index = new SessionSearchIndex (Paths.get (args[0]));
+
+    List<Path> sessionFiles;
+    try (Stream<Path> stream = Files.list (Paths.get (args[1])))
+    {
+      sessionFiles =
+          stream.filter (Files::isRegularFile).sorted ().collect (Collectors.toList ());
+    }
+
+    long start = System.nanoTime ();
+    int removed = index.removeStale ();
+    if (removed > 0)
+      System.out.printf ("%,d stale segments removed%n", removed);
+    int indexed = index.update (sessionFiles);
+    System.out.printf ("%,d of %,d files indexed in %,.1f seconds%n", indexed,
+                       sessionFiles.size (), (System.nanoTime () - start) / 1e9);
+
+    String query = String.join (" ", Arrays.asList (args).subList (2, args.length));
+    for (SearchHit hit : index.search (query))
+      System.out.println (hit);
+
+    Platform.exit ();
+  }
+}
@@ -1,25 +1,41 @@
 package com.bytezone.dm3270.streams;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.bytezone.dm3270.application.Mainframe;
 import com.bytezone.dm3270.commands.Command;
+import com.bytezone.dm3270.headless.HeadlessSession;
+import com.bytezone.dm3270.session.Session;
+import com.bytezone.dm3270.session.SessionScript;
 import com.bytezone.dm3270.telnet.TelnetCommand;
 import com.bytezone.dm3270.telnet.TelnetSubcommand;
 import com.bytezone.dm3270.telnet.TerminalTypeSubcommand;
 
 import javafx.application.Platform;
 
+// Plays the part of the host for a single client. Normally the MainframeStage sends
+// each screen when one of its buttons is pressed. When a SessionScript is set instead,
+// each command from the client is answered with the server records that followed the
+// same command in the captured session, either at full speed or after the recorded
+// delay. This allows the whole client stack to be timed over a real socket.
+//
+//   java com.bytezone.dm3270.streams.MainframeServer [-port n] [-latency] <session file>
+
 public class MainframeServer implements Runnable
 {
   private final int port;
   private final byte[] buffer = new byte[4096];
-  private byte[] tempBuffer;
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream ();
+  private boolean iacPending;                   // the last byte read was an IAC
   private volatile boolean running;
 
   private InputStream clientIn;
@@ -29,6 +45,12 @@ public class MainframeServer implements Runnable
 
   private Mainframe mainframe;
 
+  private SessionScript script;
+  private boolean recordedLatency;              // wait as long as the real host did
+  private int nextStep = 1;                     // the step expected next
+  private int replies;
+  private int unmatched;
+
   public MainframeServer (int port)
   {
     this.port = port;
@@ -39,6 +61,13 @@ public class MainframeServer implements Runnable
     this.mainframe = mainframe;     // MainframeStage
   }
 
+  // must be called before run()
+  public void setScript (SessionScript script, boolean recordedLatency)
+  {
+    this.script = script;
+    this.recordedLatency = recordedLatency;
+  }
+
   @Override
   public void run ()
   {
@@ -71,6 +100,10 @@ public class MainframeServer implements Runnable
                      0x01, (byte) 0xFF, (byte) 0xFF,         // note double FF
                      0x02, (byte) 0xFF, (byte) 0xEF };
 
+      // a script starts with whatever the recorded host sent first
+      if (script != null && script.getStep (0).getTelnetData (false).length > 0)
+        cmd = script.getStep (0).getTelnetData (false);
+
       write (cmd);
 
       running = true;
@@ -82,12 +115,27 @@ public class MainframeServer implements Runnable
           break;
         }
 
-        int bytesRead = clientIn.read (buffer);     // assumes all in one buffer !!
-        if (mainframe != null && buffer[0] != TelnetCommand.IAC)
+        int bytesRead = clientIn.read (buffer);
+        if (bytesRead < 0)
         {
-          bytesRead = sanitise (buffer, bytesRead);       // remove 0xFF bytes
-          Command command = Command.getReply (buffer, 0, bytesRead);
-          Platform.runLater ( () -> mainframe.receiveCommand (command));
+          System.out.println ("Client disconnected");
+          close ();
+          break;
+        }
+
+        // a telnet command can only arrive between records
+        if ((mainframe != null || script != null)
+            && (record.size () > 0 || iacPending || buffer[0] != TelnetCommand.IAC))
+        {
+          // a read may hold several records, each one is answered in turn
+          for (byte[] data : getRecords (buffer, bytesRead))
+          {
+            Command command = Command.getReply (data, 0, data.length);
+            if (script != null)
+              replay (command);
+            if (mainframe != null)
+              Platform.runLater ( () -> mainframe.receiveCommand (command));
+          }
         }
       }
     }
@@ -102,50 +150,87 @@ public class MainframeServer implements Runnable
     }
 
     System.out.println ("Mainframe Server closed");
+    if (script != null)
+      System.out.println (this);
   }
 
-  private int sanitise (byte[] buffer, int bytesRead)
+  // ---------------------------------------------------------------------------------//
+  // Replay a script
+  // ---------------------------------------------------------------------------------//
+
+  // called from run() with each client command
+  private void replay (Command command)
   {
-    if (tempBuffer != null)
+    int index = findStep (command);
+    if (index < 0)
     {
-      // prepend it to buffer
-      byte[] newBuffer = new byte[tempBuffer.length + bytesRead];
-      System.arraycopy (tempBuffer, 0, newBuffer, 0, tempBuffer.length);
-      System.arraycopy (buffer, 0, newBuffer, tempBuffer.length, bytesRead);
-
-      tempBuffer = null;
-      buffer = newBuffer;
-      bytesRead = newBuffer.length;
+      System.out.printf ("No recorded reply for %s%n", command.getName ());
+      ++unmatched;
+      return;
     }
 
-    if (buffer[bytesRead - 1] != (byte) 0xEF && buffer[bytesRead - 2] != (byte) 0xFF)
+    SessionScript.Step step = script.getStep (index);
+    nextStep = script.nextStep (index);
+
+    if (recordedLatency && step.getLatency () > 0)
+      try
+      {
+        Thread.sleep (step.getLatency ());
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread ().interrupt ();     // checked by run()
+        return;
+      }
+
+    write (step.getTelnetData (false));
+    ++replies;
+  }
+
+  // A client will often repeat a screen (eg PF8 through a list), so the search starts
+  // at the step that should come next, and then tries the rest of the script in order.
+  private int findStep (Command command)
+  {
+    int steps = script.size () - 1;             // step 0 has no client command
+    for (int i = 0; i < steps; i++)
     {
-      System.out.println ("Unfinished buffer");
-      tempBuffer = new byte[bytesRead];
-      System.arraycopy (buffer, 0, tempBuffer, 0, bytesRead);
-      return 0;
+      int index = 1 + (nextStep - 1 + i) % steps;
+      if (script.getStep (index).matches (command))
+        return index;
     }
+    return -1;
+  }
 
-    bytesRead -= 2;                               // ignore the 0xFF 0xEF at the end
-    byte lastByte = 0;
-    byte IAC = (byte) 0xFF;
-    int ptr = 0;
+  // Adds the bytes read to the current record, removing the doubled 0xFF bytes.
+  // Returns every record that an IAC EOR completed, in order. Whatever follows the
+  // last IAC EOR (even a single IAC) is kept for the next read.
+  private List<byte[]> getRecords (byte[] buffer, int bytesRead)
+  {
+    List<byte[]> records = new ArrayList<> ();
 
     for (int i = 0; i < bytesRead; i++)
     {
-      if (ptr != i)
-        buffer[ptr] = buffer[i];
-
-      if (buffer[i] == IAC & lastByte == IAC)     // doubled-up 0xFF
-        lastByte = 0;                             // don't flag it again
-      else
+      byte value = buffer[i];
+      if (iacPending)
       {
-        ptr++;
-        lastByte = buffer[i];
+        iacPending = false;
+        if (value == TelnetCommand.EOR)
+        {
+          records.add (record.toByteArray ());
+          record.reset ();
+          continue;
+        }
+        record.write (TelnetCommand.IAC);
+        if (value != TelnetCommand.IAC)           // doubled-up 0xFF
+          record.write (value);
       }
+      else if (value == TelnetCommand.IAC)
+        iacPending = true;
+      else
+        record.write (value);
     }
 
-    return ptr;
+    return records;
   }
 
   private void readAtLeast (int bytesToRead) throws IOException
@@ -207,4 +292,43 @@ public class MainframeServer implements Runnable
         e.printStackTrace ();
       }
   }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("Replies: %,d  Unmatched: %,d", replies, unmatched);
+  }
+
+  public static void main (String[] args) throws Exception
+  {
+    int port = 5555;
+    boolean recordedLatency = false;
+    String fileName = null;
+
+    for (int i = 0; i < args.length; i++)
+      if (args[i].equals ("-port") && i + 1 < args.length)
+        port = Integer.parseInt (args[++i]);
+      else if (args[i].equals ("-latency"))
+        recordedLatency = true;
+      else
+        fileName = args[i];
+
+    if (fileName == null)
+    {
+      System.out.println ("Usage: MainframeServer [-port n] [-latency] <session file>");
+      return;
+    }
+
+    HeadlessSession.startToolkit ();              // a Session needs the toolkit
+
+    Session session = new Session (new TelnetState (), Paths.get (fileName));
+    SessionScript script = new SessionScript (session, fileName);
+    System.out.println (script);
+
+    MainframeServer server = new MainframeServer (port);
+    server.setScript (script, recordedLatency);
+    server.run ();                                // until the client disconnects
+
+    Platform.exit ();
+  }
 }
\ No newline at end of file
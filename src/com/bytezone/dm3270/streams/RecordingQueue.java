@@ -0,0 +1,177 @@
+package com.bytezone.dm3270.streams;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bytezone.dm3270.streams.TelnetSocket.Source;
+
+// Sits between the two TelnetSockets of a SpyServer and their TelnetListeners. The
+// sockets relay each buffer to their partner first and then hand a copy to this
+// queue, which never blocks. A single recording thread passes the buffers on to the
+// listeners in the order they arrived, so parsing and recording the session can no
+// longer hold up the client or the host.
+//
+// When the queue is full the buffer is dropped and counted. A dropped buffer can
+// leave the telnet parser part way through a record, so the recording may contain
+// some rubbish after an overflow, but the relay itself is never affected. The
+// statistics are atomic, so the relay threads never wait for a lock.
+
+public class RecordingQueue implements BufferListener
+{
+  private static final long POLL_INTERVAL = 100;        // milliseconds
+
+  private final BufferListener clientListener;
+  private final BufferListener serverListener;
+  private final BlockingQueue<Recording> queue;
+  private final Thread recordingThread;
+  private volatile boolean closed;
+
+  private final AtomicLong totalRecorded = new AtomicLong ();
+  private final AtomicLong totalDropped = new AtomicLong ();
+  private final AtomicLong bytesDropped = new AtomicLong ();
+  private final AtomicInteger highWater = new AtomicInteger ();   // largest queue size
+  private final AtomicBoolean overflowing = new AtomicBoolean (); // report bursts once
+
+  public RecordingQueue (BufferListener clientListener, BufferListener serverListener,
+      int capacity)
+  {
+    if (clientListener == null || serverListener == null)
+      throw new IllegalArgumentException ("Listeners cannot be null");
+    if (capacity <= 0)
+      throw new IllegalArgumentException ("Capacity must be a positive integer");
+
+    this.clientListener = clientListener;
+    this.serverListener = serverListener;
+    queue = new ArrayBlockingQueue<> (capacity);
+
+    recordingThread = new Thread ( () -> record (), "SpyRecorder");
+    recordingThread.setDaemon (true);
+    recordingThread.start ();
+  }
+
+  // called from a TelnetSocket thread, after the buffer has been relayed
+  @Override
+  public void listen (Source source, byte[] message, LocalDateTime dateTime,
+      boolean genuine)
+  {
+    if (closed)
+      return;
+
+    if (queue.offer (new Recording (source, message, dateTime, genuine)))
+    {
+      highWater.accumulateAndGet (queue.size (), Math::max);
+      overflowing.set (false);
+      return;
+    }
+
+    totalDropped.incrementAndGet ();
+    bytesDropped.addAndGet (message.length);
+    if (overflowing.compareAndSet (false, true))
+      System.out.printf ("Recording queue is full, dropping %s buffers%n", source);
+  }
+
+  // the recording thread finishes whatever is already queued
+  @Override
+  public void close ()
+  {
+    closed = true;
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Recording thread
+  // ---------------------------------------------------------------------------------//
+
+  private void record ()
+  {
+    while (true)
+    {
+      Recording recording;
+      try
+      {
+        recording = queue.poll (POLL_INTERVAL, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        break;
+      }
+
+      if (recording == null)
+      {
+        if (closed)
+          break;
+        continue;
+      }
+
+      BufferListener listener =
+          recording.source == Source.CLIENT ? clientListener : serverListener;
+      try
+      {
+        listener.listen (recording.source, recording.message, recording.dateTime,
+                         recording.genuine);
+      }
+      catch (Exception e)
+      {
+        e.printStackTrace ();               // keep recording the rest of the session
+      }
+
+      totalRecorded.incrementAndGet ();
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Statistics
+  // ---------------------------------------------------------------------------------//
+
+  public long getRecorded ()
+  {
+    return totalRecorded.get ();
+  }
+
+  public long getDropped ()
+  {
+    return totalDropped.get ();
+  }
+
+  public long getBytesDropped ()
+  {
+    return bytesDropped.get ();
+  }
+
+  public int getHighWater ()
+  {
+    return highWater.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("Recorded: %,d  Queued: %,d  High water: %,d  "
+        + "Dropped: %,d (%,d bytes)", totalRecorded.get (), queue.size (),
+                          highWater.get (), totalDropped.get (), bytesDropped.get ());
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Recording
+  // ---------------------------------------------------------------------------------//
+
+  private static class Recording
+  {
+    private final Source source;
+    private final byte[] message;
+    private final LocalDateTime dateTime;
+    private final boolean genuine;
+
+    Recording (Source source, byte[] message, LocalDateTime dateTime, boolean genuine)
+    {
+      this.source = source;
+      this.message = message;
+      this.dateTime = dateTime;
+      this.genuine = genuine;
+    }
+  }
+}
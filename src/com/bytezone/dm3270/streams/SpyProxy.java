@@ -0,0 +1,713 @@
+package com.bytezone.dm3270.streams;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.bytezone.dm3270.streams.TelnetSocket.Source;
+import com.bytezone.dm3270.telnet.TelnetCommand;
+import com.bytezone.dm3270.utilities.Dm3270Utility;
+
+// A long-running spy for any number of terminals. Every client that connects is given
+// its own connection to the host, and the pair is relayed by a single selector thread.
+// Each buffer is passed on to the other side before anything else is done with it, and
+// only then queued for the recording thread, so recording adds almost nothing to the
+// relay. If the recording thread falls behind, buffers are dropped from the recording
+// (never from the relay) just as RecordingQueue does for a SpyServer.
+//
+// Each pair is written to its own session files, in the same format that Replay reads.
+// A file is closed and the next part started when it grows past the size limit, but
+// only at the end of a record. Every part starts with a copy of the telnet negotiation
+// so that it can be replayed on its own.
+//
+//   java com.bytezone.dm3270.streams.SpyProxy [-port n] [-folder path] [-size mb]
+//        <host> <host port>
+
+public class SpyProxy implements Runnable
+{
+  private static final int READ_BUFFER_SIZE = 16384;        // see SessionReader
+  private static final int MAX_PENDING = 1024 * 1024;       // bytes waiting to be sent
+  private static final int RECORDING_QUEUE_SIZE = 16384;    // buffers
+  private static final int MAX_PREAMBLE = 32;               // negotiation buffers
+  private static final long POLL_INTERVAL = 100;            // milliseconds
+  private static final DateTimeFormatter fileFormatter =
+      DateTimeFormatter.ofPattern ("uuuuMMdd-HHmmss");
+
+  private final String serverURL;
+  private final int serverPort;
+  private final InetSocketAddress serverAddress;  // resolved once, not for every pair
+  private final int clientPort;
+  private final Path folder;
+  private final String prefix;                  // keeps each run's files apart
+  private long maxFileSize = 10 * 1024 * 1024;
+
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect (READ_BUFFER_SIZE);
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private volatile boolean running;
+
+  private final BlockingQueue<Recording> queue =
+      new ArrayBlockingQueue<> (RECORDING_QUEUE_SIZE);
+  private Thread recordingThread;
+  private volatile boolean stopped;             // the recording thread can finish
+
+  // written only by the selector thread
+  private volatile long totalPairs;
+  private volatile int activePairs;
+  private volatile long clientBytes;
+  private volatile long serverBytes;
+  private volatile long totalDropped;
+
+  // written only by the recording thread
+  private volatile long totalRecorded;
+  private volatile long filesWritten;
+
+  public SpyProxy (String serverURL, int serverPort, int clientPort, Path folder)
+  {
+    if (serverURL == null || serverURL.isEmpty ())
+      throw new IllegalArgumentException ("Server cannot be null or empty");
+    if (serverPort <= 0)
+      throw new IllegalArgumentException ("Server Port must be a positive integer");
+    if (clientPort <= 0)
+      throw new IllegalArgumentException ("Client Port must be a positive integer");
+    if (!Files.isDirectory (folder))
+      throw new IllegalArgumentException ("Not a folder: " + folder);
+
+    this.serverURL = serverURL;
+    this.serverPort = serverPort;
+    serverAddress = new InetSocketAddress (serverURL, serverPort);
+    if (serverAddress.isUnresolved ())
+      throw new IllegalArgumentException ("Unknown host: " + serverURL);
+
+    this.clientPort = clientPort;
+    this.folder = folder;
+    prefix = "spy-" + fileFormatter.format (LocalDateTime.now ());
+  }
+
+  // a new part is started after the first record that takes a file past this size
+  public void setMaxFileSize (long maxFileSize)
+  {
+    if (maxFileSize <= 0)
+      throw new IllegalArgumentException ("File size must be a positive integer");
+    this.maxFileSize = maxFileSize;
+  }
+
+  @Override
+  public void run ()
+  {
+    recordingThread = new Thread ( () -> record (), "SpyProxyRecorder");
+    recordingThread.setDaemon (true);
+    recordingThread.start ();
+
+    try
+    {
+      selector = Selector.open ();
+      serverChannel = ServerSocketChannel.open ();
+      serverChannel.bind (new InetSocketAddress (clientPort), 1024);
+      serverChannel.configureBlocking (false);
+      serverChannel.register (selector, SelectionKey.OP_ACCEPT);
+
+      System.out.printf ("Spy proxy listening on port %d for %s:%d%n", clientPort,
+                         serverURL, serverPort);
+      running = true;
+
+      while (running)
+      {
+        selector.select ();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys ().iterator ();
+        while (keys.hasNext ())
+        {
+          SelectionKey key = keys.next ();
+          keys.remove ();
+
+          if (!key.isValid ())
+            continue;
+          if (key.isAcceptable ())
+          {
+            accept ();
+            continue;
+          }
+
+          Endpoint endpoint = (Endpoint) key.attachment ();
+          try
+          {
+            if (key.isConnectable ())
+              connect (endpoint);
+            if (key.isValid () && key.isReadable ())
+              read (endpoint);
+            if (key.isValid () && key.isWritable ())
+              flush (endpoint);
+          }
+          catch (RuntimeException e)
+          {
+            e.printStackTrace ();               // only this pair is affected
+            close (endpoint.pair);
+          }
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace ();
+    }
+    finally
+    {
+      closeAll ();
+    }
+
+    stopped = true;
+    try
+    {
+      recordingThread.join ();                  // finish writing the files
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread ().interrupt ();
+    }
+
+    System.out.println ("Spy proxy closed");
+  }
+
+  // called from any thread
+  public void close ()
+  {
+    running = false;
+    if (selector != null)
+      selector.wakeup ();
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Selector thread
+  // ---------------------------------------------------------------------------------//
+
+  // a client that cannot be paired with a host connection is closed on its own
+  private void accept () throws IOException
+  {
+    SocketChannel clientChannel;
+    while ((clientChannel = serverChannel.accept ()) != null)
+    {
+      Pair pair = new Pair (++totalPairs);
+      pair.client = new Endpoint (pair, Source.CLIENT, clientChannel, true);
+      ++activePairs;
+
+      try
+      {
+        open (pair);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        System.out.printf ("Pair %d cannot connect: %s%n", pair.number, e);
+        close (pair);
+      }
+    }
+  }
+
+  private void open (Pair pair) throws IOException
+  {
+    SocketChannel clientChannel = pair.client.channel;
+    clientChannel.configureBlocking (false);
+    clientChannel.socket ().setTcpNoDelay (true);
+
+    SocketChannel hostChannel = SocketChannel.open ();
+    pair.server = new Endpoint (pair, Source.SERVER, hostChannel, false);
+    pair.client.partner = pair.server;
+    pair.server.partner = pair.client;
+
+    hostChannel.configureBlocking (false);
+    hostChannel.socket ().setTcpNoDelay (true);
+
+    pair.client.key = clientChannel.register (selector, 0, pair.client);
+    pair.server.key = hostChannel.register (selector, 0, pair.server);
+
+    if (hostChannel.connect (serverAddress))
+      pair.server.connected = true;
+
+    pair.client.updateInterest ();
+    pair.server.updateInterest ();
+  }
+
+  private void connect (Endpoint endpoint)
+  {
+    try
+    {
+      endpoint.channel.finishConnect ();
+      endpoint.connected = true;
+    }
+    catch (IOException e)
+    {
+      System.out.printf ("Pair %d cannot connect: %s%n", endpoint.pair.number,
+                         e.getMessage ());
+      close (endpoint.pair);
+      return;
+    }
+
+    flush (endpoint);                           // anything the client sent already
+    endpoint.partner.updateInterest ();
+  }
+
+  private void read (Endpoint endpoint)
+  {
+    readBuffer.clear ();
+    int bytesRead;
+    try
+    {
+      bytesRead = endpoint.channel.read (readBuffer);
+    }
+    catch (IOException e)
+    {
+      bytesRead = -1;
+    }
+
+    if (bytesRead < 0)
+    {
+      close (endpoint.pair);
+      return;
+    }
+    if (bytesRead == 0)
+      return;
+
+    byte[] buffer = new byte[bytesRead];
+    readBuffer.flip ();
+    readBuffer.get (buffer);
+
+    // relay it first
+    Endpoint partner = endpoint.partner;
+    partner.output.add (ByteBuffer.wrap (buffer));
+    partner.pendingBytes += bytesRead;
+    if (partner.connected && partner.output.size () == 1)
+      flush (partner);
+    endpoint.updateInterest ();                 // stop reading if too much is waiting
+
+    if (endpoint.source == Source.CLIENT)
+      clientBytes += bytesRead;
+    else
+      serverBytes += bytesRead;
+
+    // then record it
+    if (!queue.offer (new Recording (endpoint.pair.file, endpoint.source, buffer,
+        System.currentTimeMillis ())))
+    {
+      ++endpoint.pair.dropped;
+      ++totalDropped;
+    }
+  }
+
+  private void flush (Endpoint endpoint)
+  {
+    if (endpoint.pair.closed)
+      return;
+
+    try
+    {
+      while (!endpoint.output.isEmpty ())
+      {
+        ByteBuffer buffer = endpoint.output.peek ();
+        endpoint.pendingBytes -= endpoint.channel.write (buffer);
+        if (buffer.hasRemaining ())
+          break;                                // the socket buffer is full
+        endpoint.output.remove ();
+      }
+    }
+    catch (IOException e)
+    {
+      close (endpoint.pair);
+      return;
+    }
+
+    endpoint.updateInterest ();
+    endpoint.partner.updateInterest ();         // may be able to read again
+  }
+
+  private void close (Pair pair)
+  {
+    if (pair.closed)
+      return;
+
+    pair.closed = true;
+    --activePairs;
+
+    for (Endpoint endpoint : new Endpoint[] { pair.client, pair.server })
+    {
+      if (endpoint == null)                     // the pair was never completed
+        continue;
+
+      endpoint.output.clear ();
+      if (endpoint.key != null)
+        endpoint.key.cancel ();
+      try
+      {
+        endpoint.channel.close ();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+      }
+    }
+
+    if (pair.dropped > 0)
+      System.out.printf ("Pair %d: %,d buffers were not recorded%n", pair.number,
+                         pair.dropped);
+
+    // normally the file is closed in order, after its last buffer is written
+    pair.file.closeRequested = true;
+    queue.offer (new Recording (pair.file, null, null, 0));
+  }
+
+  private void closeAll ()
+  {
+    if (selector != null)
+    {
+      for (SelectionKey key : selector.keys ())
+        if (key.attachment () instanceof Endpoint)
+          close (((Endpoint) key.attachment ()).pair);
+      try
+      {
+        selector.close ();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+      }
+    }
+
+    if (serverChannel != null)
+      try
+      {
+        serverChannel.close ();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+      }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Recording thread
+  // ---------------------------------------------------------------------------------//
+
+  private void record ()
+  {
+    Set<SessionFile> openFiles = new HashSet<> ();
+
+    while (true)
+    {
+      Recording recording;
+      try
+      {
+        recording = queue.poll (POLL_INTERVAL, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        break;
+      }
+
+      // when the queue is empty, write everything out and close any file whose close
+      // request was lost in an overflow
+      if (recording == null)
+      {
+        Iterator<SessionFile> iterator = openFiles.iterator ();
+        while (iterator.hasNext ())
+        {
+          SessionFile file = iterator.next ();
+          if (file.closeRequested)
+          {
+            file.close ();
+            iterator.remove ();
+          }
+          else
+            file.flush ();
+        }
+        if (stopped && openFiles.isEmpty ())
+          break;
+        continue;
+      }
+
+      SessionFile file = recording.file;
+      if (recording.buffer == null)
+      {
+        file.close ();
+        openFiles.remove (file);
+        continue;
+      }
+
+      if (file.write (recording))
+      {
+        openFiles.add (file);
+        ++totalRecorded;
+      }
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Statistics
+  // ---------------------------------------------------------------------------------//
+
+  @Override
+  public String toString ()
+  {
+    return String.format ("Pairs: %,d  Active: %,d  Client bytes: %,d  "
+        + "Server bytes: %,d  Recorded: %,d  Queued: %,d  Dropped: %,d  Files: %,d",
+                          totalPairs, activePairs, clientBytes, serverBytes,
+                          totalRecorded, queue.size (), totalDropped, filesWritten);
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Pair
+  // ---------------------------------------------------------------------------------//
+
+  private class Pair
+  {
+    private final long number;
+    private final SessionFile file;
+    private Endpoint client;
+    private Endpoint server;
+    private boolean closed;
+    private long dropped;                       // buffers not recorded
+
+    Pair (long number)
+    {
+      this.number = number;
+      file = new SessionFile (String.format ("%s-%05d", prefix, number));
+    }
+  }
+
+  // One side of a pair. The buffers read here are written to the partner.
+  private static class Endpoint
+  {
+    private final Pair pair;
+    private final Source source;
+    private final SocketChannel channel;
+    private final Deque<ByteBuffer> output = new ArrayDeque<> ();
+    private SelectionKey key;
+    private Endpoint partner;
+    private boolean connected;
+    private int pendingBytes;                   // in output
+    private int interestOps = -1;
+
+    Endpoint (Pair pair, Source source, SocketChannel channel, boolean connected)
+    {
+      this.pair = pair;
+      this.source = source;
+      this.channel = channel;
+      this.connected = connected;
+    }
+
+    // Read only while the partner is keeping up, so that a slow terminal holds up
+    // its own host rather than filling memory.
+    private void updateInterest ()
+    {
+      if (pair.closed)
+        return;
+
+      int ops;
+      if (!connected)
+        ops = SelectionKey.OP_CONNECT;
+      else
+      {
+        ops = output.isEmpty () ? 0 : SelectionKey.OP_WRITE;
+        if (partner.connected && partner.pendingBytes < MAX_PENDING)
+          ops |= SelectionKey.OP_READ;
+      }
+
+      if (ops != interestOps)
+      {
+        key.interestOps (ops);
+        interestOps = ops;
+      }
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Session files
+  // ---------------------------------------------------------------------------------//
+
+  private static class Recording
+  {
+    private final SessionFile file;
+    private final Source source;
+    private final byte[] buffer;                // null to close the file
+    private final long time;
+
+    Recording (SessionFile file, Source source, byte[] buffer, long time)
+    {
+      this.file = file;
+      this.source = source;
+      this.buffer = buffer;
+      this.time = time;
+    }
+  }
+
+  // used only by the recording thread, apart from closeRequested
+  private class SessionFile
+  {
+    private final String name;
+    private final List<String> preamble = new ArrayList<> ();
+    private boolean preambleComplete;
+    private BufferedWriter writer;
+    private long size;
+    private int part;
+    private boolean closed;                     // any late buffers are ignored
+    private volatile boolean closeRequested;
+
+    SessionFile (String name)
+    {
+      this.name = name;
+    }
+
+    // returns false once the file has been closed
+    boolean write (Recording recording)
+    {
+      if (closed)
+        return false;
+
+      LocalDateTime dateTime = LocalDateTime
+          .ofInstant (Instant.ofEpochMilli (recording.time), ZoneId.systemDefault ());
+      String name = recording.source == Source.CLIENT ? "Client" : "Server";
+      String text = String.format ("%s   %s%n%s%n", name, dateTime,
+                                   Dm3270Utility.toHex (recording.buffer));
+
+      // keep the negotiation, which ends when the first record arrives
+      boolean endOfRecord = endsWithEOR (recording.buffer);
+      if (!preambleComplete)
+      {
+        preamble.add (text);
+        preambleComplete = endOfRecord || preamble.size () == MAX_PREAMBLE;
+      }
+
+      try
+      {
+        if (writer == null)
+          open ();
+        writer.write (text);
+        size += text.length ();
+
+        if (size >= maxFileSize && endOfRecord)
+        {
+          writer.close ();
+          writer = null;
+        }
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace ();
+        close ();
+      }
+      return true;
+    }
+
+    private void open () throws IOException
+    {
+      Path path = folder.resolve (String.format ("%s-%03d.txt", name, ++part));
+      writer = Files.newBufferedWriter (path, StandardCharsets.UTF_8);
+      size = 0;
+      ++filesWritten;
+
+      if (part > 1)
+        for (String text : preamble)
+        {
+          writer.write (text);
+          size += text.length ();
+        }
+    }
+
+    private boolean endsWithEOR (byte[] buffer)
+    {
+      return buffer.length >= 2 && buffer[buffer.length - 2] == TelnetCommand.IAC
+          && buffer[buffer.length - 1] == TelnetCommand.EOR;
+    }
+
+    void flush ()
+    {
+      if (writer != null)
+        try
+        {
+          writer.flush ();
+        }
+        catch (IOException e)
+        {
+          e.printStackTrace ();
+        }
+    }
+
+    void close ()
+    {
+      closed = true;
+      if (writer != null)
+        try
+        {
+          writer.close ();
+        }
+        catch (IOException e)
+        {
+          e.printStackTrace ();
+        }
+      writer = null;
+    }
+  }
+
+  // ---------------------------------------------------------------------------------//
+  // Command line
+  // ---------------------------------------------------------------------------------//
+
+  public static void main (String[] args) throws Exception
+  {
+    int clientPort = 5555;
+    Path folder = Paths.get (".");
+    long maxFileSize = 10;
+    List<String> names = new ArrayList<> ();
+
+    for (int i = 0; i < args.length; i++)
+      if (args[i].equals ("-port") && i + 1 < args.length)
+        clientPort = Integer.parseInt (args[++i]);
+      else if (args[i].equals ("-folder") && i + 1 < args.length)
+        folder = Paths.get (args[++i]);
+      else if (args[i].equals ("-size") && i + 1 < args.length)
+        maxFileSize = Long.parseLong (args[++i]);
+      else
+        names.add (args[i]);
+
+    if (names.size () != 2)
+    {
+      System.out.println ("Usage: SpyProxy [-port n] [-folder path] [-size mb] "
+          + "<host> <host port>");
+      return;
+    }
+
+    int serverPort = Integer.parseInt (names.get (1));
+    SpyProxy proxy = new SpyProxy (names.get (0), serverPort, clientPort, folder);
+    proxy.setMaxFileSize (maxFileSize * 1024 * 1024);
+
+    Thread thread = new Thread (proxy, "SpyProxy");
+    thread.start ();
+
+    while (thread.isAlive ())
+    {
+      thread.join (10000);
+      System.out.println (proxy);
+    }
+  }
+}
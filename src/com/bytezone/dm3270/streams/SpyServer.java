@@ -16,6 +16,8 @@ import com.bytezone.dm3270.utilities.Site;
 
 public class SpyServer implements Runnable
 {
+  private static final int RECORDING_QUEUE_SIZE = 4096;        // buffers
+
   private Socket clientSocket;
   private final Socket serverSocket = new Socket ();
   private final TelnetState telnetState;
@@ -28,6 +30,7 @@ public class SpyServer implements Runnable
   private ServerSocket clientServerSocket;
   private TelnetSocket clientTelnetSocket;
   private TelnetSocket serverTelnetSocket;
+  private RecordingQueue recordingQueue;
   private final Session session;
   private Screen screen;
 
@@ -71,13 +74,17 @@ public class SpyServer implements Runnable
       // now connect to the real mainframe
       serverSocket.connect (new InetSocketAddress (serverURL, serverPort));
 
+      // both sockets record through the same queue, so the order is kept
+      recordingQueue = new RecordingQueue (
+          new TelnetListener (Source.CLIENT, session, Console.Function.SPY, screen,
+              telnetState),
+          new TelnetListener (Source.SERVER, session, Console.Function.SPY, screen,
+              telnetState),
+          RECORDING_QUEUE_SIZE);
+
       // create two SocketListeners and link them to each other
-      clientTelnetSocket =
-          new TelnetSocket (Source.CLIENT, clientSocket, new TelnetListener (
-              Source.CLIENT, session, Console.Function.SPY, screen, telnetState));
-      serverTelnetSocket =
-          new TelnetSocket (Source.SERVER, serverSocket, new TelnetListener (
-              Source.SERVER, session, Console.Function.SPY, screen, telnetState));
+      clientTelnetSocket = new TelnetSocket (Source.CLIENT, clientSocket, recordingQueue);
+      serverTelnetSocket = new TelnetSocket (Source.SERVER, serverSocket, recordingQueue);
 
       // TelnetSocket.link() will connect both sockets to each other (bidirectional)
       serverTelnetSocket.link (clientTelnetSocket);
@@ -143,5 +150,12 @@ public class SpyServer implements Runnable
       serverTelnetSocket.close ();
       serverTelnetSocket = null;
     }
+
+    if (recordingQueue != null)
+    {
+      System.out.println (recordingQueue);
+      recordingQueue.close ();
+      recordingQueue = null;
+    }
   }
 }
\ No newline at end of file
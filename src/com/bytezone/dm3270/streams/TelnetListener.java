@@ -12,6 +12,7 @@ import com.bytezone.dm3270.extended.BindCommand;
 import com.bytezone.dm3270.extended.CommandHeader;
 import com.bytezone.dm3270.extended.CommandHeader.DataType;
 import com.bytezone.dm3270.extended.ResponseCommand;
+import com.bytezone.dm3270.extended.ScsCommand;
 import com.bytezone.dm3270.extended.TN3270ExtendedCommand;
 import com.bytezone.dm3270.extended.UnbindCommand;
 import com.bytezone.dm3270.session.Session;
@@ -106,6 +107,7 @@ public class TelnetListener implements BufferListener, TelnetCommandProcessor
   @Override
   public void processRecord (byte[] data, int dataPtr)
   {
+    long start = System.nanoTime ();
     int offset;
     int length;
     DataType dataType;
@@ -151,6 +153,13 @@ public class TelnetListener implements BufferListener, TelnetCommandProcessor
         addDataRecord (unbindCommand, SessionRecordType.TN3270E);
         break;
 
+      case SCS_DATA:
+      case PRINT_EOJ:
+        ScsCommand scsCommand =
+            new ScsCommand (currentCommandHeader, data, offset, length);
+        addDataRecord (scsCommand, SessionRecordType.TN3270E);
+        break;
+
       case RESPONSE:
         ResponseCommand responseCommand =
             new ResponseCommand (currentCommandHeader, data, offset, length);
@@ -161,6 +170,9 @@ public class TelnetListener implements BufferListener, TelnetCommandProcessor
         System.out.println ("Data type not written: " + dataType);
         System.out.println (Dm3270Utility.toHex (data, offset, length));
     }
+
+    if (telnetState != null)
+      telnetState.getMetrics ().recordParsed (System.nanoTime () - start);
   }
 
   @Override
@@ -208,6 +220,8 @@ public class TelnetListener implements BufferListener, TelnetCommandProcessor
     {
       if (sessionRecordType == SessionRecordType.TELNET)      // no gui involved
         processMessage (message);
+      else if (message instanceof ScsCommand)       // print as it arrives
+        processMessage (message);
       else
         Platform.runLater ( () -> processMessage (message));
     }
@@ -39,8 +39,9 @@ public class TelnetSocket implements Runnable
   }
 
   // Only used by a SpyServer, which creates two SocketListeners. Each SocketListener
-  // copies its inputStream to its partner's outputStream after sending a copy to
-  // the listener.
+  // copies its inputStream to its partner's outputStream and then sends a copy to
+  // the listener (normally a RecordingQueue, so that recording never delays the
+  // relay).
 
   public TelnetSocket (Source source, Socket socket, BufferListener listener)
       throws IOException
@@ -108,16 +109,24 @@ public class TelnetSocket implements Runnable
           System.out.println (Dm3270Utility.toHex (buffer, 0, bytesRead));
         }
 
-        // take a copy of the input buffer and send it to the TelnetListener
+        LocalDateTime dateTime = LocalDateTime.now ();
+
+        // relay the bytes first, straight from the input buffer
+        byte[] reply = null;
+        if (prevent3270E && is3270ERequest ())  // reject a request for 3270-E
+          reply = sendFakeReply ();
+        else if (partner != null)
+          partner.write (buffer, 0, bytesRead); // write to partner's OutputStream
+
+        // then take a copy of the input buffer and send it to the TelnetListener
         byte[] message = new byte[bytesRead];
         System.arraycopy (buffer, 0, message, 0, message.length);
-        telnetListener.listen (source, message, LocalDateTime.now (), GENUINE);
+        telnetListener.listen (source, message, dateTime, GENUINE);
 
-        if (prevent3270E && fakeReplySent ())   // did we reject a request for 3270-E?
-          continue;
-
-        if (partner != null)
-          partner.write (message);              // write to partner's OutputStream
+        // send a ManInTheMiddle notification on behalf of the client
+        if (reply != null)
+          partner.telnetListener.listen (partner.source, reply, LocalDateTime.now (),
+                                         MITM);
       }
       catch (IOException e)
       {
@@ -134,11 +143,12 @@ public class TelnetSocket implements Runnable
     close ();
   }
 
-  private void write (byte[] buffer)
+  // both sockets can write to the same stream (see sendFakeReply())
+  private synchronized void write (byte[] buffer, int offset, int length)
   {
     try
     {
-      outputStream.write (buffer);
+      outputStream.write (buffer, offset, length);
       outputStream.flush ();
     }
     catch (IOException e)
@@ -150,34 +160,31 @@ public class TelnetSocket implements Runnable
     {
       System.out.println (toString ());
       System.out.println ("writing:");
-      System.out.println (Dm3270Utility.toHex (buffer));
+      System.out.println (Dm3270Utility.toHex (buffer, offset, length));
     }
   }
 
-  private boolean fakeReplySent () throws IOException
+  // If the server sends a request for us to DO 3270E and we don't want to, then
+  // send a fake WONT reply instead of passing on the request.
+  private boolean is3270ERequest ()
   {
-    // If the server sends a request for us to DO 3270E and we don't want to, then
-    // send a fake WONT reply instead of passing on the request.
-    if (source == Source.SERVER                     //
+    return source == Source.SERVER                  //
         && bytesRead == 3                           //
         && buffer[0] == TelnetCommand.IAC           //
         && buffer[1] == TelnetCommand.DO            //
-        && buffer[2] == TelnetSubcommand.TN3270E)
-    {
-      byte[] reply = new byte[3];
-
-      reply[0] = TelnetCommand.IAC;
-      reply[1] = TelnetCommand.WONT;
-      reply[2] = TelnetSubcommand.TN3270E;
+        && buffer[2] == TelnetSubcommand.TN3270E;
+  }
 
-      write (reply);     // reply directly, don't send it to partner
+  private byte[] sendFakeReply ()
+  {
+    byte[] reply = new byte[3];
 
-      // send a ManInTheMiddle notification on behalf of the client
-      partner.telnetListener.listen (partner.source, reply, LocalDateTime.now (), MITM);
+    reply[0] = TelnetCommand.IAC;
+    reply[1] = TelnetCommand.WONT;
+    reply[2] = TelnetSubcommand.TN3270E;
 
-      return true;
-    }
-    return false;
+    write (reply, 0, reply.length);     // reply directly, don't send it to partner
+    return reply;
   }
 
   public void close ()
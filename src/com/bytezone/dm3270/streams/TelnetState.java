@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.bytezone.dm3270.display.ScreenDimensions;
+import com.bytezone.dm3270.metrics.SessionMetrics;
 import com.bytezone.dm3270.telnet.TN3270ExtendedSubcommand.Function;
 
 public class TelnetState implements Runnable
@@ -18,6 +19,8 @@ public class TelnetState implements Runnable
 
   private final String[] terminalTypes =
       { "", "", "IBM-3278-2-E", "IBM-3278-3-E", "IBM-3278-4-E", "IBM-3278-5-E" };
+  private static final String DYNAMIC = "IBM-DYNAMIC";     // size from the query reply
+  private static final String PRINTER = "IBM-3287-1";      // SCS or 3270 data stream
 
   // preferences
   private boolean do3270Extended;
@@ -25,6 +28,8 @@ public class TelnetState implements Runnable
   private boolean doEOR;
   private boolean doTerminalType;
   private String doDeviceType;
+  private String doLogicalUnit = "";
+  private ScreenDimensions doDynamicSize;       // alternate size for IBM-DYNAMIC
 
   // current status
   private boolean does3270Extended;
@@ -53,6 +58,8 @@ public class TelnetState implements Runnable
   private int totalBytesRead;
   private int totalBytesWritten;
 
+  private final SessionMetrics metrics = new SessionMetrics ();
+
   public TelnetState ()
   {
     setDo3270Extended (true);       // prefer extended
@@ -66,6 +73,7 @@ public class TelnetState implements Runnable
   public void setTerminalServer (TerminalServer terminalServer)
   {
     this.terminalServer = terminalServer;
+    metrics.register (terminalServer.getServerName ());
     thread = new Thread (this);
     thread.start ();
   }
@@ -75,6 +83,7 @@ public class TelnetState implements Runnable
     lastAccess.set (System.currentTimeMillis ());
     ++totalReads;
     totalBytesRead += bytes;
+    metrics.bytesRead (bytes);
 
     if (debug)
       System.out.printf ("Read  : %,6d %s%n", bytes, formatter.format (dateTime));
@@ -90,6 +99,7 @@ public class TelnetState implements Runnable
 
     ++totalWrites;
     totalBytesWritten += buffer.length;
+    metrics.bytesWritten (buffer.length);
 
     if (debug)
       System.out.printf ("Write : %,6d %s%n", buffer.length,
@@ -123,7 +133,7 @@ public class TelnetState implements Runnable
           Thread.sleep (sleep * 1000);
 
         if (lastTimeIChecked == lastAccess.get ())
-          write (noOp);
+          sendNoOp ();
       }
       catch (InterruptedException e)
       {
@@ -134,8 +144,21 @@ public class TelnetState implements Runnable
     }
   }
 
+  // called from run()
+  // called from SessionPool.checkSessions()
+  public void sendNoOp ()
+  {
+    write (noOp);
+  }
+
+  public boolean isConnected ()
+  {
+    return terminalServer != null && terminalServer.isConnected ();
+  }
+
   public void close ()
   {
+    metrics.unregister ();
     if (thread != null)
     {
       running = false;
@@ -143,6 +166,11 @@ public class TelnetState implements Runnable
     }
   }
 
+  public SessionMetrics getMetrics ()
+  {
+    return metrics;
+  }
+
   public ScreenDimensions getPrimary ()
   {
     return primary;
@@ -175,6 +203,7 @@ public class TelnetState implements Runnable
     text.append (String.format ("         -------   ----------   -------%n"));
     text.append (String.format ("          %,5d       %,7d     %,4d %n", totalIO,
                                 totalIOBytes, averageIO));
+    text.append (String.format ("%n%s%n", metrics));
 
     return text.toString ();
   }
@@ -219,6 +248,19 @@ public class TelnetState implements Runnable
     System.out.println ("Device Type          : " + deviceType);
     this.deviceType = deviceType;
 
+    if (PRINTER.equals (deviceType))
+    {
+      modelNo = 0;
+      return;
+    }
+
+    if (DYNAMIC.equals (deviceType) && doDynamicSize != null)
+    {
+      modelNo = 0;
+      secondary = doDynamicSize;
+      return;
+    }
+
     modelNo = 0;
     for (int i = 2; i <= 5; i++)
     {
@@ -291,6 +333,11 @@ public class TelnetState implements Runnable
     return terminal;
   }
 
+  public String getLogicalUnit ()
+  {
+    return luName;
+  }
+
   // ---------------------------------------------------------------------------------//
   // Ask preferences
   // ---------------------------------------------------------------------------------//
@@ -320,6 +367,17 @@ public class TelnetState implements Runnable
     return doDeviceType;
   }
 
+  // called from TN3270ExtendedSubcommand.process()
+  public boolean doPrinter ()
+  {
+    return PRINTER.equals (doDeviceType);
+  }
+
+  public String doLogicalUnit ()
+  {
+    return doLogicalUnit;
+  }
+
   // ---------------------------------------------------------------------------------//
   // Set preferences
   // ---------------------------------------------------------------------------------//
@@ -347,9 +405,39 @@ public class TelnetState implements Runnable
   public void setDoDeviceType (int modelNo)
   {
     doDeviceType = terminalTypes[modelNo];
+    doDynamicSize = null;
+    System.out.println ("setting: " + doDeviceType);
+  }
+
+  // a custom alternate screen size, which is sent to the host in the query reply
+  public void setDoDeviceType (ScreenDimensions alternate)
+  {
+    if (alternate == null)
+      throw new IllegalArgumentException ("ScreenDimensions cannot be null");
+    if (alternate.rows < 24 || alternate.columns < 80
+        || alternate.size > ScreenDimensions.MAX_SIZE)
+      throw new IllegalArgumentException ("Invalid screen size: " + alternate);
+
+    doDeviceType = DYNAMIC;
+    doDynamicSize = alternate;
+    secondary = alternate;          // the query reply may be needed before negotiation
+    System.out.println ("setting: " + doDeviceType + " " + alternate);
+  }
+
+  // a printer LU, which is usually named with setDoLogicalUnit()
+  public void setDoPrinter ()
+  {
+    doDeviceType = PRINTER;
+    doDynamicSize = null;
     System.out.println ("setting: " + doDeviceType);
   }
 
+  // an empty name lets the server choose the LU
+  public void setDoLogicalUnit (String luName)
+  {
+    doLogicalUnit = luName == null ? "" : luName;
+  }
+
   @Override
   public String toString ()
   {
@@ -361,6 +449,7 @@ public class TelnetState implements Runnable
     text.append (String.format ("terminal type ... %s%n", doesTerminalType));
     text.append (String.format ("terminal ........ %s%n", terminal));
     text.append (String.format ("device type ..... %s%n", deviceType));
+    text.append (String.format ("LU name ......... %s%n", luName));
     text.append (String.format ("functions ....... %s", functions));
 
     return text.toString ();
@@ -1,5 +1,6 @@
 package com.bytezone.dm3270.streams;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -10,8 +11,17 @@ import java.time.LocalDateTime;
 import com.bytezone.dm3270.streams.TelnetSocket.Source;
 import com.bytezone.dm3270.utilities.Dm3270Utility;
 
+// Replies written while a buffer from the server is being processed (such as the
+// answers to telnet negotiation) are collected and sent with a single flush once the
+// whole buffer has been processed. Writes from any other thread (AIDs, replies
+// created on the application thread) are flushed immediately. TCP_NODELAY is on
+// unless it is switched off before the connection is made, so that small AIDs are
+// never held back by Nagle's algorithm.
+
 public class TerminalServer implements Runnable
 {
+  private static final int OUTPUT_BUFFER_SIZE = 8192;
+
   private final int serverPort;
   private final String serverURL;
   private final Socket serverSocket = new Socket ();
@@ -25,6 +35,11 @@ public class TerminalServer implements Runnable
   private final BufferListener telnetListener;
   private final boolean debug = false;
 
+  private boolean tcpNoDelay = true;
+  private Thread readerThread;
+  private boolean coalescing;               // readerThread is processing a buffer
+  private boolean flushRequired;
+
   public TerminalServer (String serverURL, int serverPort, BufferListener listener)
   {
     this.serverPort = serverPort;
@@ -32,15 +47,24 @@ public class TerminalServer implements Runnable
     this.telnetListener = listener;
   }
 
+  // must be called before the connection is made
+  public void setTcpNoDelay (boolean tcpNoDelay)
+  {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
   @Override
   public void run ()
   {
     try
     {
+      serverSocket.setTcpNoDelay (tcpNoDelay);
       serverSocket.connect (new InetSocketAddress (serverURL, serverPort));
 
       serverIn = serverSocket.getInputStream ();
-      serverOut = serverSocket.getOutputStream ();
+      serverOut =
+          new BufferedOutputStream (serverSocket.getOutputStream (), OUTPUT_BUFFER_SIZE);
+      readerThread = Thread.currentThread ();
 
       running = true;
       while (running)
@@ -70,7 +94,16 @@ public class TerminalServer implements Runnable
 
         byte[] message = new byte[bytesRead];
         System.arraycopy (buffer, 0, message, 0, bytesRead);
-        telnetListener.listen (Source.SERVER, message, LocalDateTime.now (), true);
+
+        startCoalescing ();
+        try
+        {
+          telnetListener.listen (Source.SERVER, message, LocalDateTime.now (), true);
+        }
+        finally
+        {
+          flushCoalesced ();
+        }
       }
     }
     catch (IOException e)
@@ -95,11 +128,16 @@ public class TerminalServer implements Runnable
     try
     {
       serverOut.write (buffer);
-      serverOut.flush ();
+      if (coalescing && Thread.currentThread () == readerThread)
+        flushRequired = true;             // flushCoalesced() will send it
+      else
+        serverOut.flush ();
     }
     catch (IOException e)
     {
       e.printStackTrace ();
+      close ();                       // the connection is unusable
+      return;
     }
 
     if (debug)
@@ -110,6 +148,40 @@ public class TerminalServer implements Runnable
     }
   }
 
+  private synchronized void startCoalescing ()
+  {
+    coalescing = true;
+  }
+
+  // send everything that was written while the buffer was being processed
+  private synchronized void flushCoalesced ()
+  {
+    coalescing = false;
+    if (!flushRequired || serverOut == null)
+      return;
+
+    flushRequired = false;
+    try
+    {
+      serverOut.flush ();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace ();
+      close ();                       // the connection is unusable
+    }
+  }
+
+  public String getServerName ()
+  {
+    return serverURL + ":" + serverPort;
+  }
+
+  public boolean isConnected ()
+  {
+    return running && serverSocket.isConnected () && !serverSocket.isClosed ();
+  }
+
   public void close ()
   {
     try
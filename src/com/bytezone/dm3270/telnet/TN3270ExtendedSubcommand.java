@@ -13,10 +13,18 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
   protected static final byte EXT_DEVICE_TYPE = 2;
   protected static final byte EXT_FUNCTIONS = 3;
 
+  protected static final byte EXT_CONNECT = 1;
   protected static final byte EXT_IS = 4;
   protected static final byte EXT_REQUEST = 7;
   protected static final byte EXT_SEND = 8;
 
+  // function codes from RFC 2355
+  protected static final byte FUNC_BIND_IMAGE = 0;
+  protected static final byte FUNC_DATA_STREAM_CTL = 1;
+  protected static final byte FUNC_RESPONSES = 2;
+  protected static final byte FUNC_SCS_CTL_CODES = 3;
+  protected static final byte FUNC_SYSREQ = 4;
+
   private SubType subType;
   private String luName = "";
   private List<Function> functions;
@@ -29,7 +37,7 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
 
   public enum Function
   {
-    BIND_IMAGE, RESPONSES, SYSREQ
+    BIND_IMAGE, DATA_STREAM_CTL, RESPONSES, SCS_CTL_CODES, SYSREQ
   }
 
   public TN3270ExtendedSubcommand (byte[] buffer, int offset, int length,
@@ -50,14 +58,24 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
         if (buffer[4] == EXT_REQUEST)
         {
           subType = SubType.REQUEST;
-          value = new String (buffer, 5, length - 7);
+          for (int ptr = 6; ptr < length; ptr++)
+          {
+            if (buffer[ptr] == EXT_CONNECT)
+            {
+              value = new String (buffer, 5, ptr - 5);          // value before the ptr
+              luName = new String (buffer, ptr + 1, length - ptr - 3);   // after
+              break;
+            }
+          }
+          if (value == null)
+            value = new String (buffer, 5, length - 7);
         }
         else if (buffer[4] == EXT_IS)
         {
           subType = SubType.IS;
           for (int ptr = 6; ptr < length; ptr++)
           {
-            if (buffer[ptr] == 1)
+            if (buffer[ptr] == EXT_CONNECT)
             {
               value = new String (buffer, 5, ptr - 5);          // value before the ptr
               luName = new String (buffer, ptr + 1, length - ptr - 3);   // after
@@ -96,17 +114,27 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
 
     for (int ptr = 5, max = length - 2; ptr < max; ptr++)
     {
-      if (buffer[ptr] == 0)
+      if (buffer[ptr] == FUNC_BIND_IMAGE)
       {
         functions.add (Function.BIND_IMAGE);
         funcList.append ("BIND, ");
       }
-      else if (buffer[ptr] == 2)
+      else if (buffer[ptr] == FUNC_DATA_STREAM_CTL)
+      {
+        functions.add (Function.DATA_STREAM_CTL);
+        funcList.append ("DATA-STREAM-CTL, ");
+      }
+      else if (buffer[ptr] == FUNC_RESPONSES)
       {
         functions.add (Function.RESPONSES);
         funcList.append ("RESPONSES, ");
       }
-      else if (buffer[ptr] == 4)
+      else if (buffer[ptr] == FUNC_SCS_CTL_CODES)
+      {
+        functions.add (Function.SCS_CTL_CODES);
+        funcList.append ("SCS-CTL-CODES, ");
+      }
+      else if (buffer[ptr] == FUNC_SYSREQ)
       {
         functions.add (Function.SYSREQ);
         funcList.append ("SYSREQ, ");
@@ -139,6 +167,10 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
         byte[] header = { TelnetCommand.IAC, TelnetCommand.SB, TN3270E, EXT_DEVICE_TYPE,
                           EXT_REQUEST };
         String terminalType = telnetState.doDeviceType ();
+        String requestedLU = telnetState.doLogicalUnit ();
+        if (!requestedLU.isEmpty ())
+          terminalType += (char) EXT_CONNECT + requestedLU;     // ask for a specific LU
+
         byte[] terminal = terminalType.getBytes ("ASCII");
         byte[] reply = new byte[header.length + terminal.length + 2];
 
@@ -155,12 +187,18 @@ public class TN3270ExtendedSubcommand extends TelnetSubcommand
       }
     }
 
-    // after the server assigns our device type, request these three functions
+    // after the server assigns our device type, request these functions - a printer
+    // also needs the SCS control codes and data stream control for its SCS data
     if (type == SubcommandType.DEVICE_TYPE && subType == SubType.IS)
     {
-      byte[] reply =
-          { TelnetCommand.IAC, TelnetCommand.SB, TN3270E, EXT_FUNCTIONS, EXT_REQUEST,
-            0x00, 0x02, 0x04, TelnetCommand.IAC, TelnetCommand.SE };
+      byte[] reply = telnetState.doPrinter ()
+          ? new byte[] { TelnetCommand.IAC, TelnetCommand.SB, TN3270E, EXT_FUNCTIONS,
+                         EXT_REQUEST, FUNC_BIND_IMAGE, FUNC_DATA_STREAM_CTL,
+                         FUNC_RESPONSES, FUNC_SCS_CTL_CODES, FUNC_SYSREQ,
+                         TelnetCommand.IAC, TelnetCommand.SE }
+          : new byte[] { TelnetCommand.IAC, TelnetCommand.SB, TN3270E, EXT_FUNCTIONS,
+                         EXT_REQUEST, FUNC_BIND_IMAGE, FUNC_RESPONSES, FUNC_SYSREQ,
+                         TelnetCommand.IAC, TelnetCommand.SE };
       setReply (new TN3270ExtendedSubcommand (reply, 0, reply.length, telnetState));
     }
 